@@ -0,0 +1,63 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.BorrowResult;
+import ac.il.bgu.qa.ConcurrentLibrary;
+import ac.il.bgu.qa.IsbnKey;
+import ac.il.bgu.qa.ReturnResult;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.InMemoryDatabaseService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures borrow/return throughput of ConcurrentLibrary as threads are added.
+ * A single stripe stands for a library synchronized as a whole; with many stripes, operations on
+ * different books run in parallel and throughput should grow with the number of cores.
+ * Run with -t to vary the number of threads, e.g. java -jar target/benchmarks.jar ConcurrentLibrary -t 8
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentLibraryBenchmark {
+
+    @Param({"1", "256"})
+    public int stripes;
+
+    @Param({"100000"})
+    public int books;
+
+    private ConcurrentLibrary library;
+
+    private String[] isbns;
+
+    @Setup
+    public void setUp() {
+        library = new ConcurrentLibrary(new InMemoryDatabaseService(), null, stripes);
+        isbns = new String[books];
+        int i = 0;
+        for (long key = 9780000000000L; i < books; key++) {
+            String isbn = Long.toString(key);
+            if (IsbnKey.of(isbn) != IsbnKey.INVALID) {
+                isbns[i++] = isbn;
+                library.addBook(new Book(isbn, "Title", "Author"));
+            }
+        }
+        library.registerUser(new User("Name", "123456789012", (userId, message) -> { }));
+    }
+
+    @Benchmark
+    public boolean borrowAndReturn() {
+        String isbn = isbns[ThreadLocalRandom.current().nextInt(isbns.length)];
+        if (library.tryBorrowBook(isbn, "123456789012") != BorrowResult.BORROWED) {
+            // Another thread holds the book right now.
+            return false;
+        }
+        return library.tryReturnBook(isbn) == ReturnResult.RETURNED;
+    }
+}
@@ -0,0 +1,64 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.IsbnKey;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.errors.BookAlreadyBorrowedException;
+import ac.il.bgu.qa.services.InMemoryDatabaseService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures borrow/return throughput of InMemoryDatabaseService under concurrent load.
+ * Run with -t to vary the number of threads, e.g. java -jar target/benchmarks.jar InMemoryDatabaseService -t 8
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InMemoryDatabaseServiceBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int books;
+
+    private InMemoryDatabaseService databaseService;
+
+    private String[] isbns;
+
+    @Setup
+    public void setUp() {
+        databaseService = new InMemoryDatabaseService();
+        isbns = new String[books];
+        int i = 0;
+        for (long key = 9780000000000L; i < books; key++) {
+            String isbn = Long.toString(key);
+            if (IsbnKey.of(isbn) != IsbnKey.INVALID) {
+                isbns[i++] = isbn;
+                databaseService.addBook(isbn, new Book(isbn, "Title", "Author"));
+            }
+        }
+        databaseService.registerUser("123456789012", new User("Name", "123456789012", null));
+    }
+
+    @Benchmark
+    public boolean borrowAndReturn() {
+        String isbn = isbns[ThreadLocalRandom.current().nextInt(isbns.length)];
+        try {
+            databaseService.borrowBook(isbn, "123456789012");
+        } catch (BookAlreadyBorrowedException e) {
+            // Another thread holds the book right now.
+            return false;
+        }
+        databaseService.returnBook(isbn);
+        return true;
+    }
+
+    @Benchmark
+    public Book lookup() {
+        return databaseService.getBookByISBN(isbns[ThreadLocalRandom.current().nextInt(isbns.length)]);
+    }
+}
@@ -0,0 +1,212 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.services.InMemoryDatabaseService;
+import ac.il.bgu.qa.services.NotificationService;
+import ac.il.bgu.qa.services.ReviewService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the public operations of Library against an InMemoryDatabaseService, to catch regressions.
+ * Every operation is reported as throughput and as sampled latency, with percentiles.
+ * A hit is a request for a book or user in the catalogue; the other requests use valid Ids that
+ * aren't, and take the failure path. For addBook and registerUser a hit is a duplicate.
+ * borrowBook and returnBook run together in the "loan" group, one thread each, so the catalogue
+ * stays in a steady state with about half the requested books on loan.
+ * Vary the threads with -t (-tg for the loan group) and add -prof gc for the allocation rate, e.g.
+ * java -jar target/benchmarks.jar LibraryBenchmark -t 4 -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LibraryBenchmark {
+
+    // Prefixes of the generated Ids, kept apart so they never collide.
+    private static final long CATALOGUE_PREFIX = 978_000000000L;
+    private static final long MISSING_PREFIX = 979_900000000L;
+    private static final long ADDED_PREFIX = 979_000000000L;
+    private static final long REGISTERED_USERS = 100000000000L;
+    private static final long MISSING_USERS = 800000000000L;
+    private static final long ADDED_USERS = 200000000000L;
+
+    private static final int USERS = 1024;
+    private static final int MISSES = 1024;
+
+    @Param({"10000", "1000000"})
+    public int books;
+
+    @Param({"1.0", "0.5"})
+    public double hitRatio;
+
+    private Library library;
+
+    private String[] catalogue;
+    private String[] missingBooks;
+    private String[] users;
+    private String[] missingUsers;
+
+    private NotificationService notificationService;
+
+    // Hands every thread its own range of new Ids.
+    private final AtomicInteger threads = new AtomicInteger();
+
+    /**
+     * Builds a fresh catalogue before every iteration, undoing the books and users added by the previous one.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        List<String> reviews = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            reviews.add("Review number " + i + " of a book worth reading.");
+        }
+        ReviewService reviewService = new ReviewService() {
+            @Override
+            public List<String> getReviewsForBook(String ISBN) {
+                return reviews;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        notificationService = (userId, message) -> { };
+        library = new Library(new InMemoryDatabaseService(), reviewService);
+
+        catalogue = new String[books];
+        for (int i = 0; i < books; i++) {
+            catalogue[i] = isbn(CATALOGUE_PREFIX + i);
+            library.addBook(new Book(catalogue[i], "Title " + i, "Author Name"));
+        }
+        missingBooks = new String[MISSES];
+        for (int i = 0; i < MISSES; i++) {
+            missingBooks[i] = isbn(MISSING_PREFIX + i);
+        }
+        users = new String[USERS];
+        missingUsers = new String[USERS];
+        for (int i = 0; i < USERS; i++) {
+            users[i] = Long.toString(REGISTERED_USERS + i);
+            missingUsers[i] = Long.toString(MISSING_USERS + i);
+            library.registerUser(new User("Name", users[i], notificationService));
+        }
+        threads.set(0);
+    }
+
+    /**
+     * The new Ids of one thread.
+     */
+    @State(Scope.Thread)
+    public static class Sequence {
+        long nextBook;
+        long nextUser;
+
+        @Setup(Level.Iteration)
+        public void setUp(LibraryBenchmark benchmark) {
+            int thread = benchmark.threads.getAndIncrement();
+            nextBook = ADDED_PREFIX + thread * 10_000_000L;
+            nextUser = ADDED_USERS + thread * 1_000_000_000L;
+        }
+    }
+
+    @Benchmark
+    public boolean addBook(Sequence sequence) {
+        String isbn = hit() ? pick(catalogue) : isbn(sequence.nextBook++);
+        try {
+            library.addBook(new Book(isbn, "Title", "Author Name"));
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    public boolean registerUser(Sequence sequence) {
+        String userId = hit() ? pick(users) : Long.toString(sequence.nextUser++);
+        try {
+            library.registerUser(new User("Name", userId, notificationService));
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    @Group("loan")
+    @GroupThreads(1)
+    public boolean borrowBook() {
+        try {
+            library.borrowBook(book(), pick(users));
+            return true;
+        } catch (RuntimeException e) {
+            // Not in the catalogue, or on loan.
+            return false;
+        }
+    }
+
+    @Benchmark
+    @Group("loan")
+    @GroupThreads(1)
+    public boolean returnBook() {
+        try {
+            library.returnBook(book());
+            return true;
+        } catch (RuntimeException e) {
+            // Not in the catalogue, or not on loan.
+            return false;
+        }
+    }
+
+    @Benchmark
+    public boolean notifyUserWithBookReviews() {
+        String userId = hit() ? pick(users) : pick(missingUsers);
+        try {
+            library.notifyUserWithBookReviews(book(), userId);
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    public Book getBookByISBN() {
+        try {
+            return library.getBookByISBN(book(), pick(users));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private boolean hit() {
+        return hitRatio >= 1 || ThreadLocalRandom.current().nextDouble() < hitRatio;
+    }
+
+    private String book() {
+        return hit() ? pick(catalogue) : pick(missingBooks);
+    }
+
+    private static String pick(String[] ids) {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    /**
+     * Builds a valid ISBN-13 from its first 12 digits.
+     */
+    private static String isbn(long prefix) {
+        String digits = Long.toString(prefix);
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+}
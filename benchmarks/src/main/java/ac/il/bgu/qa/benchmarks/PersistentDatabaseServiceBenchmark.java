@@ -0,0 +1,76 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.IsbnKey;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.errors.BookAlreadyBorrowedException;
+import ac.il.bgu.qa.services.PersistentDatabaseService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures durable borrow/return throughput of PersistentDatabaseService, whose writes share fsyncs.
+ * The more threads, the more writes per fsync; run with -t to vary them, e.g.
+ * java -jar target/benchmarks.jar PersistentDatabaseService -t 16
+ * The log is created in the default temporary directory; point java.io.tmpdir at the disk to measure.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistentDatabaseServiceBenchmark {
+
+    @Param({"SYNC", "WRITE"})
+    public PersistentDatabaseService.Durability durability;
+
+    private static final int BOOKS = 10000;
+
+    private Path directory;
+
+    private PersistentDatabaseService databaseService;
+
+    private String[] isbns;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("library-log");
+        databaseService = PersistentDatabaseService.open(directory.resolve("library.log"), durability, (userId, message) -> { });
+        isbns = new String[BOOKS];
+        int i = 0;
+        for (long key = 9780000000000L; i < BOOKS; key++) {
+            String isbn = Long.toString(key);
+            if (IsbnKey.of(isbn) != IsbnKey.INVALID) {
+                isbns[i++] = isbn;
+                databaseService.addBook(isbn, new Book(isbn, "Title", "Author"));
+            }
+        }
+        databaseService.registerUser("123456789012", new User("Name", "123456789012", (userId, message) -> { }));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        databaseService.close();
+        Files.deleteIfExists(directory.resolve("library.log"));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public boolean borrowAndReturn() {
+        String isbn = isbns[ThreadLocalRandom.current().nextInt(isbns.length)];
+        try {
+            databaseService.borrowBook(isbn, "123456789012");
+        } catch (BookAlreadyBorrowedException e) {
+            // Another thread holds the book right now.
+            return false;
+        }
+        databaseService.returnBook(isbn);
+        return true;
+    }
+}
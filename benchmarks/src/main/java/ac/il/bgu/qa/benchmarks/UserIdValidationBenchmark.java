@@ -0,0 +1,36 @@
+package ac.il.bgu.qa.benchmarks;
+
+import ac.il.bgu.qa.UserIdValidator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the hand-written user Id validation with the regex check it replaced in Library.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserIdValidationBenchmark {
+
+    @Param({"123456789012", "12345678901a", "user"})
+    public String userId;
+
+    @Benchmark
+    public boolean regex() {
+        return userId != null && userId.matches("\\d{12}");
+    }
+
+    @Benchmark
+    public boolean validator() {
+        return UserIdValidator.isValid(userId);
+    }
+
+    @Benchmark
+    public long pack() {
+        return UserIdValidator.pack(userId);
+    }
+}
@@ -0,0 +1,30 @@
+package ac.il.bgu.qa;
+
+/**
+ * Outcome of {@link Library#tryAddBook(Book)}.
+ */
+public enum AddBookResult {
+    // The book was added to the database.
+    ADDED,
+    // The book is null.
+    INVALID_BOOK,
+    // The book's ISBN is not a valid ISBN-13.
+    INVALID_ISBN,
+    // The book's title is null or empty.
+    INVALID_TITLE,
+    // The book's author is not a valid author name.
+    INVALID_AUTHOR,
+    // The book is marked as borrowed.
+    INVALID_BORROWED_STATE,
+    // A book with the same ISBN already exists in the database.
+    ALREADY_EXISTS;
+
+    /**
+     * Checks whether the book was added.
+     *
+     * @return true if the result is {@link #ADDED}, otherwise false.
+     */
+    public boolean isSuccess() {
+        return this == ADDED;
+    }
+}
@@ -0,0 +1,320 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.errors.NotificationException;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends notifications to users off the caller's thread, retrying failed ones with backoff.
+ * Attempts run on a bounded executor. The wait between attempts is scheduled on a
+ * {@link ScheduledExecutorService} rather than slept, so no thread is held while a retry is pending.
+ * A notifier with its own thread pool bounds the number of queued tasks and handles overflow by its
+ * {@link RejectionPolicy}. Optional tasks follow the policy too, except {@link RejectionPolicy#CALLER_RUNS}:
+ * they are discarded instead, so that a full queue never slows down the caller that submitted them.
+ */
+public class AsyncNotifier implements AutoCloseable {
+
+    /**
+     * What a notifier with its own thread pool does with a task when its queue is full.
+     */
+    public enum RejectionPolicy {
+        // The new task fails with a RejectedExecutionException.
+        ABORT,
+        // The oldest queued task fails with a RejectedExecutionException and the new task is queued.
+        DISCARD_OLDEST,
+        // The new task runs on the submitting thread, slowing down the producer. A retry isn't run on the
+        // scheduler's thread that submits it but counted as a failed attempt and retried after its backoff delay.
+        CALLER_RUNS
+    }
+
+    // Runs the notification attempts.
+    private final Executor executor;
+    // Schedules the retries.
+    private final ScheduledExecutorService scheduler;
+    // How failed attempts are retried.
+    private final RetryPolicy retryPolicy;
+    // Whether the executors were created here and must be shut down on close.
+    private final boolean ownsExecutors;
+
+    // Number of tasks that failed because the queue was full.
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * Constructs a notifier on executors owned by the caller, who is responsible for shutting them down.
+     *
+     * @param executor    Runs the notification attempts; should be bounded.
+     * @param scheduler   Schedules the retries.
+     * @param retryPolicy How failed attempts are retried.
+     */
+    public AsyncNotifier(Executor executor, ScheduledExecutorService scheduler, RetryPolicy retryPolicy) {
+        this(executor, scheduler, retryPolicy, false);
+    }
+
+    private AsyncNotifier(Executor executor, ScheduledExecutorService scheduler, RetryPolicy retryPolicy, boolean ownsExecutors) {
+        if (executor == null || scheduler == null) {
+            throw new IllegalArgumentException("Invalid executor.");
+        } else if (retryPolicy == null) {
+            throw new IllegalArgumentException("Invalid retry policy.");
+        }
+        this.executor = executor;
+        this.scheduler = scheduler;
+        this.retryPolicy = retryPolicy;
+        this.ownsExecutors = ownsExecutors;
+    }
+
+    /**
+     * Constructs a notifier with its own fixed-size thread pool and bounded queue.
+     * Tasks submitted while the queue is full are rejected and their future fails with a
+     * {@link RejectedExecutionException}. The executors are shut down by {@link #close()}.
+     *
+     * @param threads       The number of threads sending notifications.
+     * @param queueCapacity The number of tasks that may wait for a thread.
+     * @param retryPolicy   How failed attempts are retried.
+     * @return The notifier.
+     */
+    public static AsyncNotifier create(int threads, int queueCapacity, RetryPolicy retryPolicy) {
+        return create(threads, queueCapacity, retryPolicy, RejectionPolicy.ABORT);
+    }
+
+    /**
+     * Constructs a notifier with its own fixed-size thread pool and bounded queue.
+     * The executors are shut down by {@link #close()}.
+     *
+     * @param threads         The number of threads sending notifications.
+     * @param queueCapacity   The number of tasks that may wait for a thread.
+     * @param retryPolicy     How failed attempts are retried.
+     * @param rejectionPolicy What to do with a task when the queue is full.
+     * @return The notifier.
+     */
+    public static AsyncNotifier create(int threads, int queueCapacity, RetryPolicy retryPolicy, RejectionPolicy rejectionPolicy) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid number of threads.");
+        } else if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Invalid queue capacity.");
+        } else if (rejectionPolicy == null) {
+            throw new IllegalArgumentException("Invalid rejection policy.");
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), daemonThreads("library-notifier-"));
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("library-notifier-retry-"));
+        AsyncNotifier notifier = new AsyncNotifier(executor, scheduler, retryPolicy, true);
+        executor.setRejectedExecutionHandler(notifier.rejectionHandler(rejectionPolicy));
+        return notifier;
+    }
+
+    /**
+     * Runs a task on the notifier's executor.
+     *
+     * @param task The task.
+     * @return A future completed with the result of the task.
+     */
+    <T> CompletableFuture<T> supply(Callable<T> task) {
+        return supply(task, false);
+    }
+
+    /**
+     * Runs a task on the notifier's executor.
+     *
+     * @param task     The task.
+     * @param optional Whether the task is discarded rather than run on the caller if the queue is full.
+     * @return A future completed with the result of the task.
+     */
+    <T> CompletableFuture<T> supply(Callable<T> task, boolean optional) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        execute(new Task(future, optional) {
+            @Override
+            public void run() {
+                try {
+                    future.complete(task.call());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Sends a notification to a user, retrying by the retry policy if it fails.
+     *
+     * @param user    The user to notify.
+     * @param message The content of the notification.
+     * @return A future completed once the notification is sent, or failed with a
+     * {@link NotificationException} once all attempts have failed.
+     */
+    public CompletableFuture<Void> send(User user, String message) {
+        return send(user, message, false);
+    }
+
+    /**
+     * Sends a notification to a user, retrying by the retry policy if it fails.
+     *
+     * @param user     The user to notify.
+     * @param message  The content of the notification.
+     * @param optional Whether the attempts are discarded rather than run on the caller if the queue is full.
+     * @return A future completed once the notification is sent, or failed once all attempts have failed.
+     */
+    CompletableFuture<Void> send(User user, String message, boolean optional) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        attempt(user, message, 1, optional, result);
+        return result;
+    }
+
+    private void attempt(User user, String message, int attempt, boolean optional, CompletableFuture<Void> result) {
+        execute(new Task(result, optional) {
+            @Override
+            public void run() {
+                try {
+                    user.sendNotification(message);
+                    result.complete(null);
+                } catch (NotificationException e) {
+                    retry(user, message, attempt, optional, result, e);
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            }
+
+            @Override
+            void runOnCaller() {
+                if (attempt == 1) {
+                    run();
+                } else {
+                    // Submitted by the scheduler's only thread, running it there would hold up every other retry.
+                    // Counted as a failed attempt, so a queue that stays full can't keep the notification pending forever.
+                    retry(user, message, attempt, optional, result, new NotificationException("Notification queue is full!"));
+                }
+            }
+        });
+    }
+
+    private void retry(User user, String message, int attempt, boolean optional, CompletableFuture<Void> result,
+                       NotificationException cause) {
+        if (attempt >= retryPolicy.getMaxAttempts()) {
+            NotificationException failure = new NotificationException("Notification failed!");
+            failure.addSuppressed(cause);
+            result.completeExceptionally(failure);
+            return;
+        }
+
+        schedule(user, message, attempt + 1, optional, result);
+    }
+
+    /**
+     * Schedules an attempt after the backoff delay that precedes it.
+     */
+    private void schedule(User user, String message, int attempt, boolean optional, CompletableFuture<Void> result) {
+        long delay = retryPolicy.delayNanos(attempt - 1, ThreadLocalRandom.current().nextDouble());
+        try {
+            scheduler.schedule(() -> attempt(user, message, attempt, optional, result), delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Retrieves the number of tasks that failed because the queue was full, or the executor was shut down.
+     *
+     * @return The number of rejected tasks.
+     */
+    public long getRejectedCount() {
+        return rejections.sum();
+    }
+
+    /**
+     * Shuts down the executors if they were created by {@link #create(int, int, RetryPolicy)}.
+     * Pending retries are dropped.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutors) {
+            scheduler.shutdownNow();
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    private void execute(Task task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.reject(e);
+        }
+    }
+
+    private RejectedExecutionHandler rejectionHandler(RejectionPolicy policy) {
+        RejectedExecutionHandler handler = policyHandler(policy);
+        return (task, pool) -> {
+            if (policy == RejectionPolicy.CALLER_RUNS && task instanceof Task && ((Task) task).optional) {
+                throw new RejectedExecutionException("Optional notification discarded.");
+            }
+            handler.rejectedExecution(task, pool);
+        };
+    }
+
+    private RejectedExecutionHandler policyHandler(RejectionPolicy policy) {
+        switch (policy) {
+            case DISCARD_OLDEST:
+                return (task, pool) -> {
+                    if (pool.isShutdown()) {
+                        throw new RejectedExecutionException("Notifier is closed.");
+                    }
+                    Runnable oldest = pool.getQueue().poll();
+                    if (oldest instanceof Task) {
+                        ((Task) oldest).reject(new RejectedExecutionException("Discarded for a newer notification."));
+                    }
+                    pool.execute(task);
+                };
+            case CALLER_RUNS:
+                return (task, pool) -> {
+                    if (pool.isShutdown()) {
+                        throw new RejectedExecutionException("Notifier is closed.");
+                    }
+                    if (task instanceof Task) {
+                        ((Task) task).runOnCaller();
+                    } else {
+                        task.run();
+                    }
+                };
+            default:
+                return (task, pool) -> {
+                    throw new RejectedExecutionException("Notification queue is full.");
+                };
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * A task on the executor, which fails its future if it is rejected.
+     */
+    private abstract class Task implements Runnable {
+        private final CompletableFuture<?> future;
+        // Whether the task is discarded rather than run on the caller under CALLER_RUNS.
+        private final boolean optional;
+
+        Task(CompletableFuture<?> future, boolean optional) {
+            this.future = future;
+            this.optional = optional;
+        }
+
+        void reject(RejectedExecutionException e) {
+            rejections.increment();
+            future.completeExceptionally(e);
+        }
+
+        /**
+         * Handles the task being turned away by a full queue under {@link RejectionPolicy#CALLER_RUNS}.
+         */
+        void runOnCaller() {
+            run();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package ac.il.bgu.qa;
 
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
 /**
  * Represents a book with its essential details and borrowing status.
  */
@@ -10,8 +12,15 @@ public class Book {
     private final String title;
     // The name of the author of the book.
     private final String author;
-    // Status to check if the book is currently borrowed or not.
-    private boolean isBorrowed;
+    // Id of the user currently holding the book, or null if the book is not borrowed.
+    // Updated with compare-and-set only, so concurrent borrows and returns can't both succeed.
+    private volatile String borrowerId;
+
+    // Borrower recorded by borrow(), which doesn't know who borrows the book. Told apart by identity.
+    static final String UNKNOWN_BORROWER = new String("");
+
+    private static final AtomicReferenceFieldUpdater<Book, String> BORROWER =
+            AtomicReferenceFieldUpdater.newUpdater(Book.class, String.class, "borrowerId");
 
     /**
      * Constructs a new Book object.
@@ -24,7 +33,7 @@ public class Book {
         this.ISBN = ISBN;
         this.title = title;
         this.author = author;
-        this.isBorrowed = false;
+        this.borrowerId = null;
     }
 
     // Getter methods
@@ -62,7 +71,37 @@ public class Book {
      * @return true if the book is borrowed, otherwise false.
      */
     public boolean isBorrowed() {
-        return isBorrowed;
+        return borrowerId != null;
+    }
+
+    /**
+     * Retrieves the Id of the user currently holding the book.
+     *
+     * @return The borrower's Id, or null if the book is not borrowed or was borrowed without a user Id.
+     */
+    public String getBorrowerId() {
+        String borrower = borrowerId;
+        return borrower == UNKNOWN_BORROWER ? null : borrower;
+    }
+
+    /**
+     * Retrieves the borrowing status and the borrower's Id in a single read, so a concurrent return can't make them disagree.
+     *
+     * @return The borrower's Id, {@link #UNKNOWN_BORROWER} if the book was borrowed without a user Id,
+     * or null if it is not borrowed.
+     */
+    String getBorrower() {
+        return borrowerId;
+    }
+
+    /**
+     * Marks the book as borrowed again after a return that couldn't be recorded, unless it was borrowed meanwhile.
+     *
+     * @param borrower The borrower read with {@link #getBorrower()} before the return.
+     * @return true if the borrower was put back, false otherwise.
+     */
+    boolean restoreBorrower(String borrower) {
+        return borrower != null && BORROWER.compareAndSet(this, null, borrower);
     }
 
     /**
@@ -70,22 +109,42 @@ public class Book {
      * Throws an exception if the book is already borrowed.
      */
     public void borrow() {
-        if (!isBorrowed) {
-            isBorrowed = true;
-        } else {
+        if (!BORROWER.compareAndSet(this, null, UNKNOWN_BORROWER)) {
             throw new IllegalStateException("Book is already borrowed!");
         }
     }
 
+    /**
+     * Atomically marks the book as borrowed by a user, unless it is already borrowed.
+     * Unlike {@link #borrow()} a failure is reported through the return value, so losing a race costs no exception.
+     *
+     * @param userId The Id of the user borrowing the book.
+     * @return true if the book was borrowed by this call, false if it was already borrowed.
+     */
+    public boolean tryBorrow(String userId) {
+        if (userId == null) {
+            throw new IllegalArgumentException("Invalid user Id.");
+        }
+        return BORROWER.compareAndSet(this, null, userId);
+    }
+
     /**
      * Marks the book as returned/not borrowed.
      * Throws an exception if the book was not previously borrowed.
      */
     public void returnBook() {
-        if (isBorrowed) {
-            isBorrowed = false;
-        } else {
+        if (!tryReturn()) {
             throw new IllegalStateException("ac.il.bgu.qa.Book wasn't borrowed!");
         }
     }
+
+    /**
+     * Atomically marks the book as returned, unless it is not borrowed.
+     * Unlike {@link #returnBook()} a failure is reported through the return value.
+     *
+     * @return true if the book was returned by this call, false if it wasn't borrowed.
+     */
+    public boolean tryReturn() {
+        return BORROWER.getAndSet(this, null) != null;
+    }
 }
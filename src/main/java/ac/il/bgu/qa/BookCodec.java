@@ -0,0 +1,126 @@
+package ac.il.bgu.qa;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact, versioned binary format of a {@link Book}, written straight to and read straight from a
+ * {@link ByteBuffer}:
+ * a version byte, a flags byte holding the borrowed state, the ISBN packed by {@link IsbnKey} into 8 bytes,
+ * the title and the author as length-prefixed UTF-8, and the borrower's Id packed by
+ * {@link UserIdValidator} into 8 bytes if the book is borrowed by a known user.
+ * Encoding allocates nothing. A decoded book has the canonical ISBN, 13 digits without hyphens.
+ */
+public final class BookCodec {
+
+    // The version of the format written.
+    public static final byte VERSION = 1;
+
+    // Flags: the book is borrowed, and the Id of its borrower follows.
+    private static final int BORROWED = 1;
+    private static final int BORROWER_ID = 2;
+
+    private BookCodec() {
+    }
+
+    /**
+     * Computes the encoded size of a book.
+     *
+     * @param book The book.
+     * @return The number of bytes {@link #encode(Book, ByteBuffer)} takes.
+     */
+    public static int encodedSize(Book book) {
+        return encodedSize(book, book.getBorrowerId());
+    }
+
+    /**
+     * Computes the encoded size of a book borrowed by a given user.
+     *
+     * @param book       The book.
+     * @param borrowerId The Id of the user holding the book, or null if it is not borrowed.
+     * @return The number of bytes {@link #encode(Book, String, ByteBuffer)} takes.
+     */
+    public static int encodedSize(Book book, String borrowerId) {
+        return 2 + 8 + Utf8.encodedSize(book.getTitle()) + Utf8.encodedSize(book.getAuthor())
+                + (borrowerId == null ? 0 : 8);
+    }
+
+    /**
+     * Encodes a book at the position of a buffer, advancing it.
+     *
+     * @param book   The book.
+     * @param buffer The buffer to write to.
+     * @throws IllegalArgumentException If the ISBN or the Id of the borrower is not valid.
+     * @throws BufferOverflowException  If the buffer hasn't enough room; nothing is written then.
+     */
+    public static void encode(Book book, ByteBuffer buffer) {
+        // Read once, a return between two reads would encode a borrowed book without its borrower.
+        String borrower = book.getBorrower();
+        if (borrower == Book.UNKNOWN_BORROWER) {
+            encode(book, null, BORROWED, buffer);
+        } else {
+            encode(book, borrower, borrower == null ? 0 : BORROWED | BORROWER_ID, buffer);
+        }
+    }
+
+    /**
+     * Encodes a book as borrowed by a given user, whatever its own borrowed state, for stores that
+     * keep the borrow ledger apart from the books.
+     *
+     * @param book       The book.
+     * @param borrowerId The Id of the user holding the book, or null if it is not borrowed.
+     * @param buffer     The buffer to write to.
+     * @throws IllegalArgumentException If the ISBN or the Id of the borrower is not valid.
+     * @throws BufferOverflowException  If the buffer hasn't enough room; nothing is written then.
+     */
+    public static void encode(Book book, String borrowerId, ByteBuffer buffer) {
+        encode(book, borrowerId, borrowerId == null ? 0 : BORROWED | BORROWER_ID, buffer);
+    }
+
+    /**
+     * Decodes a book at the position of a buffer, advancing it.
+     *
+     * @param buffer The buffer to read from.
+     * @return The book, borrowed as it was encoded.
+     * @throws IllegalArgumentException If the buffer doesn't hold a book in a supported version.
+     * @throws BufferUnderflowException If the buffer ends in the middle of the book.
+     */
+    public static Book decode(ByteBuffer buffer) {
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported book format version " + version + ".");
+        }
+        int flags = buffer.get();
+        if ((flags & ~(BORROWED | BORROWER_ID)) != 0 || flags == BORROWER_ID) {
+            throw new IllegalArgumentException("Invalid book flags.");
+        }
+        Book book = new Book(IsbnKey.toString(buffer.getLong()), Utf8.read(buffer), Utf8.read(buffer));
+        if ((flags & BORROWER_ID) != 0) {
+            book.tryBorrow(UserIdValidator.unpack(buffer.getLong()));
+        } else if ((flags & BORROWED) != 0) {
+            book.borrow();
+        }
+        return book;
+    }
+
+    private static void encode(Book book, String borrowerId, int flags, ByteBuffer buffer) {
+        long key = IsbnKey.of(book.getISBN());
+        if (key == IsbnKey.INVALID) {
+            throw new IllegalArgumentException("Invalid ISBN.");
+        }
+        long borrower = borrowerId == null ? 0 : UserIdValidator.pack(borrowerId);
+        if (borrower == UserIdValidator.INVALID) {
+            throw new IllegalArgumentException("Invalid borrower Id.");
+        }
+        if (buffer.remaining() < encodedSize(book, borrowerId)) {
+            throw new BufferOverflowException();
+        }
+        buffer.put(VERSION).put((byte) flags).putLong(key);
+        Utf8.write(buffer, book.getTitle());
+        Utf8.write(buffer, book.getAuthor());
+        if (borrowerId != null) {
+            buffer.putLong(borrower);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package ac.il.bgu.qa;
+
+/**
+ * Outcome of {@link Library#tryBorrowBook(String, String)}.
+ */
+public enum BorrowResult {
+    // The book was borrowed by the user.
+    BORROWED,
+    // The ISBN is not a valid ISBN-13.
+    INVALID_ISBN,
+    // No book with the ISBN exists in the database.
+    BOOK_NOT_FOUND,
+    // The user Id is not a 12-digit number.
+    INVALID_USER_ID,
+    // No user with the Id is registered in the database.
+    USER_NOT_REGISTERED,
+    // The book is already borrowed.
+    ALREADY_BORROWED;
+
+    /**
+     * Checks whether the book was borrowed.
+     *
+     * @return true if the result is {@link #BORROWED}, otherwise false.
+     */
+    public boolean isSuccess() {
+        return this == BORROWED;
+    }
+}
@@ -0,0 +1,369 @@
+package ac.il.bgu.qa;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Loads a catalogue dump of books into a library.
+ * The dump is a CSV or TSV file of ISBN, title and author columns in UTF-8. Fields may be quoted
+ * with double quotes, doubling quotes inside them, but may not span lines.
+ * The file is memory-mapped and split into line-aligned chunks which are parsed in parallel, one
+ * per core. Parsed books are handed in batches through a bounded queue to
+ * {@link Library#importBooks(java.util.Iterator, int)}, which validates them by the same rules as
+ * {@link Library#addBook(Book)}, so the heap only ever holds a few batches no matter the file size.
+ */
+public class CatalogLoader {
+
+    // Default size of the chunks a file is split into.
+    private static final long DEFAULT_CHUNK_SIZE = 64L << 20;
+
+    // Marks the end of a chunk in the queue of parsed batches.
+    private static final List<Book> END_OF_CHUNK = Collections.emptyList();
+
+    // The library to load the books into.
+    private final Library library;
+    // The byte separating the columns.
+    private final byte delimiter;
+    // Whether the first line of the file holds column names.
+    private final boolean hasHeader;
+    // The number of books handed to the library at a time.
+    private final int batchSize;
+    // The number of chunks parsed at the same time.
+    private final int parallelism;
+    // The maximum size of a chunk.
+    private final long chunkSize;
+
+    /**
+     * Constructs a loader parsing on every available core, with batches of 10,000 books.
+     *
+     * @param library   The library to load the books into.
+     * @param delimiter The character separating the columns, ',' for CSV or '\t' for TSV.
+     * @param hasHeader Whether the first line of the file holds column names.
+     */
+    public CatalogLoader(Library library, char delimiter, boolean hasHeader) {
+        this(library, delimiter, hasHeader, 10_000, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a loader.
+     *
+     * @param library     The library to load the books into.
+     * @param delimiter   The character separating the columns, ',' for CSV or '\t' for TSV.
+     * @param hasHeader   Whether the first line of the file holds column names.
+     * @param batchSize   The number of books handed to the library at a time.
+     * @param parallelism The number of chunks parsed at the same time.
+     */
+    public CatalogLoader(Library library, char delimiter, boolean hasHeader, int batchSize, int parallelism) {
+        this(library, delimiter, hasHeader, batchSize, parallelism, DEFAULT_CHUNK_SIZE);
+    }
+
+    CatalogLoader(Library library, char delimiter, boolean hasHeader, int batchSize, int parallelism, long chunkSize) {
+        if (library == null) {
+            throw new IllegalArgumentException("Invalid library.");
+        } else if (delimiter == '"' || delimiter == '\n' || delimiter == '\r' || delimiter > 0x7f) {
+            throw new IllegalArgumentException("Invalid delimiter.");
+        } else if (batchSize < 1) {
+            throw new IllegalArgumentException("Invalid batch size.");
+        } else if (parallelism < 1) {
+            throw new IllegalArgumentException("Invalid parallelism.");
+        } else if (chunkSize < 1) {
+            throw new IllegalArgumentException("Invalid chunk size.");
+        }
+        this.library = library;
+        this.delimiter = (byte) delimiter;
+        this.hasHeader = hasHeader;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Loads the books of a catalogue file into the library.
+     * Lines that don't have exactly three columns are reported as rejected null records.
+     *
+     * @param file The catalogue file.
+     * @return The number of books added and the records rejected, with the reason of each.
+     * @throws IOException If the file can't be read.
+     */
+    public ImportReport load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = split(channel);
+            int chunks = bounds.length - 1;
+
+            ExecutorService parsers = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(chunks, 1)));
+            BlockingQueue<List<Book>> batches = new ArrayBlockingQueue<>(parallelism * 2);
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            try {
+                for (int i = 0; i < chunks; i++) {
+                    long start = bounds[i];
+                    long end = bounds[i + 1];
+                    parsers.execute(() -> {
+                        try {
+                            parseChunk(channel, start, end, batches);
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        } finally {
+                            putUninterruptibly(batches, END_OF_CHUNK);
+                        }
+                    });
+                }
+
+                // Import on this thread, so the library sees one batch at a time.
+                long imported = 0;
+                long rejected = 0;
+                List<ImportReport.Rejection> rejections = new ArrayList<>();
+                for (int ended = 0; ended < chunks; ) {
+                    List<Book> batch = batches.take();
+                    if (batch == END_OF_CHUNK) {
+                        ended++;
+                        continue;
+                    }
+                    ImportReport report = library.importBooks(batch.iterator(), batchSize);
+                    imported += report.getImportedCount();
+                    rejected += report.getRejectedCount();
+                    ImportReport.list(rejections, report.getRejections());
+                }
+
+                Throwable t = failure.get();
+                if (t instanceof IOException) {
+                    throw (IOException) t;
+                } else if (t instanceof RuntimeException) {
+                    throw (RuntimeException) t;
+                } else if (t != null) {
+                    throw new IOException("Failed to parse the catalogue.", t);
+                }
+                return new ImportReport(imported, rejected, rejections);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while loading the catalogue.", e);
+            } finally {
+                // Interrupt the parsers still running and make room for their end markers, each of them
+                // puts at most one more batch and one marker, which fits in the emptied queue.
+                parsers.shutdownNow();
+                batches.clear();
+            }
+        }
+    }
+
+    /**
+     * Splits a file into chunks starting at the beginning of a line.
+     *
+     * @param channel The file.
+     * @return The offsets where the chunks start, followed by the size of the file.
+     */
+    private long[] split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long count = Math.max(parallelism, (size + chunkSize - 1) / chunkSize);
+        count = Math.max(1, Math.min(count, size));
+
+        long[] bounds = new long[(int) count + 1];
+        int n = 0;
+        bounds[n++] = 0;
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        for (long i = 1; i < count; i++) {
+            long start = nextLine(channel, Math.max(size * i / count, bounds[n - 1]), probe);
+            if (start > bounds[n - 1] && start < size) {
+                bounds[n++] = start;
+            }
+        }
+        bounds[n++] = size;
+        return Arrays.copyOf(bounds, n);
+    }
+
+    /**
+     * Finds the start of the first line after a position.
+     *
+     * @param channel  The file.
+     * @param position The position to search from.
+     * @param probe    A buffer to read the file through.
+     * @return The position right after the next line break, or the size of the file if there is none.
+     */
+    private static long nextLine(FileChannel channel, long position, ByteBuffer probe) throws IOException {
+        while (true) {
+            probe.clear();
+            int read = channel.read(probe, position);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Parses the lines of a chunk and queues the books in batches.
+     *
+     * @param channel The file.
+     * @param start   The offset of the first line of the chunk.
+     * @param end     The offset right after the last line of the chunk.
+     * @param batches The queue of parsed batches.
+     */
+    private void parseChunk(FileChannel channel, long start, long end, BlockingQueue<List<Book>> batches)
+            throws IOException, InterruptedException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        LineParser parser = new LineParser(buffer, delimiter);
+        int limit = buffer.limit();
+
+        List<Book> batch = new ArrayList<>(batchSize);
+        int position = 0;
+        if (start == 0 && hasHeader) {
+            position = parser.endOfLine(0) + 1;
+        }
+        while (position < limit) {
+            int eol = parser.endOfLine(position);
+            // Skip blank lines, e.g. a trailing line break.
+            if (eol > position && !(eol == position + 1 && buffer.get(position) == '\r')) {
+                batch.add(parser.parse(position, eol));
+                if (batch.size() == batchSize) {
+                    batches.put(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            position = eol + 1;
+        }
+        if (!batch.isEmpty()) {
+            batches.put(batch);
+        }
+    }
+
+    private static void putUninterruptibly(BlockingQueue<List<Book>> queue, List<Book> element) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(element);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Parses the lines of one mapped chunk. Each instance is used by a single thread.
+     */
+    private static class LineParser {
+
+        // The mapped chunk.
+        private final ByteBuffer buffer;
+        // The byte separating the columns.
+        private final byte delimiter;
+        // The decoded columns of the current line.
+        private final String[] fields = new String[3];
+        // Scratch space for unescaping quoted fields.
+        private byte[] scratch = new byte[256];
+
+        LineParser(ByteBuffer buffer, byte delimiter) {
+            this.buffer = buffer;
+            this.delimiter = delimiter;
+        }
+
+        /**
+         * Finds the end of the line starting at a position.
+         *
+         * @param position The start of the line.
+         * @return The position of the line break, or the limit of the buffer if the line has none.
+         */
+        int endOfLine(int position) {
+            int limit = buffer.limit();
+            while (position < limit && buffer.get(position) != '\n') {
+                position++;
+            }
+            return position;
+        }
+
+        /**
+         * Parses a line into a book.
+         *
+         * @param start The position of the first byte of the line.
+         * @param end   The position of the line break.
+         * @return The book, or null if the line doesn't have exactly three columns.
+         */
+        Book parse(int start, int end) {
+            if (buffer.get(end - 1) == '\r') {
+                end--;
+            }
+
+            int count = 0;
+            int position = start;
+            while (true) {
+                if (count == fields.length) {
+                    return null;
+                }
+                position = readField(position, end, count++);
+                if (position < 0) {
+                    return null;
+                }
+                if (position == end) {
+                    break;
+                }
+                // Skip the delimiter.
+                position++;
+            }
+            return count == fields.length ? new Book(fields[0], fields[1], fields[2]) : null;
+        }
+
+        /**
+         * Reads one column of a line.
+         *
+         * @param position The position of the first byte of the column.
+         * @param end      The end of the line.
+         * @param index    The index of the column.
+         * @return The position of the delimiter or line end after the column, or -1 if the column is malformed.
+         */
+        private int readField(int position, int end, int index) {
+            if (position < end && buffer.get(position) == '"') {
+                int length = 0;
+                for (position++; position < end; position++) {
+                    byte b = buffer.get(position);
+                    if (b == '"') {
+                        // A doubled quote is a literal quote, a single one closes the field.
+                        if (position + 1 < end && buffer.get(position + 1) == '"') {
+                            position++;
+                        } else {
+                            fields[index] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+                            position++;
+                            return position == end || buffer.get(position) == delimiter ? position : -1;
+                        }
+                    }
+                    if (length == scratch.length) {
+                        scratch = Arrays.copyOf(scratch, length * 2);
+                    }
+                    scratch[length++] = b;
+                }
+                return -1;
+            }
+
+            int from = position;
+            while (position < end && buffer.get(position) != delimiter) {
+                position++;
+            }
+            int length = position - from;
+            if (length > scratch.length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                scratch[i] = buffer.get(from + i);
+            }
+            fields[index] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+            return position;
+        }
+    }
+}
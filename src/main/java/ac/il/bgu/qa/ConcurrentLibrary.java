@@ -0,0 +1,142 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.services.ReviewService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Library that may be shared by many threads.
+ * A borrow or return reads the book, checks and updates its state and then records it in the database;
+ * here the whole sequence runs under a lock, so the database never sees the operations on a book out of
+ * order. The locks are striped: each ISBN maps to one of a fixed number of locks by the hash of its
+ * canonical {@link IsbnKey}, so operations on the same book are serialized while operations on different
+ * books almost always take different locks and proceed in parallel. Batch operations take the locks of
+ * all their books in ascending stripe order, which rules out deadlocks between batches.
+ */
+public class ConcurrentLibrary extends Library {
+
+    // Locks by stripe. The number of stripes is a power of two.
+    private final ReentrantLock[] locks;
+
+    /**
+     * Constructs a library with four lock stripes per available core.
+     *
+     * @param databaseService The database of books and users.
+     * @param reviewService   The service to fetch reviews with.
+     */
+    public ConcurrentLibrary(DatabaseService databaseService, ReviewService reviewService) {
+        this(databaseService, reviewService, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a new ConcurrentLibrary.
+     *
+     * @param databaseService The database of books and users.
+     * @param reviewService   The service to fetch reviews with.
+     * @param stripes         The minimum number of locks, rounded up to a power of two.
+     */
+    public ConcurrentLibrary(DatabaseService databaseService, ReviewService reviewService, int stripes) {
+        super(databaseService, reviewService);
+        if (stripes < 1 || stripes > 1 << 16) {
+            throw new IllegalArgumentException("Invalid number of stripes.");
+        }
+        int size = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public BorrowResult tryBorrowBook(String ISBN, String userId) {
+        return withLock(ISBN, () -> super.tryBorrowBook(ISBN, userId));
+    }
+
+    @Override
+    public ReturnResult tryReturnBook(String ISBN) {
+        return withLock(ISBN, () -> super.tryReturnBook(ISBN));
+    }
+
+    @Override
+    public Map<String, BorrowResult> borrowBooks(String userId, Collection<String> ISBNs) {
+        return withLocks(ISBNs, () -> super.borrowBooks(userId, ISBNs));
+    }
+
+    @Override
+    public Map<String, ReturnResult> returnBooks(Collection<String> ISBNs) {
+        return withLocks(ISBNs, () -> super.returnBooks(ISBNs));
+    }
+
+    /**
+     * Retrieves the number of lock stripes.
+     *
+     * @return The number of stripes.
+     */
+    public int getStripeCount() {
+        return locks.length;
+    }
+
+    /**
+     * Finds the stripe of an ISBN.
+     *
+     * @param ISBN The ISBN.
+     * @return The index of its lock, or -1 if the ISBN is invalid and needs no lock.
+     */
+    int stripe(String ISBN) {
+        long key = IsbnKey.of(ISBN);
+        if (key == IsbnKey.INVALID) {
+            return -1;
+        }
+        // Spread the key so that consecutive ISBNs land on different stripes.
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key >>> 40) & (locks.length - 1);
+    }
+
+    private <T> T withLock(String ISBN, Supplier<T> operation) {
+        int stripe = stripe(ISBN);
+        if (stripe < 0) {
+            // Rejected before anything is read or written.
+            return operation.get();
+        }
+        ReentrantLock lock = locks[stripe];
+        lock.lock();
+        try {
+            return operation.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private <T> T withLocks(Collection<String> ISBNs, Supplier<T> operation) {
+        if (ISBNs == null) {
+            return operation.get();
+        }
+        boolean[] needed = new boolean[locks.length];
+        for (String ISBN : ISBNs) {
+            int stripe = stripe(ISBN);
+            if (stripe >= 0) {
+                needed[stripe] = true;
+            }
+        }
+        List<ReentrantLock> held = new ArrayList<>();
+        try {
+            for (int i = 0; i < needed.length; i++) {
+                if (needed[i]) {
+                    locks[i].lock();
+                    held.add(locks[i]);
+                }
+            }
+            return operation.get();
+        } finally {
+            for (int i = held.size() - 1; i >= 0; i--) {
+                held.get(i).unlock();
+            }
+        }
+    }
+}
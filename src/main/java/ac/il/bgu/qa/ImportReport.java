@@ -0,0 +1,124 @@
+package ac.il.bgu.qa;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Summary of a bulk import of books into the library.
+ * Every rejected book is counted, but only the first {@link #MAX_LISTED_REJECTIONS} are listed, so
+ * the report of a stream with a lot of bad records stays small.
+ */
+public class ImportReport {
+
+    // The most rejected books an import lists.
+    public static final int MAX_LISTED_REJECTIONS = 1000;
+
+    // Number of books added to the database.
+    private final long importedCount;
+    // Number of books that were not added.
+    private final long rejectedCount;
+    // The first books that were not added, with the reason of each.
+    private final List<Rejection> rejections;
+
+    /**
+     * Constructs a new ImportReport listing every rejected book.
+     *
+     * @param importedCount The number of books added to the database.
+     * @param rejections    The books that were not added.
+     */
+    public ImportReport(long importedCount, List<Rejection> rejections) {
+        this(importedCount, rejections.size(), rejections);
+    }
+
+    /**
+     * Constructs a new ImportReport.
+     *
+     * @param importedCount The number of books added to the database.
+     * @param rejectedCount The number of books that were not added.
+     * @param rejections    The first books that were not added.
+     */
+    public ImportReport(long importedCount, long rejectedCount, List<Rejection> rejections) {
+        this.importedCount = importedCount;
+        this.rejectedCount = rejectedCount;
+        this.rejections = Collections.unmodifiableList(rejections);
+    }
+
+    /**
+     * Adds rejected books to a list of the first ones, as long as it has fewer than {@link #MAX_LISTED_REJECTIONS}.
+     *
+     * @param listed     The rejected books listed so far.
+     * @param rejections The rejected books to add.
+     */
+    static void list(List<Rejection> listed, List<Rejection> rejections) {
+        for (int i = 0; i < rejections.size() && listed.size() < MAX_LISTED_REJECTIONS; i++) {
+            listed.add(rejections.get(i));
+        }
+    }
+
+    /**
+     * Retrieves the number of books added to the database.
+     *
+     * @return The number of imported books.
+     */
+    public long getImportedCount() {
+        return importedCount;
+    }
+
+    /**
+     * Retrieves the number of books that were not added to the database, listed or not.
+     *
+     * @return The number of rejected books.
+     */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Retrieves the first books that were not added to the database.
+     *
+     * @return The rejected books, in input order, at most {@link #MAX_LISTED_REJECTIONS} of them.
+     */
+    public List<Rejection> getRejections() {
+        return rejections;
+    }
+
+    /**
+     * A book that was not imported and the reason why.
+     */
+    public static class Rejection {
+
+        // The rejected book.
+        private final Book book;
+        // The reason the book was rejected.
+        private final AddBookResult reason;
+
+        /**
+         * Constructs a new Rejection.
+         *
+         * @param book   The rejected book.
+         * @param reason The reason the book was rejected.
+         */
+        public Rejection(Book book, AddBookResult reason) {
+            this.book = book;
+            this.reason = reason;
+        }
+
+        /**
+         * Retrieves the rejected book.
+         *
+         * @return The book, or null if a null record was imported.
+         */
+        public Book getBook() {
+            return book;
+        }
+
+        /**
+         * Retrieves the reason the book was rejected.
+         *
+         * @return The reason, the same {@link Library#tryAddBook(Book)} would have given.
+         */
+        public AddBookResult getReason() {
+            return reason;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package ac.il.bgu.qa;
+
+/**
+ * Canonical primitive key of an ISBN-13.
+ * The 13 digits of a valid ISBN, hyphens removed, are packed into a {@code long}, so that
+ * "978-0-306-40615-7" and "9780306406157" map to the same key and lookups never hash a string.
+ */
+public final class IsbnKey {
+
+    // Value returned by of for ISBNs that are not valid. Valid keys are never negative.
+    public static final long INVALID = -1L;
+
+    private IsbnKey() {
+    }
+
+    /**
+     * Packs an ISBN-13 into its canonical key.
+     * The ISBN is validated in the same pass, with the checksum of {@link IsbnValidator}, which validates
+     * character input through this method.
+     *
+     * @param isbn The International Standard Book Number, with or without hyphens.
+     * @return The key of the ISBN, or {@link #INVALID} if the ISBN is not valid.
+     */
+    public static long of(CharSequence isbn) {
+        if (isbn == null) {
+            return INVALID;
+        }
+
+        long key = 0;
+        int digits = 0;
+        int sum = 0;
+        for (int i = 0, n = isbn.length(); i < n; i++) {
+            char c = isbn.charAt(i);
+            if (c == '-') {
+                continue;
+            }
+            if (c < '0' || c > '9' || digits == IsbnValidator.ISBN_LENGTH) {
+                return INVALID;
+            }
+
+            int digit = c - '0';
+            key = key * 10 + digit;
+            sum += IsbnValidator.weigh(digit, digits++);
+        }
+
+        return IsbnValidator.isChecksumValid(digits, sum) ? key : INVALID;
+    }
+
+    /**
+     * Restores the canonical form of an ISBN from its key.
+     *
+     * @param key A key previously returned by {@link #of(CharSequence)}.
+     * @return The 13 digits of the ISBN without hyphens.
+     */
+    public static String toString(long key) {
+        if (key < 0 || key > 9_999_999_999_999L) {
+            throw new IllegalArgumentException("Invalid ISBN key.");
+        }
+
+        char[] digits = new char[IsbnValidator.ISBN_LENGTH];
+        for (int i = IsbnValidator.ISBN_LENGTH - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + key % 10);
+            key /= 10;
+        }
+        return new String(digits);
+    }
+}
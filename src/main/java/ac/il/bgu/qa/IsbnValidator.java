@@ -0,0 +1,93 @@
+package ac.il.bgu.qa;
+
+/**
+ * Validates ISBN-13 identifiers.
+ * Hyphens may appear anywhere and are ignored; the remaining characters must be exactly
+ * 13 ASCII digits whose ISBN-13 checksum is correct.
+ * All checks are done in a single pass over the input without allocating.
+ */
+public final class IsbnValidator {
+
+    // Number of digits in an ISBN-13.
+    static final int ISBN_LENGTH = 13;
+
+    private IsbnValidator() {
+    }
+
+    /**
+     * Validates if input is of type ISBN-13.
+     *
+     * @param isbn The International Standard Book Number to be validated.
+     * @return true if valid, false otherwise.
+     */
+    public static boolean isValid(CharSequence isbn) {
+        // Packing the ISBN validates it, so there is a single scan of character input to maintain
+        return IsbnKey.of(isbn) != IsbnKey.INVALID;
+    }
+
+    /**
+     * Validates if an ASCII encoded input is of type ISBN-13.
+     *
+     * @param isbn The ASCII bytes of the International Standard Book Number to be validated.
+     * @return true if valid, false otherwise.
+     */
+    public static boolean isValid(byte[] isbn) {
+        return isbn != null && isValid(isbn, 0, isbn.length);
+    }
+
+    /**
+     * Validates if a range of an ASCII encoded input is of type ISBN-13.
+     *
+     * @param isbn   The buffer holding the ASCII bytes of the ISBN.
+     * @param offset The index of the first byte of the ISBN.
+     * @param length The number of bytes of the ISBN.
+     * @return true if valid, false otherwise.
+     */
+    public static boolean isValid(byte[] isbn, int offset, int length) {
+        if (isbn == null) {
+            return false;
+        }
+
+        int digits = 0;
+        int sum = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            byte b = isbn[i];
+
+            if (b == '-') {
+                continue;
+            }
+
+            if (b < '0' || b > '9' || digits == ISBN_LENGTH) {
+                return false;
+            }
+
+            sum += weigh(b - '0', digits++);
+        }
+
+        return isChecksumValid(digits, sum);
+    }
+
+    /**
+     * Applies the ISBN-13 weight to a digit.
+     * Odd position numbers are multiplied by 1, even position numbers are multiplied by 3.
+     * The check digit sits at an odd position, so a valid ISBN sums to a multiple of 10.
+     *
+     * @param digit    The digit value.
+     * @param position The zero based position of the digit, hyphens excluded.
+     * @return The weighted digit.
+     */
+    static int weigh(int digit, int position) {
+        return (position & 1) == 0 ? digit : digit * 3;
+    }
+
+    /**
+     * Checks the outcome of a scan: exactly 13 digits whose weighted sum is a multiple of 10.
+     *
+     * @param digits The number of digits scanned.
+     * @param sum    The sum of the weighted digits.
+     * @return true if the digits form a valid ISBN-13, false otherwise.
+     */
+    static boolean isChecksumValid(int digits, int sum) {
+        return digits == ISBN_LENGTH && sum % 10 == 0;
+    }
+}
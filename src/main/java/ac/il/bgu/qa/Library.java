@@ -1,10 +1,18 @@
 package ac.il.bgu.qa;
 
 import ac.il.bgu.qa.errors.*;
+import ac.il.bgu.qa.metrics.LatencyRecorder;
+import ac.il.bgu.qa.metrics.LibraryMetrics;
 import ac.il.bgu.qa.services.DatabaseService;
 import ac.il.bgu.qa.services.ReviewService;
+import ac.il.bgu.qa.services.ReviewServicePool;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Represents a library which manages a collection of books and users.
@@ -14,13 +22,116 @@ public class Library {
     // Service to interact with the database
     private final DatabaseService databaseService;
 
-    // Service to fetch reviews for a book
+    // Service to fetch reviews for a book, closed after every fetch. Null when a pool is used.
     private final ReviewService reviewService;
 
+    // Pool of review services leased for every fetch and reused. Null when a single service is used.
+    private final ReviewServicePool reviewServicePool;
+
+    // Sends review notifications asynchronously, including the optional one of getBookByISBN,
+    // which is then queued instead of awaited. Null if asynchronous notifications aren't used.
+    private final AsyncNotifier asyncNotifier;
+
+    // Latencies of the operations, notification retries and exceptions, recorded on every call.
+    private final LibraryMetrics metrics;
+    private final LatencyRecorder addBookLatency;
+    private final LatencyRecorder importBooksLatency;
+    private final LatencyRecorder registerUserLatency;
+    private final LatencyRecorder borrowBookLatency;
+    private final LatencyRecorder returnBookLatency;
+    private final LatencyRecorder borrowBooksLatency;
+    private final LatencyRecorder returnBooksLatency;
+    private final LatencyRecorder notifyUserLatency;
+    private final LatencyRecorder notifyUsersLatency;
+    private final LatencyRecorder notifyUserAsyncLatency;
+    private final LatencyRecorder getBookLatency;
+    private final LongAdder notificationRetries;
+    private final LongAdder optionalNotificationFailures;
+
     // Constructor for Library, initializes both services
     public Library(DatabaseService databaseService, ReviewService reviewService) {
+        this(databaseService, reviewService, null, null, null);
+    }
+
+    // Constructor for Library, initializes both services and the notifier used by notifyUserWithBookReviewsAsync
+    // and getBookByISBN, which then returns without waiting for the notification
+    public Library(DatabaseService databaseService, ReviewService reviewService, AsyncNotifier asyncNotifier) {
+        this(databaseService, reviewService, null, asyncNotifier, null);
+    }
+
+    // Constructor for Library, initializes both services, the optional asynchronous notifier and the metrics
+    // the operations are recorded in, e.g. shared with metered services; null for metrics of its own
+    public Library(DatabaseService databaseService, ReviewService reviewService, AsyncNotifier asyncNotifier,
+                   LibraryMetrics metrics) {
+        this(databaseService, reviewService, null, asyncNotifier, metrics);
+    }
+
+    // Constructor for Library, initializes the database service and the pool review services are leased from
+    public Library(DatabaseService databaseService, ReviewServicePool reviewServicePool) {
+        this(databaseService, reviewServicePool, null);
+    }
+
+    // Constructor for Library, initializes the database service, the review service pool and the asynchronous notifier
+    public Library(DatabaseService databaseService, ReviewServicePool reviewServicePool, AsyncNotifier asyncNotifier) {
+        this(databaseService, null, requirePool(reviewServicePool), asyncNotifier, null);
+    }
+
+    // Constructor for Library, initializes the database service, the review service pool, the optional
+    // asynchronous notifier and the metrics the operations are recorded in, null for metrics of its own
+    public Library(DatabaseService databaseService, ReviewServicePool reviewServicePool, AsyncNotifier asyncNotifier,
+                   LibraryMetrics metrics) {
+        this(databaseService, null, requirePool(reviewServicePool), asyncNotifier, metrics);
+    }
+
+    private Library(DatabaseService databaseService, ReviewService reviewService,
+                    ReviewServicePool reviewServicePool, AsyncNotifier asyncNotifier, LibraryMetrics metrics) {
         this.databaseService = databaseService;
         this.reviewService = reviewService;
+        this.reviewServicePool = reviewServicePool;
+        this.asyncNotifier = asyncNotifier;
+        this.metrics = metrics == null ? new LibraryMetrics() : metrics;
+        this.addBookLatency = this.metrics.latency("library.addBook");
+        this.importBooksLatency = this.metrics.latency("library.importBooks");
+        this.registerUserLatency = this.metrics.latency("library.registerUser");
+        this.borrowBookLatency = this.metrics.latency("library.borrowBook");
+        this.returnBookLatency = this.metrics.latency("library.returnBook");
+        this.borrowBooksLatency = this.metrics.latency("library.borrowBooks");
+        this.returnBooksLatency = this.metrics.latency("library.returnBooks");
+        this.notifyUserLatency = this.metrics.latency("library.notifyUserWithBookReviews");
+        this.notifyUsersLatency = this.metrics.latency("library.notifyUsersWithBookReviews");
+        this.notifyUserAsyncLatency = this.metrics.latency("library.notifyUserWithBookReviewsAsync");
+        this.getBookLatency = this.metrics.latency("library.getBookByISBN");
+        this.notificationRetries = this.metrics.counter("library.notificationRetries");
+        this.optionalNotificationFailures = this.metrics.counter("library.getBookByISBN.notificationFailures");
+    }
+
+    private static ReviewServicePool requirePool(ReviewServicePool reviewServicePool) {
+        if (reviewServicePool == null) {
+            throw new IllegalArgumentException("Invalid review service pool.");
+        }
+        return reviewServicePool;
+    }
+
+    /**
+     * Retrieves the metrics of the library: the latency of every operation as "library." followed by
+     * its name, the number of notification retries and the number of exceptions thrown by type.
+     * The throwing and the result-returning variants of an operation share its latency recorder.
+     *
+     * @return The metrics.
+     */
+    public LibraryMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Counts an exception about to be thrown by an operation.
+     *
+     * @param e The exception.
+     * @return The exception, to be thrown.
+     */
+    private RuntimeException recordError(RuntimeException e) {
+        metrics.recordError(e);
+        return e;
     }
 
     /**
@@ -29,68 +140,198 @@ public class Library {
      * @param book The book to be added.
      */
     public void addBook(Book book) {
-        // Multiple checks to validate the book object's properties
-        if (book == null) {
-            throw new IllegalArgumentException("Invalid book.");
-        } else if (!isISBNValid(book.getISBN())){
-            throw new IllegalArgumentException("Invalid ISBN.");
-        } else if (book.getTitle() == null || book.getTitle().equals("")) {
-            throw new IllegalArgumentException("Invalid title.");
-        } else if (!isAuthorValid(book.getAuthor())) {
-            throw new IllegalArgumentException("Invalid author.");
-        } else if (book.isBorrowed()) {
-            throw new IllegalArgumentException("Book with invalid borrowed state.");
+        switch (tryAddBook(book)) {
+            case INVALID_BOOK:
+                throw recordError(new IllegalArgumentException("Invalid book."));
+            case INVALID_ISBN:
+                throw recordError(new IllegalArgumentException("Invalid ISBN."));
+            case INVALID_TITLE:
+                throw recordError(new IllegalArgumentException("Invalid title."));
+            case INVALID_AUTHOR:
+                throw recordError(new IllegalArgumentException("Invalid author."));
+            case INVALID_BORROWED_STATE:
+                throw recordError(new IllegalArgumentException("Book with invalid borrowed state."));
+            case ALREADY_EXISTS:
+                throw recordError(new IllegalArgumentException("Book already exists."));
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Adds a book to the library's collection.
+     * A rejected book is reported through the result instead of an exception.
+     *
+     * @param book The book to be added.
+     * @return The outcome of the operation.
+     */
+    public AddBookResult tryAddBook(Book book) {
+        long start = System.nanoTime();
+        try {
+            AddBookResult invalid = validateBook(book);
+            if (invalid != null) {
+                return invalid;
+            }
+
+            // If book already exists in the database, reject it
+            if (databaseService.getBookByISBN(book.getISBN()) != null)
+                return AddBookResult.ALREADY_EXISTS;
+
+            // If all checks pass, add the book to the database
+            databaseService.addBook(book.getISBN(), book);
+            return AddBookResult.ADDED;
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            addBookLatency.record(System.nanoTime() - start);
         }
+    }
 
-        // If book already exists in the database, throw exception
-        if (databaseService.getBookByISBN(book.getISBN()) != null)
-            throw new IllegalArgumentException("Book already exists.");
+    /**
+     * Adds a stream of books to the library's collection, e.g. a nightly catalogue delta.
+     * The books are read in batches so the input never has to fit in memory, and only the first
+     * {@link ImportReport#MAX_LISTED_REJECTIONS} rejected books are kept for the report. The books of a
+     * batch are validated in parallel by the same rules as {@link #addBook(Book)}, checked for existence
+     * in one round-trip and written in one round-trip. Books sharing an ISBN with an earlier book of the
+     * same batch, in any spelling, are rejected as already existing; a book sharing an ISBN with one of an
+     * earlier batch is rejected as far as the database finds that book when checking for existence.
+     *
+     * @param books     The books to be added.
+     * @param batchSize The number of books read, checked and written at a time.
+     * @return The number of books added and rejected, and the first books rejected with the reason of each.
+     */
+    public ImportReport importBooks(Iterator<Book> books, int batchSize) {
+        long start = System.nanoTime();
+        try {
+            if (books == null) {
+                throw new IllegalArgumentException("Invalid books.");
+            } else if (batchSize < 1) {
+                throw new IllegalArgumentException("Invalid batch size.");
+            }
 
-        // If all checks pass, add the book to the database
-        databaseService.addBook(book.getISBN(), book);
+            long imported = 0;
+            long rejected = 0;
+            List<ImportReport.Rejection> rejections = new ArrayList<>();
+            List<ImportReport.Rejection> batchRejections = new ArrayList<>();
+            List<Book> batch = new ArrayList<>(batchSize);
+            while (books.hasNext()) {
+                batch.clear();
+                batchRejections.clear();
+                while (batch.size() < batchSize && books.hasNext()) {
+                    batch.add(books.next());
+                }
+                imported += importBatch(batch, batchRejections);
+                rejected += batchRejections.size();
+                ImportReport.list(rejections, batchRejections);
+            }
+            return new ImportReport(imported, rejected, rejections);
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            importBooksLatency.record(System.nanoTime() - start);
+        }
     }
 
     /**
-     *  Validates if input is of type ISBN-13.
+     * Adds a stream of books to the library's collection.
      *
-     *  @param isbn The International Standard Book Number to be validated.
-     *  @return true if valid, false otherwise.
-    */
-    private boolean isISBNValid(String isbn) {
-        // Check if the ISBN is null, return false if it is
-        if (isbn == null) {
-            return false;
+     * @param books     The books to be added.
+     * @param batchSize The number of books read, checked and written at a time.
+     * @return The number of books added and rejected, and the first books rejected with the reason of each.
+     * @see #importBooks(Iterator, int)
+     */
+    public ImportReport importBooks(Stream<Book> books, int batchSize) {
+        if (books == null) {
+            throw new IllegalArgumentException("Invalid books.");
         }
+        return importBooks(books.iterator(), batchSize);
+    }
 
-        // Remove any hyphen characters from the ISBN for standardization
-        isbn = isbn.replaceAll("-", "");
+    /**
+     * Validates, dedupes and writes one batch of an import.
+     *
+     * @param batch      The books of the batch.
+     * @param rejections The list to add the rejected books to.
+     * @return The number of books added.
+     */
+    private int importBatch(List<Book> batch, List<ImportReport.Rejection> rejections) {
+        // Validate the books in parallel, the rules are pure functions of the book.
+        List<AddBookResult> invalid = batch.parallelStream().map(this::validateBook).collect(Collectors.toList());
 
-        // Check if the sanitized ISBN is of length 13 and if contains only digits
-        if (isbn.length() != 13 || !isbn.matches("\\d+")) {
-            return false;
+        // Drop books repeating an ISBN of the same batch, then check all the others in one round-trip.
+        Map<Long, Book> candidates = new LinkedHashMap<>();
+        List<String> ISBNs = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Book book = batch.get(i);
+            if (invalid.get(i) != null) {
+                rejections.add(new ImportReport.Rejection(book, invalid.get(i)));
+            } else if (candidates.putIfAbsent(IsbnKey.of(book.getISBN()), book) != null) {
+                rejections.add(new ImportReport.Rejection(book, AddBookResult.ALREADY_EXISTS));
+            } else {
+                ISBNs.add(book.getISBN());
+            }
+        }
+        if (candidates.isEmpty()) {
+            return 0;
         }
+        Map<String, Book> existing = databaseService.getBooksByISBN(ISBNs);
 
-        // Calculate the sum based on the ISBN-13 rules:
-        // Odd position numbers are multiplied by 1
-        // Even position numbers are multiplied by 3
-        int sum = 0;
-        for (int i = 0; i < 12; i++) {
-            int digit = Integer.parseInt(String.valueOf(isbn.charAt(i)));
-            if (i % 2 == 0) {
-                sum += digit;
+        Map<String, Book> added = new LinkedHashMap<>();
+        for (Book book : candidates.values()) {
+            if (existing.containsKey(book.getISBN())) {
+                rejections.add(new ImportReport.Rejection(book, AddBookResult.ALREADY_EXISTS));
             } else {
-                sum += digit * 3;
+                added.put(book.getISBN(), book);
             }
         }
+        if (!added.isEmpty()) {
+            databaseService.addBooks(added);
+        }
+        return added.size();
+    }
 
-        // Calculate the check digit
-        int checkDigit = 10 - (sum % 10);
-        if (checkDigit == 10) {
-            checkDigit = 0;
+    /**
+     * Validates the properties of a book to be added to the library's collection.
+     *
+     * @param book The book to be validated.
+     * @return The reason the book is invalid, or null if it is valid.
+     */
+    private AddBookResult validateBook(Book book) {
+        // Multiple checks to validate the book object's properties
+        if (book == null) {
+            return AddBookResult.INVALID_BOOK;
+        } else if (!isISBNValid(book.getISBN())){
+            return AddBookResult.INVALID_ISBN;
+        } else if (book.getTitle() == null || book.getTitle().equals("")) {
+            return AddBookResult.INVALID_TITLE;
+        } else if (!isAuthorValid(book.getAuthor())) {
+            return AddBookResult.INVALID_AUTHOR;
+        } else if (book.isBorrowed()) {
+            return AddBookResult.INVALID_BORROWED_STATE;
         }
+        return null;
+    }
 
-        // Check if the calculated check digit matches the last digit of the ISBN
-        return checkDigit == Integer.parseInt(String.valueOf(isbn.charAt(12)));
+    /**
+     *  Validates if input is of type ISBN-13.
+     *
+     *  @param isbn The International Standard Book Number to be validated.
+     *  @return true if valid, false otherwise.
+    */
+    private boolean isISBNValid(String isbn) {
+        return IsbnValidator.isValid(isbn);
+    }
+
+    /**
+     *  Validates if input is a user Id of the correct format (a 12-digit number).
+     *
+     *  @param userId The user Id to be validated.
+     *  @return true if valid, false otherwise.
+    */
+    private boolean isUserIdValid(String userId) {
+        return UserIdValidator.isValid(userId);
     }
 
     /**
@@ -145,103 +386,339 @@ public class Library {
      * @param user The user to be registered.
      */
     public void registerUser(User user) {
-        // Multiple checks to validate the user object's properties.
-        if (user == null) {
-            throw new IllegalArgumentException("Invalid user.");
-        } else if (user.getId() == null || !user.getId().matches("\\d{12}")) {
-            throw new IllegalArgumentException("Invalid user Id.");
-        } else if (user.getName() == null || user.getName().equals("")) {
-            throw new IllegalArgumentException("Invalid user name.");
-        } else if (user.getNotificationService() == null) {
-            throw new IllegalArgumentException("Invalid notification service.");
-        }
+        long start = System.nanoTime();
+        try {
+            // Multiple checks to validate the user object's properties.
+            if (user == null) {
+                throw new IllegalArgumentException("Invalid user.");
+            } else if (!isUserIdValid(user.getId())) {
+                throw new IllegalArgumentException("Invalid user Id.");
+            } else if (user.getName() == null || user.getName().equals("")) {
+                throw new IllegalArgumentException("Invalid user name.");
+            } else if (user.getNotificationService() == null) {
+                throw new IllegalArgumentException("Invalid notification service.");
+            }
 
-        // Before registering, check if a user with the given Id already exists.
-        // If such a user is found, throw an exception.
-        if (databaseService.getUserById(user.getId()) != null)
-            throw new IllegalArgumentException("User already exists.");
+            // Before registering, check if a user with the given Id already exists.
+            // If such a user is found, throw an exception.
+            if (databaseService.getUserById(user.getId()) != null)
+                throw new IllegalArgumentException("User already exists.");
 
-        // If all checks have passed, call the database service to register the user.
-        databaseService.registerUser(user.getId(), user);
+            // If all checks have passed, call the database service to register the user.
+            databaseService.registerUser(user.getId(), user);
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            registerUserLatency.record(System.nanoTime() - start);
+        }
     }
 
 
     /**
      * Borrows a book for a user.
+     * Rejections of a well-formed request are expected on busy paths, so their exceptions carry no stack trace.
      *
      * @param ISBN   The International Standard Book Number of the book.
      * @param userId The Id of the user borrowing the book.
      */
     public void borrowBook(String ISBN, String userId) {
-
-        // Validate the ISBN. If it's invalid, throw an exception.
-        if (!isISBNValid(ISBN)) {
-            throw new IllegalArgumentException("Invalid ISBN.");
+        switch (tryBorrowBook(ISBN, userId)) {
+            case INVALID_ISBN:
+                throw recordError(new IllegalArgumentException("Invalid ISBN."));
+            case BOOK_NOT_FOUND:
+                throw recordError(new BookNotFoundException("Book not found!", false));
+            case INVALID_USER_ID:
+                throw recordError(new IllegalArgumentException("Invalid user Id."));
+            case USER_NOT_REGISTERED:
+                throw recordError(new UserNotRegisteredException("User not found!", false));
+            case ALREADY_BORROWED:
+                throw recordError(new BookAlreadyBorrowedException("Book is already borrowed!", false));
+            default:
+                break;
         }
+    }
 
-        // Retrieve the book associated with the ISBN from the database.
-        Book book = databaseService.getBookByISBN(ISBN);
+    /**
+     * Borrows a book for a user.
+     * A rejected borrow, including losing a race for the book to another user, is reported through
+     * the result instead of an exception, so busy checkout paths don't pay for exception construction.
+     *
+     * @param ISBN   The International Standard Book Number of the book.
+     * @param userId The Id of the user borrowing the book.
+     * @return The outcome of the operation.
+     */
+    public BorrowResult tryBorrowBook(String ISBN, String userId) {
+        long start = System.nanoTime();
+        try {
+            // Validate the ISBN.
+            if (!isISBNValid(ISBN)) {
+                return BorrowResult.INVALID_ISBN;
+            }
 
-        // If no book is found for the given ISBN, throw an exception.
-        if (book == null) {
-            throw new BookNotFoundException("Book not found!");
-        }
+            // Retrieve the book associated with the ISBN from the database.
+            Book book = databaseService.getBookByISBN(ISBN);
 
-        // Validate the user Id's format (should be a 12-digit number).
-        // If it's invalid, throw an exception.
-        if (userId == null || !userId.matches("\\d{12}")) {
-            throw new IllegalArgumentException("Invalid user Id.");
-        }
+            // Check that a book is found for the given ISBN.
+            if (book == null) {
+                return BorrowResult.BOOK_NOT_FOUND;
+            }
 
-        // Check if the user Id's corresponds to a registered user in the database.
-        // If not, throw an exception indicating the user is not registered.
-        if (databaseService.getUserById(userId) == null) {
-            throw new UserNotRegisteredException("User not found!");
-        }
+            // Validate the user Id's format (should be a 12-digit number).
+            if (!isUserIdValid(userId)) {
+                return BorrowResult.INVALID_USER_ID;
+            }
 
-        // If the book is already borrowed, throw an exception.
-        if (book.isBorrowed()) {
-            throw new BookAlreadyBorrowedException("Book is already borrowed!");
-        }
+            // Check if the user Id's corresponds to a registered user in the database.
+            if (databaseService.getUserById(userId) == null) {
+                return BorrowResult.USER_NOT_REGISTERED;
+            }
+
+            // Check if the book is already borrowed.
+            if (book.isBorrowed()) {
+                return BorrowResult.ALREADY_BORROWED;
+            }
 
-        // Mark the book as borrowed.
-        book.borrow();
+            // Mark the book as borrowed by the user. Another thread may have borrowed it since the check above,
+            // in which case the atomic update fails and the book is reported as already borrowed.
+            if (!book.tryBorrow(userId)) {
+                return BorrowResult.ALREADY_BORROWED;
+            }
 
-        // Record the borrowing transaction in the database by associating the book's ISBN with the user's Id.
-        databaseService.borrowBook(ISBN, userId);
+            // Record the borrowing transaction in the database by associating the book's ISBN with the user's Id.
+            // If that fails the borrow didn't happen, so the book is marked as not borrowed again.
+            try {
+                databaseService.borrowBook(ISBN, userId);
+            } catch (RuntimeException e) {
+                book.tryReturn();
+                throw e;
+            }
+            return BorrowResult.BORROWED;
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            borrowBookLatency.record(System.nanoTime() - start);
+        }
     }
 
     /**
      * Returns a previously borrowed book.
+     * Rejections of a well-formed request are expected on busy paths, so their exceptions carry no stack trace.
      *
      * @param ISBN The International Standard Book Number of the book.
      */
     public void returnBook(String ISBN) {
-        
-        // Validate the ISBN. If it's not valid, throw an exception.
-        if (!isISBNValid(ISBN)) {
-            throw new IllegalArgumentException("Invalid ISBN.");
+        switch (tryReturnBook(ISBN)) {
+            case INVALID_ISBN:
+                throw recordError(new IllegalArgumentException("Invalid ISBN."));
+            case BOOK_NOT_FOUND:
+                throw recordError(new BookNotFoundException("Book not found!", false));
+            case NOT_BORROWED:
+                throw recordError(new BookNotBorrowedException("Book wasn't borrowed!", false));
+            default:
+                break;
         }
+    }
 
-        // Retrieve the book associated with the ISBN from the database.
-        Book book = databaseService.getBookByISBN(ISBN);
+    /**
+     * Returns a previously borrowed book.
+     * A rejected return is reported through the result instead of an exception.
+     *
+     * @param ISBN The International Standard Book Number of the book.
+     * @return The outcome of the operation.
+     */
+    public ReturnResult tryReturnBook(String ISBN) {
+        long start = System.nanoTime();
+        try {
+            // Validate the ISBN.
+            if (!isISBNValid(ISBN)) {
+                return ReturnResult.INVALID_ISBN;
+            }
 
-        // If no book is found for the given ISBN, throw a book not found exception.
-        if (book == null) {
-            throw new BookNotFoundException("Book not found!");
+            // Retrieve the book associated with the ISBN from the database.
+            Book book = databaseService.getBookByISBN(ISBN);
+
+            // Check that a book is found for the given ISBN.
+            if (book == null) {
+                return ReturnResult.BOOK_NOT_FOUND;
+            }
+
+            // Check if the book is currently borrowed. If not, it means it was never borrowed
+            // or it has already been returned.
+            if (!book.isBorrowed()) {
+                return ReturnResult.NOT_BORROWED;
+            }
+
+            // Change the status of the book to not borrowed. If another thread returned it since the check above,
+            // the atomic update fails and the book is reported as not borrowed.
+            String borrower = book.getBorrower();
+            if (!book.tryReturn()) {
+                return ReturnResult.NOT_BORROWED;
+            }
+
+            // Update the database to reflect the returned status of the book.
+            // If that fails the return didn't happen, so the book goes back to its borrower.
+            try {
+                databaseService.returnBook(ISBN);
+            } catch (RuntimeException e) {
+                book.restoreBorrower(borrower);
+                throw e;
+            }
+            return ReturnResult.RETURNED;
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            returnBookLatency.record(System.nanoTime() - start);
         }
+    }
+
+    /**
+     * Borrows several books for a user, e.g. a stack of books scanned at a checkout desk.
+     * The user and the ISBNs are validated once, the books are fetched in one round-trip and the
+     * borrows that pass are recorded in one round-trip. Each book gets the result
+     * {@link #tryBorrowBook(String, String)} would have given it; repeated ISBNs are processed once.
+     *
+     * @param userId The Id of the user borrowing the books.
+     * @param ISBNs  The International Standard Book Numbers of the books.
+     * @return The result of every ISBN, in the order the ISBNs were given.
+     */
+    public Map<String, BorrowResult> borrowBooks(String userId, Collection<String> ISBNs) {
+        long start = System.nanoTime();
+        try {
+            Map<String, BorrowResult> results = new LinkedHashMap<>();
+            Map<String, Book> books = fetchBooks(ISBNs, results, BorrowResult.INVALID_ISBN);
 
-        // Check if the book is currently borrowed. If not, it means it was never borrowed
-        // or it has already been returned, therefore throw an exception.
-        if (!book.isBorrowed()) {
-            throw new BookNotBorrowedException("Book wasn't borrowed!");
+            // Validate the user once for the whole batch.
+            BorrowResult userResult = null;
+            if (!isUserIdValid(userId)) {
+                userResult = BorrowResult.INVALID_USER_ID;
+            } else if (!books.isEmpty() && databaseService.getUserById(userId) == null) {
+                userResult = BorrowResult.USER_NOT_REGISTERED;
+            }
+
+            List<String> borrowed = new ArrayList<>();
+            for (Map.Entry<String, BorrowResult> entry : results.entrySet()) {
+                if (entry.getValue() != null) {
+                    continue;
+                }
+                Book book = books.get(entry.getKey());
+                if (book == null) {
+                    entry.setValue(BorrowResult.BOOK_NOT_FOUND);
+                } else if (userResult != null) {
+                    entry.setValue(userResult);
+                } else if (book.isBorrowed() || !book.tryBorrow(userId)) {
+                    entry.setValue(BorrowResult.ALREADY_BORROWED);
+                } else {
+                    entry.setValue(BorrowResult.BORROWED);
+                    borrowed.add(entry.getKey());
+                }
+            }
+
+            // Record all the borrows in the database at once. If that fails, none of them happened.
+            if (!borrowed.isEmpty()) {
+                try {
+                    databaseService.borrowBooks(borrowed, userId);
+                } catch (RuntimeException e) {
+                    for (String ISBN : borrowed) {
+                        books.get(ISBN).tryReturn();
+                    }
+                    throw e;
+                }
+            }
+            return results;
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            borrowBooksLatency.record(System.nanoTime() - start);
         }
+    }
+
+    /**
+     * Returns several previously borrowed books.
+     * The ISBNs are validated once, the books are fetched in one round-trip and the returns that
+     * pass are recorded in one round-trip. Each book gets the result {@link #tryReturnBook(String)}
+     * would have given it; repeated ISBNs are processed once.
+     *
+     * @param ISBNs The International Standard Book Numbers of the books.
+     * @return The result of every ISBN, in the order the ISBNs were given.
+     */
+    public Map<String, ReturnResult> returnBooks(Collection<String> ISBNs) {
+        long start = System.nanoTime();
+        try {
+            Map<String, ReturnResult> results = new LinkedHashMap<>();
+            Map<String, Book> books = fetchBooks(ISBNs, results, ReturnResult.INVALID_ISBN);
 
-        // Change the status of the book to not borrowed.
-        book.returnBook();
+            List<String> returned = new ArrayList<>();
+            // The borrower of each returned book, read before the return.
+            List<String> borrowers = new ArrayList<>();
+            for (Map.Entry<String, ReturnResult> entry : results.entrySet()) {
+                if (entry.getValue() != null) {
+                    continue;
+                }
+                Book book = books.get(entry.getKey());
+                String borrower = book == null ? null : book.getBorrower();
+                if (book == null) {
+                    entry.setValue(ReturnResult.BOOK_NOT_FOUND);
+                } else if (!book.isBorrowed() || !book.tryReturn()) {
+                    entry.setValue(ReturnResult.NOT_BORROWED);
+                } else {
+                    entry.setValue(ReturnResult.RETURNED);
+                    returned.add(entry.getKey());
+                    borrowers.add(borrower);
+                }
+            }
 
-        // Update the database to reflect the returned status of the book.
-        databaseService.returnBook(ISBN);
+            // Record all the returns in the database at once. If that fails, none of them happened.
+            if (!returned.isEmpty()) {
+                try {
+                    databaseService.returnBooks(returned);
+                } catch (RuntimeException e) {
+                    for (int i = 0; i < returned.size(); i++) {
+                        books.get(returned.get(i)).restoreBorrower(borrowers.get(i));
+                    }
+                    throw e;
+                }
+            }
+            return results;
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            returnBooksLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Validates a batch of ISBNs and fetches the books of the valid ones in one round-trip.
+     * Every distinct ISBN gets an entry in the results, invalid ones with the given result and valid
+     * ones with null, to be filled in by the caller.
+     *
+     * @param ISBNs         The International Standard Book Numbers.
+     * @param results       The map to put the results in.
+     * @param invalidResult The result of an invalid ISBN.
+     * @return The books found, by ISBN.
+     */
+    private <R> Map<String, Book> fetchBooks(Collection<String> ISBNs, Map<String, R> results, R invalidResult) {
+        if (ISBNs == null) {
+            throw new IllegalArgumentException("Invalid ISBNs.");
+        }
+
+        List<String> valid = new ArrayList<>(ISBNs.size());
+        for (String ISBN : ISBNs) {
+            if (results.containsKey(ISBN)) {
+                continue;
+            }
+            if (isISBNValid(ISBN)) {
+                results.put(ISBN, null);
+                valid.add(ISBN);
+            } else {
+                results.put(ISBN, invalidResult);
+            }
+        }
+        return valid.isEmpty() ? Collections.<String, Book>emptyMap() : databaseService.getBooksByISBN(valid);
     }
 
     /**
@@ -251,6 +728,182 @@ public class Library {
      * @param userId The Id of the user to whom the reviews are to be sent.
      */
     public void notifyUserWithBookReviews(String ISBN, String userId) {
+        long start = System.nanoTime();
+        try {
+            ReviewNotification notification = prepareReviewNotification(ISBN, userId);
+            User user = notification.user;
+            String notificationMessage = notification.message;
+
+            sendWithRetries(() -> user.sendNotification(notificationMessage));
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            notifyUserLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Notifies several users with the reviews of a specified book.
+     * The reviews are fetched once and a single {@link ReviewDigest} is sent to every user, each
+     * with the same retries as {@link #notifyUserWithBookReviews(String, String)}.
+     *
+     * @param ISBN The ISBN of the book whose reviews are to be sent.
+     * @param userIds The Ids of the users to whom the reviews are to be sent.
+     * @return The reason each user couldn't be notified, by user Id. Empty if all the users were notified.
+     */
+    public Map<String, RuntimeException> notifyUsersWithBookReviews(String ISBN, Collection<String> userIds) {
+        return notifyUsersWithBookReviews(ISBN, userIds, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Notifies several users with the reviews of a specified book, sending only the first reviews
+     * that fit in a byte budget.
+     *
+     * @param ISBN The ISBN of the book whose reviews are to be sent.
+     * @param userIds The Ids of the users to whom the reviews are to be sent.
+     * @param maxBytes The maximum size of the UTF-8 encoded message.
+     * @return The reason each user couldn't be notified, by user Id. Empty if all the users were notified.
+     */
+    public Map<String, RuntimeException> notifyUsersWithBookReviews(String ISBN, Collection<String> userIds, int maxBytes) {
+        long start = System.nanoTime();
+        try {
+            // Validate the ISBN. If it's invalid, throw an exception.
+            if (!isISBNValid(ISBN)) {
+                throw new IllegalArgumentException("Invalid ISBN.");
+            }
+            if (userIds == null) {
+                throw new IllegalArgumentException("Invalid user Ids.");
+            }
+            if (maxBytes < 0) {
+                throw new IllegalArgumentException("Invalid byte budget.");
+            }
+
+            // Retrieve the book associated with the ISBN from the database.
+            Book book = databaseService.getBookByISBN(ISBN);
+            if (book == null) {
+                throw new BookNotFoundException("Book not found!");
+            }
+
+            // Build the message once, every user gets the same one.
+            ReviewDigest digest = new ReviewDigest(book.getTitle(), fetchReviews(ISBN)).limitBytes(maxBytes);
+
+            Map<String, RuntimeException> failures = new LinkedHashMap<>();
+            for (String userId : new LinkedHashSet<>(userIds)) {
+                if (!isUserIdValid(userId)) {
+                    failures.put(userId, new IllegalArgumentException("Invalid user Id."));
+                    continue;
+                }
+                User user = databaseService.getUserById(userId);
+                if (user == null) {
+                    failures.put(userId, new UserNotRegisteredException("User not found!", false));
+                    continue;
+                }
+                try {
+                    sendWithRetries(() -> user.sendNotification(digest));
+                } catch (NotificationException e) {
+                    failures.put(userId, e);
+                }
+            }
+            return failures;
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            notifyUsersLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Sends a notification, retrying up to 5 times if it fails.
+     *
+     * @param send Sends the notification once.
+     * @throws NotificationException If all the attempts failed.
+     */
+    private void sendWithRetries(Runnable send) {
+        // Attempt to send the notification to the user. If it fails, retry up to 5 times.
+        int retryCount = 0;
+        while (retryCount < 5) {
+            try {
+                send.run();
+                return;
+            } catch (NotificationException e) {
+                retryCount++;
+                notificationRetries.increment();
+                System.err.println("Notification failed! Retrying attempt " + retryCount + "/5");
+            }
+        }
+
+        // If all retry attempts fail, throw a notification exception.
+        throw new NotificationException("Notification failed!");
+    }
+
+    /**
+     * Notifies a user with the reviews of a specified book without blocking the caller.
+     * The checks, the review fetch and the notification all run on the library's {@link AsyncNotifier}.
+     * A failed notification is retried by the notifier's retry policy, waiting between attempts without
+     * holding a thread.
+     *
+     * @param ISBN The ISBN of the book whose reviews are to be sent.
+     * @param userId The Id of the user to whom the reviews are to be sent.
+     * @return A future completed once the notification is sent, or failed with the exception
+     * {@link #notifyUserWithBookReviews(String, String)} would have thrown.
+     */
+    public CompletableFuture<Void> notifyUserWithBookReviewsAsync(String ISBN, String userId) {
+        if (asyncNotifier == null) {
+            throw new IllegalStateException("Asynchronous notifications are not configured.");
+        }
+        return notifyAsync(ISBN, userId, false);
+    }
+
+    /**
+     * Sends a user the reviews of a book on the library's {@link AsyncNotifier}.
+     *
+     * @param ISBN     The ISBN of the book whose reviews are to be sent.
+     * @param userId   The Id of the user to whom the reviews are to be sent.
+     * @param optional Whether the notification is dropped rather than run on this thread if the notifier's
+     *                 queue is full.
+     * @return A future completed once the notification is sent.
+     */
+    private CompletableFuture<Void> notifyAsync(String ISBN, String userId, boolean optional) {
+        long start = System.nanoTime();
+        // The failures of an optional notification are handled by the caller and not counted as errors.
+        return asyncNotifier.supply(() -> optional
+                        ? metrics.supplyHandled(() -> prepareReviewNotification(ISBN, userId))
+                        : prepareReviewNotification(ISBN, userId), optional)
+                .thenCompose(notification -> asyncNotifier.send(
+                        optional ? handledUser(notification.user) : notification.user, notification.message, optional))
+                .whenComplete((ignored, e) -> {
+                    notifyUserAsyncLatency.record(System.nanoTime() - start);
+                    if (e != null && !optional) {
+                        metrics.recordError(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                    }
+                });
+    }
+
+    /**
+     * Wraps a user so that the exceptions of its notifications are not counted as errors.
+     *
+     * @param user The user.
+     * @return A user sending its notifications through the given one within {@link LibraryMetrics#runHandled(Runnable)}.
+     */
+    private User handledUser(User user) {
+        return new User(user.getName(), user.getId(), user.getNotificationService()) {
+            @Override
+            public void sendNotification(String message) {
+                metrics.runHandled(() -> user.sendNotification(message));
+            }
+        };
+    }
+
+    /**
+     * Validates a review notification request, fetches the reviews and builds the notification.
+     *
+     * @param ISBN The ISBN of the book whose reviews are to be sent.
+     * @param userId The Id of the user to whom the reviews are to be sent.
+     * @return The user to notify and the notification message.
+     */
+    private ReviewNotification prepareReviewNotification(String ISBN, String userId) {
 
         // Validate the ISBN. If it's invalid, throw an exception.
         if (!isISBNValid(ISBN)) {
@@ -259,7 +912,7 @@ public class Library {
 
         // Validate the user Id format (should be a 12-digit number).
         // If it's invalid, throw an exception.
-        if (userId == null || !userId.matches("\\d{12}")) {
+        if (!isUserIdValid(userId)) {
             throw new IllegalArgumentException("Invalid user Id.");
         }
 
@@ -280,9 +933,30 @@ public class Library {
         }
 
         // Fetch the list of reviews for the specified book using the review service.
+        List<String> reviews = fetchReviews(ISBN);
+
+        // Construct the notification message containing the book's title and its reviews.
+        String notificationMessage = new ReviewDigest(book.getTitle(), reviews).toString();
+        return new ReviewNotification(user, notificationMessage);
+    }
+
+    /**
+     * Fetches the reviews of a book from the review service.
+     *
+     * @param ISBN The ISBN of the book.
+     * @return The reviews, never empty.
+     * @throws NoReviewsFoundException If the book has no reviews.
+     * @throws ReviewServiceUnavailableException If the reviews couldn't be fetched.
+     */
+    private List<String> fetchReviews(String ISBN) {
         List<String> reviews;
+        ReviewService service = null;
+        // Set once the service answered; whatever else it throws, an Error included, leaves it suspect.
+        boolean answered = false;
         try {
-            reviews = reviewService.getReviewsForBook(ISBN);
+            service = acquireReviewService();
+            reviews = service.getReviewsForBook(ISBN);
+            answered = true;
 
             // If no reviews are found or the review list is empty, throw an exception.
             if (reviews == null || reviews.isEmpty()) {
@@ -292,71 +966,118 @@ public class Library {
             // If there's an issue fetching the reviews, throw a service unavailable exception.
             throw new ReviewServiceUnavailableException("Review service unavailable!");
         } finally {
-            // Always close the review service connection after attempting to fetch the reviews.
-            reviewService.close();
+            // Always close or hand back the review service connection after attempting to fetch the reviews.
+            if (service != null) {
+                releaseReviewService(service, !answered);
+            }
         }
+        return reviews;
+    }
 
-        // Construct the notification message containing the book's title and its reviews.
-        String notificationMessage = "Reviews for '" + book.getTitle() + "':\n" + String.join("\n", reviews);
+    /**
+     * Obtains the review service to fetch reviews with, leasing it from the pool if there is one.
+     *
+     * @return The review service.
+     * @throws ReviewException If no service could be leased.
+     */
+    private ReviewService acquireReviewService() {
+        return reviewServicePool == null ? reviewService : reviewServicePool.lease();
+    }
 
-        // Attempt to send the notification to the user. If it fails, retry up to 5 times.
-        int retryCount = 0;
-        while (retryCount < 5) {
-            try {
-                user.sendNotification(notificationMessage);
-                return;
-            } catch (NotificationException e) {
-                retryCount++;
-                System.err.println("Notification failed! Retrying attempt " + retryCount + "/5");
-            }
+    /**
+     * Finishes with a review service after a fetch. A single service is closed; a pooled one is handed
+     * back for reuse, unless the fetch failed, in which case the pool closes it.
+     *
+     * @param service The service returned by {@link #acquireReviewService()}.
+     * @param failed  Whether the fetch failed, the service not answering.
+     */
+    private void releaseReviewService(ReviewService service, boolean failed) {
+        if (reviewServicePool == null) {
+            service.close();
+        } else if (failed) {
+            reviewServicePool.invalidate(service);
+        } else {
+            reviewServicePool.release(service);
         }
-
-        // If all retry attempts fail, throw a notification exception.
-        throw new NotificationException("Notification failed!");
     }
 
     /**
      * Fetches a book by its ISBN and notifies the user with its reviews.
+     * If the library has an {@link AsyncNotifier}, the notification is queued on it and the book is
+     * returned without waiting for the review service or the notification. If the notifier's queue is
+     * full the notification is handled by the notifier's {@link AsyncNotifier.RejectionPolicy}, except that
+     * it is dropped rather than run on this thread under {@link AsyncNotifier.RejectionPolicy#CALLER_RUNS}.
      *
      * @param ISBN   The International Standard Book Number of the book to be fetched.
      * @param userId The Id of the user to be notified with the book's reviews.
      * @return       The book with the given ISBN if found, and notifies the user with its reviews.
      */
     public Book getBookByISBN(String ISBN, String userId) {
-        // Validate the ISBN. If it's invalid, throw an exception.
-        if (!isISBNValid(ISBN)) {
-            throw new IllegalArgumentException("Invalid ISBN.");
-        }
+        long start = System.nanoTime();
+        try {
+            // Validate the ISBN. If it's invalid, throw an exception.
+            if (!isISBNValid(ISBN)) {
+                throw new IllegalArgumentException("Invalid ISBN.");
+            }
 
-        // Validate the user Id format (should be a 12-digit number). 
-        // If it's invalid, throw an exception.
-        if (userId == null || !userId.matches("\\d{12}")) {
-            throw new IllegalArgumentException("Invalid user Id.");
-        }
+            // Validate the user Id format (should be a 12-digit number). 
+            // If it's invalid, throw an exception.
+            if (!isUserIdValid(userId)) {
+                throw new IllegalArgumentException("Invalid user Id.");
+            }
 
-        // Retrieve the book associated with the ISBN from the database.
-        Book book = databaseService.getBookByISBN(ISBN);
+            // Retrieve the book associated with the ISBN from the database.
+            Book book = databaseService.getBookByISBN(ISBN);
 
-        // If no book is found for the given ISBN, throw a book not found exception.
-        if (book == null) {
-            throw new BookNotFoundException("Book not found!");
-        }
+            // If no book is found for the given ISBN, throw a book not found exception.
+            if (book == null) {
+                throw new BookNotFoundException("Book not found!");
+            }
 
-        // If the book is already borrowed, throw an exception.
-        if (book.isBorrowed()) {
-            throw new BookAlreadyBorrowedException("Book was already borrowed!");
-        }
+            // If the book is already borrowed, throw an exception.
+            if (book.isBorrowed()) {
+                throw new BookAlreadyBorrowedException("Book was already borrowed!");
+            }
 
-        // Attempt to notify the user with the book's reviews.
-        // This step is optional, so even if it fails, the book should still be returned.
-        try {
-            notifyUserWithBookReviews(ISBN, userId);
-        } catch (Exception e) {
-            System.out.println("Notification failed!");
+            // Attempt to notify the user with the book's reviews.
+            // This step is optional, so even if it fails, the book should still be returned.
+            if (asyncNotifier != null) {
+                // Dropped if the notifier is saturated, rather than run on this thread.
+                notifyAsync(ISBN, userId, true).whenComplete((ignored, e) -> {
+                    if (e != null) {
+                        optionalNotificationFailures.increment();
+                    }
+                });
+            } else {
+                try {
+                    // Its failure is handled here, counted as a notification failure rather than an error.
+                    metrics.runHandled(() -> notifyUserWithBookReviews(ISBN, userId));
+                } catch (Exception e) {
+                    optionalNotificationFailures.increment();
+                    System.out.println("Notification failed!");
+                }
+            }
+
+            // Return the retrieved book.
+            return book;
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            getBookLatency.record(System.nanoTime() - start);
         }
+    }
 
-        // Return the retrieved book.
-        return book;
+    /**
+     * A notification message and the user it is for.
+     */
+    private static final class ReviewNotification {
+        private final User user;
+        private final String message;
+
+        ReviewNotification(User user, String message) {
+            this.user = user;
+            this.message = message;
+        }
     }
 }
-
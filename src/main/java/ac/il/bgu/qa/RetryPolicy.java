@@ -0,0 +1,82 @@
+package ac.il.bgu.qa;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes how a failed notification is retried: how many attempts are made in total and how long
+ * to wait before each retry. The wait grows exponentially from the initial delay up to the maximum
+ * delay, and a random part of it is shaved off so that retries of many failed notifications don't
+ * hit the provider at the same moment.
+ */
+public class RetryPolicy {
+
+    // The total number of attempts, the first one included.
+    private final int maxAttempts;
+    // The wait before the first retry, in nanoseconds.
+    private final long initialDelayNanos;
+    // The upper bound of the wait before a retry, in nanoseconds.
+    private final long maxDelayNanos;
+    // The factor the wait grows by after every retry.
+    private final double multiplier;
+    // The largest fraction of a wait that is randomly shaved off, between 0 and 1.
+    private final double jitter;
+
+    /**
+     * Constructs a new RetryPolicy.
+     *
+     * @param maxAttempts  The total number of attempts, the first one included.
+     * @param initialDelay The wait before the first retry.
+     * @param maxDelay     The upper bound of the wait before a retry.
+     * @param unit         The unit of both delays.
+     * @param multiplier   The factor the wait grows by after every retry, at least 1.
+     * @param jitter       The largest fraction of a wait that is randomly shaved off, between 0 and 1.
+     */
+    public RetryPolicy(int maxAttempts, long initialDelay, long maxDelay, TimeUnit unit, double multiplier, double jitter) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Invalid number of attempts.");
+        } else if (initialDelay < 0 || maxDelay < initialDelay) {
+            throw new IllegalArgumentException("Invalid delay.");
+        } else if (!(multiplier >= 1)) {
+            throw new IllegalArgumentException("Invalid multiplier.");
+        } else if (!(jitter >= 0 && jitter <= 1)) {
+            throw new IllegalArgumentException("Invalid jitter.");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialDelayNanos = unit.toNanos(initialDelay);
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+    }
+
+    /**
+     * Constructs the default policy: 5 attempts, like the synchronous notification, waiting from 100 ms
+     * up to 5 s between them, doubling every time, with up to half of every wait shaved off.
+     *
+     * @return The default policy.
+     */
+    public static RetryPolicy defaultPolicy() {
+        return new RetryPolicy(5, 100, 5_000, TimeUnit.MILLISECONDS, 2, 0.5);
+    }
+
+    /**
+     * Retrieves the total number of attempts.
+     *
+     * @return The number of attempts, the first one included.
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Computes the wait before a retry.
+     *
+     * @param retry  The number of the retry, 1 for the retry after the first attempt.
+     * @param random A uniformly distributed number in [0, 1), e.g. from ThreadLocalRandom.
+     * @return The wait, in nanoseconds.
+     */
+    public long delayNanos(int retry, double random) {
+        double delay = initialDelayNanos * Math.pow(multiplier, retry - 1);
+        delay = Math.min(delay, maxDelayNanos);
+        return (long) (delay * (1 - jitter * random));
+    }
+}
@@ -0,0 +1,24 @@
+package ac.il.bgu.qa;
+
+/**
+ * Outcome of {@link Library#tryReturnBook(String)}.
+ */
+public enum ReturnResult {
+    // The book was returned.
+    RETURNED,
+    // The ISBN is not a valid ISBN-13.
+    INVALID_ISBN,
+    // No book with the ISBN exists in the database.
+    BOOK_NOT_FOUND,
+    // The book is not borrowed.
+    NOT_BORROWED;
+
+    /**
+     * Checks whether the book was returned.
+     *
+     * @return true if the result is {@link #RETURNED}, otherwise false.
+     */
+    public boolean isSuccess() {
+        return this == RETURNED;
+    }
+}
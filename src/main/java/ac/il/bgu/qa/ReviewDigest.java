@@ -0,0 +1,206 @@
+package ac.il.bgu.qa;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The review notification message of a book: its title followed by its reviews, one per line.
+ * A digest is immutable and meant to be built once per book and shared by all the users notified
+ * about it. It is a {@link CharSequence} over the title and the reviews themselves, so reading it
+ * copies nothing; the full text is rendered into a pre-sized {@link String} or UTF-8
+ * {@link ByteBuffer} at most once, on first use, or streamed with {@link #writeTo(Appendable)}.
+ * A digest can be cut down to its first reviews or to a byte budget without copying the reviews.
+ */
+public final class ReviewDigest implements CharSequence {
+
+    // The first line of the message, up to and including its line break.
+    private final String header;
+    // The reviews, one per line after the header.
+    private final List<String> reviews;
+    // The offset of each review in the message.
+    private final int[] starts;
+    // The length of the message.
+    private final int length;
+
+    // The rendered message, null until first needed.
+    private volatile String text;
+    // The UTF-8 encoded message, null until first needed.
+    private volatile ByteBuffer bytes;
+
+    /**
+     * Constructs a digest of the reviews of a book.
+     *
+     * @param title   The title of the book.
+     * @param reviews The reviews of the book, in the order they are listed.
+     */
+    public ReviewDigest(String title, List<String> reviews) {
+        this(copy(reviews), "Reviews for '" + title + "':\n");
+    }
+
+    private ReviewDigest(List<String> reviews, String header) {
+        this.header = header;
+        this.reviews = reviews;
+        this.starts = new int[reviews.size()];
+        long position = header.length();
+        for (int i = 0; i < starts.length; i++) {
+            if (i > 0) {
+                // The line break after the previous review.
+                position++;
+            }
+            if (position > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Reviews too long.");
+            }
+            starts[i] = (int) position;
+            position += reviews.get(i).length();
+        }
+        if (position > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Reviews too long.");
+        }
+        this.length = (int) position;
+    }
+
+    /**
+     * Cuts the digest down to its first reviews.
+     *
+     * @param maxReviews The maximum number of reviews to keep.
+     * @return A digest of at most maxReviews reviews, this digest if it has no more.
+     */
+    public ReviewDigest limit(int maxReviews) {
+        if (maxReviews < 0) {
+            throw new IllegalArgumentException("Invalid number of reviews.");
+        }
+        if (maxReviews >= reviews.size()) {
+            return this;
+        }
+        return new ReviewDigest(reviews.subList(0, maxReviews), header);
+    }
+
+    /**
+     * Cuts the digest down to the first reviews that fit in a byte budget once UTF-8 encoded.
+     * Reviews are never cut in the middle. The header is always kept, even if it alone exceeds the budget.
+     *
+     * @param maxBytes The maximum size of the encoded message.
+     * @return A digest whose encoded message fits in maxBytes, this digest if it already does.
+     */
+    public ReviewDigest limitBytes(int maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Invalid byte budget.");
+        }
+        long size = Utf8.length(header);
+        int count = 0;
+        for (String review : reviews) {
+            size += Utf8.length(review) + (count > 0 ? 1 : 0);
+            if (size > maxBytes) {
+                break;
+            }
+            count++;
+        }
+        return limit(count);
+    }
+
+    /**
+     * Retrieves the number of reviews in the digest.
+     *
+     * @return The number of reviews.
+     */
+    public int getReviewCount() {
+        return reviews.size();
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        if (index < header.length()) {
+            return header.charAt(index);
+        }
+        int i = Arrays.binarySearch(starts, index);
+        if (i < 0) {
+            // Inside review -i - 2, or on the line break after it.
+            i = -i - 2;
+        }
+        String review = reviews.get(i);
+        int offset = index - starts[i];
+        return offset < review.length() ? review.charAt(offset) : '\n';
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    /**
+     * Writes the message to a destination without rendering it in memory first.
+     *
+     * @param out The destination.
+     * @throws IOException If the destination can't be written to.
+     */
+    public void writeTo(Appendable out) throws IOException {
+        out.append(header);
+        for (int i = 0; i < reviews.size(); i++) {
+            if (i > 0) {
+                out.append('\n');
+            }
+            out.append(reviews.get(i));
+        }
+    }
+
+    /**
+     * Retrieves the message UTF-8 encoded. The bytes are encoded once and shared by every caller.
+     *
+     * @return A read-only buffer positioned at the start of the message.
+     */
+    public ByteBuffer toByteBuffer() {
+        ByteBuffer encoded = bytes;
+        if (encoded == null) {
+            encoded = ByteBuffer.wrap(toString().getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+            bytes = encoded;
+        }
+        return encoded.duplicate();
+    }
+
+    /**
+     * Retrieves the message. It is rendered once, into a string of exactly its length.
+     *
+     * @return The message.
+     */
+    @Override
+    public String toString() {
+        String rendered = text;
+        if (rendered == null) {
+            StringBuilder builder = new StringBuilder(length);
+            try {
+                writeTo(builder);
+            } catch (IOException e) {
+                // A StringBuilder doesn't throw.
+                throw new IllegalStateException(e);
+            }
+            rendered = builder.toString();
+            text = rendered;
+        }
+        return rendered;
+    }
+
+    private static List<String> copy(List<String> reviews) {
+        if (reviews == null) {
+            throw new IllegalArgumentException("Invalid reviews.");
+        }
+        List<String> copy = new ArrayList<>(reviews.size());
+        for (String review : reviews) {
+            // Listed the way String.join lists them.
+            copy.add(String.valueOf(review));
+        }
+        return Collections.unmodifiableList(copy);
+    }
+}
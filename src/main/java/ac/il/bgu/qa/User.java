@@ -68,5 +68,16 @@ public class User {
         notificationService.notifyUser(id, message);
     }
 
+    /**
+     * Sends a notification message to this user without converting it to a {@link String} first,
+     * e.g. a {@link ReviewDigest} shared with other users.
+     *
+     * @param message The content of the notification.
+     * @throws NotificationException If there's an error while sending the notification.
+     */
+    public void sendNotification(CharSequence message) throws NotificationException {
+        notificationService.notifyUser(id, message);
+    }
+
 }
 
@@ -0,0 +1,71 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.services.NotificationService;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact, versioned binary format of a {@link User}, written straight to and read straight from a
+ * {@link ByteBuffer}:
+ * a version byte, the Id packed by {@link UserIdValidator} into 8 bytes and the name as length-prefixed UTF-8.
+ * The notification service is not part of the format; it is supplied when decoding.
+ * Encoding allocates nothing.
+ */
+public final class UserCodec {
+
+    // The version of the format written.
+    public static final byte VERSION = 1;
+
+    private UserCodec() {
+    }
+
+    /**
+     * Computes the encoded size of a user.
+     *
+     * @param user The user.
+     * @return The number of bytes {@link #encode(User, ByteBuffer)} takes.
+     */
+    public static int encodedSize(User user) {
+        return 1 + 8 + Utf8.encodedSize(user.getName());
+    }
+
+    /**
+     * Encodes a user at the position of a buffer, advancing it.
+     *
+     * @param user   The user.
+     * @param buffer The buffer to write to.
+     * @throws IllegalArgumentException If the Id of the user is not valid.
+     * @throws BufferOverflowException  If the buffer hasn't enough room; nothing is written then.
+     */
+    public static void encode(User user, ByteBuffer buffer) {
+        long id = UserIdValidator.pack(user.getId());
+        if (id == UserIdValidator.INVALID) {
+            throw new IllegalArgumentException("Invalid user Id.");
+        }
+        if (buffer.remaining() < encodedSize(user)) {
+            throw new BufferOverflowException();
+        }
+        buffer.put(VERSION).putLong(id);
+        Utf8.write(buffer, user.getName());
+    }
+
+    /**
+     * Decodes a user at the position of a buffer, advancing it.
+     *
+     * @param buffer              The buffer to read from.
+     * @param notificationService The notification service of the user.
+     * @return The user.
+     * @throws IllegalArgumentException If the buffer doesn't hold a user in a supported version.
+     * @throws BufferUnderflowException If the buffer ends in the middle of the user.
+     */
+    public static User decode(ByteBuffer buffer, NotificationService notificationService) {
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported user format version " + version + ".");
+        }
+        String id = UserIdValidator.unpack(buffer.getLong());
+        return new User(Utf8.read(buffer), id, notificationService);
+    }
+}
@@ -0,0 +1,81 @@
+package ac.il.bgu.qa;
+
+/**
+ * Validates user Ids, which must consist of exactly 12 ASCII digits.
+ * A valid Id can also be packed into a {@code long}, so that hot paths can key users by a primitive
+ * instead of hashing and comparing strings.
+ */
+public final class UserIdValidator {
+
+    // Number of digits in a user Id.
+    static final int USER_ID_LENGTH = 12;
+
+    // Value returned by pack for Ids that are not valid.
+    public static final long INVALID = -1L;
+
+    private UserIdValidator() {
+    }
+
+    /**
+     * Validates if input is a user Id of the correct format (a 12-digit number).
+     *
+     * @param userId The user Id to be validated.
+     * @return true if valid, false otherwise.
+     */
+    public static boolean isValid(CharSequence userId) {
+        if (userId == null || userId.length() != USER_ID_LENGTH) {
+            return false;
+        }
+
+        for (int i = 0; i < USER_ID_LENGTH; i++) {
+            char c = userId.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Packs a user Id into a long holding its numeric value.
+     * Leading zeros are significant for the Id but not for the value, which is fine since every
+     * valid Id has exactly 12 digits and {@link #unpack(long)} pads them back.
+     *
+     * @param userId The user Id to be packed.
+     * @return The packed Id, or {@link #INVALID} if the Id is not valid.
+     */
+    public static long pack(CharSequence userId) {
+        if (userId == null || userId.length() != USER_ID_LENGTH) {
+            return INVALID;
+        }
+
+        long value = 0;
+        for (int i = 0; i < USER_ID_LENGTH; i++) {
+            char c = userId.charAt(i);
+            if (c < '0' || c > '9') {
+                return INVALID;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Restores the user Id from its packed form.
+     *
+     * @param packed A value previously returned by {@link #pack(CharSequence)}.
+     * @return The 12-digit user Id.
+     */
+    public static String unpack(long packed) {
+        if (packed < 0 || packed > 999_999_999_999L) {
+            throw new IllegalArgumentException("Invalid packed user Id.");
+        }
+
+        char[] digits = new char[USER_ID_LENGTH];
+        for (int i = USER_ID_LENGTH - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + packed % 10);
+            packed /= 10;
+        }
+        return new String(digits);
+    }
+}
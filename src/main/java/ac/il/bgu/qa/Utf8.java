@@ -0,0 +1,147 @@
+package ac.il.bgu.qa;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Length-prefixed UTF-8 strings in byte buffers, shared by the codecs.
+ * A string is its length in bytes plus one as an unsigned varint, 0 standing for null, followed by
+ * its UTF-8 bytes. Strings are encoded char by char straight into the buffer, without an intermediate
+ * byte array; an unpaired surrogate is encoded as '?', as {@link String#getBytes} does.
+ */
+final class Utf8 {
+
+    private Utf8() {
+    }
+
+    /**
+     * Computes the encoded size of a string.
+     *
+     * @param value The string, null allowed.
+     * @return The number of bytes {@link #write} takes, length prefix included.
+     */
+    static int encodedSize(String value) {
+        if (value == null) {
+            return 1;
+        }
+        int length = Math.toIntExact(length(value));
+        return varintSize(length + 1) + length;
+    }
+
+    /**
+     * Writes a string.
+     *
+     * @param buffer The buffer to write to.
+     * @param value  The string, null allowed.
+     * @throws BufferOverflowException If the buffer hasn't enough room; the position is then undefined.
+     */
+    static void write(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.put((byte) 0);
+            return;
+        }
+        writeVarint(buffer, Math.toIntExact(length(value)) + 1);
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | codePoint >> 18)).put((byte) (0x80 | codePoint >> 12 & 0x3F))
+                        .put((byte) (0x80 | codePoint >> 6 & 0x3F)).put((byte) (0x80 | codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | c >> 12)).put((byte) (0x80 | c >> 6 & 0x3F)).put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Reads a string. Strings in heap buffers are decoded in place; those in direct buffers are copied out first.
+     *
+     * @param buffer The buffer to read from.
+     * @return The string, or null.
+     * @throws IllegalArgumentException If the length is malformed.
+     * @throws BufferUnderflowException If the buffer ends in the middle of the string.
+     */
+    static String read(ByteBuffer buffer) {
+        int length = readVarint(buffer) - 1;
+        if (length < 0) {
+            return null;
+        } else if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    /**
+     * Computes the number of bytes of a text once UTF-8 encoded, as {@link String#getBytes} encodes it.
+     *
+     * @param value The text.
+     * @return The number of bytes, without a length prefix.
+     */
+    static long length(CharSequence value) {
+        long length = 0;
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static void writeVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Invalid string length.");
+    }
+}
@@ -0,0 +1,140 @@
+package ac.il.bgu.qa;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs every request to a library on its own virtual thread.
+ * The library and its services stay blocking; a request blocked on a database, review or notification
+ * call parks its virtual thread and frees the carrier thread for other requests, so the number of
+ * requests in flight is bounded by memory rather than by the size of a thread pool.
+ * The library and the services it uses must not block while holding a monitor, which would pin the
+ * carrier thread; the services in this package guard their blocking paths with
+ * {@link java.util.concurrent.locks.Lock}s or lock-free structures instead of {@code synchronized}.
+ */
+public class VirtualThreadLibrary implements AutoCloseable {
+
+    // The library the requests are run against.
+    private final Library library;
+    // Starts one virtual thread per request.
+    private final ExecutorService executor;
+
+    /**
+     * Constructs a new VirtualThreadLibrary.
+     *
+     * @param library The library the requests are run against.
+     */
+    public VirtualThreadLibrary(Library library) {
+        if (library == null) {
+            throw new IllegalArgumentException("Invalid library.");
+        }
+        this.library = library;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Adds a book to the library on a virtual thread.
+     *
+     * @param book The book to add.
+     * @return A future completed once the book is added, or failed with the exception {@link Library#addBook(Book)} throws.
+     */
+    public CompletableFuture<Void> addBook(Book book) {
+        return submit(() -> {
+            library.addBook(book);
+            return null;
+        });
+    }
+
+    /**
+     * Registers a user on a virtual thread.
+     *
+     * @param user The user to register.
+     * @return A future completed once the user is registered, or failed with the exception {@link Library#registerUser(User)} throws.
+     */
+    public CompletableFuture<Void> registerUser(User user) {
+        return submit(() -> {
+            library.registerUser(user);
+            return null;
+        });
+    }
+
+    /**
+     * Borrows a book on a virtual thread.
+     *
+     * @param ISBN   The ISBN of the book to borrow.
+     * @param userId The Id of the borrowing user.
+     * @return A future completed once the book is borrowed, or failed with the exception {@link Library#borrowBook(String, String)} throws.
+     */
+    public CompletableFuture<Void> borrowBook(String ISBN, String userId) {
+        return submit(() -> {
+            library.borrowBook(ISBN, userId);
+            return null;
+        });
+    }
+
+    /**
+     * Returns a book on a virtual thread.
+     *
+     * @param ISBN The ISBN of the book to return.
+     * @return A future completed once the book is returned, or failed with the exception {@link Library#returnBook(String)} throws.
+     */
+    public CompletableFuture<Void> returnBook(String ISBN) {
+        return submit(() -> {
+            library.returnBook(ISBN);
+            return null;
+        });
+    }
+
+    /**
+     * Notifies a user with the reviews of a book on a virtual thread.
+     *
+     * @param ISBN   The ISBN of the book whose reviews are to be sent.
+     * @param userId The Id of the user to whom the reviews are to be sent.
+     * @return A future completed once the notification is sent, or failed with the exception
+     * {@link Library#notifyUserWithBookReviews(String, String)} throws.
+     */
+    public CompletableFuture<Void> notifyUserWithBookReviews(String ISBN, String userId) {
+        return submit(() -> {
+            library.notifyUserWithBookReviews(ISBN, userId);
+            return null;
+        });
+    }
+
+    /**
+     * Retrieves a book on a virtual thread.
+     *
+     * @param ISBN   The ISBN of the book to retrieve.
+     * @param userId The Id of the user requesting the book.
+     * @return A future completed with the book, or failed with the exception {@link Library#getBookByISBN(String, String)} throws.
+     */
+    public CompletableFuture<Book> getBookByISBN(String ISBN, String userId) {
+        return submit(() -> library.getBookByISBN(ISBN, userId));
+    }
+
+    /**
+     * Stops accepting requests and waits for the requests in flight to finish.
+     */
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> request) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(request.call());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+}
@@ -4,7 +4,7 @@ package ac.il.bgu.qa.errors;
  * Represents a custom exception thrown when an attempt is made
  * to borrow a book that has already been borrowed.
  */
-public class BookAlreadyBorrowedException extends RuntimeException {
+public class BookAlreadyBorrowedException extends LibraryException {
 
     /**
      * Constructs a new BookAlreadyBorrowedException with the specified detail message.
@@ -14,4 +14,15 @@ public class BookAlreadyBorrowedException extends RuntimeException {
     public BookAlreadyBorrowedException(String message) {
         super(message);
     }
+
+    /**
+     * Constructs a new BookAlreadyBorrowedException with the specified detail message,
+     * without a stack trace for a borrow that simply lost the book to another user.
+     *
+     * @param message            the detail message.
+     * @param writableStackTrace false if the rejection is expected and needs no stack trace.
+     */
+    public BookAlreadyBorrowedException(String message, boolean writableStackTrace) {
+        super(message, writableStackTrace);
+    }
 }
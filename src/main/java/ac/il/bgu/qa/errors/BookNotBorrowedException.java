@@ -4,7 +4,7 @@ package ac.il.bgu.qa.errors;
  * Represents a custom exception thrown when an operation is
  * attempted on a book that has not been borrowed.
  */
-public class BookNotBorrowedException extends RuntimeException {
+public class BookNotBorrowedException extends LibraryException {
 
     /**
      * Constructs a new BookNotBorrowedException with the specified detail message.
@@ -14,4 +14,15 @@ public class BookNotBorrowedException extends RuntimeException {
     public BookNotBorrowedException(String message) {
         super(message);
     }
+
+    /**
+     * Constructs a new BookNotBorrowedException with the specified detail message,
+     * optionally without a stack trace when a return of an available book is routine.
+     *
+     * @param message            the detail message.
+     * @param writableStackTrace false to leave the stack trace out.
+     */
+    public BookNotBorrowedException(String message, boolean writableStackTrace) {
+        super(message, writableStackTrace);
+    }
 }
@@ -4,7 +4,7 @@ package ac.il.bgu.qa.errors;
  * Represents a custom exception that is thrown when a specific book
  * is not found in the library's database.
  */
-public class BookNotFoundException extends RuntimeException {
+public class BookNotFoundException extends LibraryException {
 
     /**
      * Constructs a new BookNotFoundException with the specified detail message.
@@ -14,4 +14,15 @@ public class BookNotFoundException extends RuntimeException {
     public BookNotFoundException(String message) {
         super(message);
     }
+
+    /**
+     * Constructs a new BookNotFoundException with the specified detail message,
+     * leaving out the stack trace if the lookup miss is expected.
+     *
+     * @param message            the detail message.
+     * @param writableStackTrace whether to capture the stack trace.
+     */
+    public BookNotFoundException(String message, boolean writableStackTrace) {
+        super(message, writableStackTrace);
+    }
 }
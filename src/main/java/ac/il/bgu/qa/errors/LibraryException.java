@@ -0,0 +1,29 @@
+package ac.il.bgu.qa.errors;
+
+/**
+ * Represents the base of the library's custom exceptions.
+ * Several of them report expected outcomes, such as a book already being borrowed, on paths busy
+ * enough for capturing a stack trace to show up in their cost; those can be thrown without one.
+ */
+public abstract class LibraryException extends RuntimeException {
+
+    /**
+     * Constructs a new LibraryException with the specified detail message.
+     *
+     * @param message the detail message.
+     */
+    protected LibraryException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructs a new LibraryException with the specified detail message, capturing the stack trace
+     * only if asked to. Suppressed exceptions are not recorded without a stack trace.
+     *
+     * @param message            the detail message.
+     * @param writableStackTrace true to capture the stack trace, false to skip it along with suppression.
+     */
+    protected LibraryException(String message, boolean writableStackTrace) {
+        super(message, null, writableStackTrace, writableStackTrace);
+    }
+}
@@ -4,7 +4,7 @@ package ac.il.bgu.qa.errors;
  * Represents a custom exception that is thrown when no reviews are found
  * for a specific book.
  */
-public class NoReviewsFoundException extends RuntimeException {
+public class NoReviewsFoundException extends LibraryException {
 
     /**
      * Constructs a new NoReviewsFoundException with the specified detail message.
@@ -14,4 +14,15 @@ public class NoReviewsFoundException extends RuntimeException {
     public NoReviewsFoundException(String message) {
         super(message);
     }
+
+    /**
+     * Constructs a new NoReviewsFoundException with the specified detail message,
+     * optionally skipping the stack trace, as a book without reviews is no fault.
+     *
+     * @param message            the detail message.
+     * @param writableStackTrace false to skip capturing the stack trace.
+     */
+    public NoReviewsFoundException(String message, boolean writableStackTrace) {
+        super(message, writableStackTrace);
+    }
 }
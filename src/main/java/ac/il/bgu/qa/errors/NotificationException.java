@@ -4,7 +4,7 @@ package ac.il.bgu.qa.errors;
  * Represents a custom exception that is thrown when an issue related
  * to notifications occurs.
  */
-public class NotificationException extends RuntimeException {
+public class NotificationException extends LibraryException {
 
     /**
      * Constructs a new NotificationException with the specified detail message.
@@ -14,4 +14,15 @@ public class NotificationException extends RuntimeException {
     public NotificationException(String message) {
         super(message);
     }
+
+    /**
+     * Constructs a new NotificationException with the specified detail message,
+     * without a stack trace if it is raised without trying the send, e.g. by an open circuit.
+     *
+     * @param message            the detail message.
+     * @param writableStackTrace false when the failure is reported without trying to notify.
+     */
+    public NotificationException(String message, boolean writableStackTrace) {
+        super(message, writableStackTrace);
+    }
 }
@@ -4,7 +4,7 @@ package ac.il.bgu.qa.errors;
  * Represents a custom exception that is thrown when an issue related
  * to book reviews occurs.
  */
-public class ReviewException extends RuntimeException {
+public class ReviewException extends LibraryException {
 
     /**
      * Constructs a new ReviewException with the specified detail message.
@@ -14,4 +14,15 @@ public class ReviewException extends RuntimeException {
     public ReviewException(String message) {
         super(message);
     }
+
+    /**
+     * Constructs a new ReviewException with the specified detail message,
+     * without a stack trace if the reviews were not even requested, e.g. by an open circuit.
+     *
+     * @param message            the detail message.
+     * @param writableStackTrace false when the failure is reported without fetching.
+     */
+    public ReviewException(String message, boolean writableStackTrace) {
+        super(message, writableStackTrace);
+    }
 }
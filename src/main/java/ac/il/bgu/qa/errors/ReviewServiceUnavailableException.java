@@ -4,7 +4,7 @@ package ac.il.bgu.qa.errors;
  * Represents a custom exception that is thrown when the ReviewService 
  * is not available or encounters an issue.
  */
-public class ReviewServiceUnavailableException extends RuntimeException {
+public class ReviewServiceUnavailableException extends LibraryException {
 
     /**
      * Constructs a new ReviewServiceUnavailableException with the specified detail message.
@@ -14,4 +14,15 @@ public class ReviewServiceUnavailableException extends RuntimeException {
     public ReviewServiceUnavailableException(String message) {
         super(message);
     }
+
+    /**
+     * Constructs a new ReviewServiceUnavailableException with the specified detail message,
+     * optionally without capturing where it was thrown.
+     *
+     * @param message            the detail message.
+     * @param writableStackTrace whether the place it was thrown is recorded.
+     */
+    public ReviewServiceUnavailableException(String message, boolean writableStackTrace) {
+        super(message, writableStackTrace);
+    }
 }
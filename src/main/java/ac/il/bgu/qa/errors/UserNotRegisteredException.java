@@ -4,7 +4,7 @@ package ac.il.bgu.qa.errors;
  * Represents a custom exception that is thrown when a specific user is not found
  * or registered within the library's system.
  */
-public class UserNotRegisteredException extends RuntimeException {
+public class UserNotRegisteredException extends LibraryException {
 
     /**
      * Constructs a new UserNotRegisteredException with the specified detail message.
@@ -14,4 +14,15 @@ public class UserNotRegisteredException extends RuntimeException {
     public UserNotRegisteredException(String message) {
         super(message);
     }
+
+    /**
+     * Constructs a new UserNotRegisteredException with the specified detail message,
+     * without a stack trace when an unknown user is an expected answer.
+     *
+     * @param message            the detail message.
+     * @param writableStackTrace false if no stack trace is needed.
+     */
+    public UserNotRegisteredException(String message, boolean writableStackTrace) {
+        super(message, writableStackTrace);
+    }
 }
@@ -0,0 +1,134 @@
+package ac.il.bgu.qa.metrics;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exports the metrics as the read-only attributes of an MBean, for JConsole, VisualVM or a JMX scraper.
+ * Every counter is an attribute of its own name; every latency is the attributes "name.count",
+ * "name.mean", "name.p50", "name.p90", "name.p99", "name.p999" and "name.max", in nanoseconds.
+ * The attributes show the last snapshot exported; the MBean is registered by {@link #register} once
+ * fully constructed and unregistered on close.
+ */
+public final class JmxMetricsExporter implements MetricsExporter, DynamicMBean, AutoCloseable {
+
+    private final MBeanServer server;
+    private final ObjectName name;
+
+    // The attributes of the last snapshot exported, by name.
+    private volatile Map<String, Long> attributes = new LinkedHashMap<>();
+
+    private JmxMetricsExporter(MBeanServer server, ObjectName name) {
+        this.server = server;
+        this.name = name;
+    }
+
+    /**
+     * Constructs an exporter registered with the platform MBean server.
+     *
+     * @param name The name to register the MBean under, e.g. "ac.il.bgu.qa:type=Library".
+     * @return The registered exporter.
+     * @throws JMException If the MBean couldn't be registered.
+     */
+    public static JmxMetricsExporter register(ObjectName name) throws JMException {
+        return register(ManagementFactory.getPlatformMBeanServer(), name);
+    }
+
+    /**
+     * Constructs an exporter and registers it, once constructed, with an MBean server.
+     *
+     * @param server The server to register the MBean with.
+     * @param name   The name to register the MBean under.
+     * @return The registered exporter.
+     * @throws JMException If the MBean couldn't be registered.
+     */
+    public static JmxMetricsExporter register(MBeanServer server, ObjectName name) throws JMException {
+        if (server == null) {
+            throw new IllegalArgumentException("Invalid MBean server.");
+        } else if (name == null) {
+            throw new IllegalArgumentException("Invalid MBean name.");
+        }
+        JmxMetricsExporter exporter = new JmxMetricsExporter(server, name);
+        server.registerMBean(exporter, name);
+        return exporter;
+    }
+
+    @Override
+    public void export(MetricsSnapshot snapshot) {
+        Map<String, Long> values = new LinkedHashMap<>(snapshot.getCounters());
+        for (Map.Entry<String, MetricsSnapshot.Latency> entry : snapshot.getLatencies().entrySet()) {
+            String prefix = entry.getKey() + ".";
+            MetricsSnapshot.Latency latency = entry.getValue();
+            values.put(prefix + "count", latency.getCount());
+            values.put(prefix + "mean", latency.getMeanNanos());
+            values.put(prefix + "p50", latency.getValueAtPercentile(50));
+            values.put(prefix + "p90", latency.getValueAtPercentile(90));
+            values.put(prefix + "p99", latency.getValueAtPercentile(99));
+            values.put(prefix + "p999", latency.getValueAtPercentile(99.9));
+            values.put(prefix + "max", latency.getMaxNanos());
+        }
+        attributes = values;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Long value = attributes.get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        Map<String, Long> values = attributes;
+        AttributeList list = new AttributeList();
+        for (String attribute : names) {
+            Long value = values.get(attribute);
+            if (value != null) {
+                list.add(new Attribute(attribute, value));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only.");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        // Metrics are read-only, none is set.
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> infos = new ArrayList<>();
+        for (String attribute : attributes.keySet()) {
+            infos.add(new MBeanAttributeInfo(attribute, Long.class.getName(), attribute, true, false, false));
+        }
+        return new MBeanInfo(getClass().getName(), "Library metrics",
+                infos.toArray(new MBeanAttributeInfo[0]), null, null, null);
+    }
+
+    /**
+     * Unregisters the MBean.
+     *
+     * @throws JMException If the MBean couldn't be unregistered.
+     */
+    @Override
+    public void close() throws JMException {
+        server.unregisterMBean(name);
+    }
+}
@@ -0,0 +1,125 @@
+package ac.il.bgu.qa.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the latencies of an operation in a fixed-size histogram, cheaply enough to stay on in production.
+ * Like HdrHistogram, the buckets are log-linear: every power of two is split into 16 equal buckets, so
+ * a latency is known to within 1/16 (about 6%) whatever its magnitude, from nanoseconds to days, in
+ * under a thousand counters. Recording a latency never allocates and never locks; it increments one
+ * bucket, two adders and, rarely, the maximum.
+ */
+public final class LatencyRecorder {
+
+    // Number of buckets every power of two is split into, as a power of two.
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Enough buckets for every non-negative long.
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    // Number of latencies recorded in each bucket.
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one latency.
+     *
+     * @param nanos The latency, in nanoseconds. Negative latencies, e.g. from a clock step, count as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        buckets.getAndIncrement(bucketOf(value));
+        count.increment();
+        total.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Retrieves the number of latencies recorded.
+     *
+     * @return The number of latencies.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Retrieves the sum of the latencies recorded.
+     *
+     * @return The total latency, in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return total.sum();
+    }
+
+    /**
+     * Retrieves the highest latency recorded.
+     *
+     * @return The maximum latency, in nanoseconds, or 0 if none was recorded.
+     */
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * Estimates a percentile of the latencies recorded.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return The highest latency in the bucket of the percentile, at most the maximum, in nanoseconds,
+     * or 0 if none was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        return snapshot().getValueAtPercentile(percentile);
+    }
+
+    /**
+     * Takes a copy of the histogram, so several statistics can be computed from the same latencies
+     * while more are being recorded.
+     *
+     * @return The latencies recorded so far.
+     */
+    public MetricsSnapshot.Latency snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return new MetricsSnapshot.Latency(counts, total.sum(), max.get());
+    }
+
+    /**
+     * Finds the bucket of a latency.
+     *
+     * @param value The latency, not negative.
+     * @return The index of its bucket.
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Finds the highest latency that falls in a bucket.
+     *
+     * @param bucket The index of the bucket.
+     * @return The highest latency of the bucket.
+     */
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + ((1L << shift) - 1);
+    }
+}
@@ -0,0 +1,141 @@
+package ac.il.bgu.qa.metrics;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * The metrics of a library and of the services it calls: a latency recorder per operation, counters
+ * and a count of every type of exception thrown. Metrics are created on first use and identified by
+ * name; "library.*" for the operations of {@link ac.il.bgu.qa.Library}, "database.*", "review.*" and
+ * "notification.*" for the calls to the services and "errors.*" for the exceptions, by simple class name.
+ * Hot paths look a metric up once and keep it, so recording costs tens of nanoseconds, mostly reading
+ * the clock; all the metrics are safe to update from any number of threads.
+ */
+public class LibraryMetrics {
+
+    // Prefix of the counters of exceptions.
+    private static final String ERRORS = "errors.";
+
+    private final ConcurrentHashMap<String, LatencyRecorder> latencies = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    // The error counter of each exception class, so counting an exception builds no name and looks up no map.
+    private final ClassValue<LongAdder> errors = new ClassValue<LongAdder>() {
+        @Override
+        protected LongAdder computeValue(Class<?> type) {
+            return counter(ERRORS + type.getSimpleName());
+        }
+    };
+    // How deep each thread is in work whose exceptions are handled rather than thrown.
+    private final ThreadLocal<int[]> handledDepth = ThreadLocal.withInitial(() -> new int[1]);
+
+    /**
+     * Retrieves the latency recorder of an operation, creating it on first use.
+     *
+     * @param name The name of the operation.
+     * @return The recorder.
+     */
+    public LatencyRecorder latency(String name) {
+        return latencies.computeIfAbsent(requireName(name), key -> new LatencyRecorder());
+    }
+
+    /**
+     * Retrieves a counter, creating it on first use.
+     *
+     * @param name The name of the counter.
+     * @return The counter.
+     */
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(requireName(name), key -> new LongAdder());
+    }
+
+    /**
+     * Counts an exception under "errors." followed by the simple name of its class, unless it is
+     * recorded within {@link #supplyHandled(Supplier)} or {@link #runHandled(Runnable)}.
+     *
+     * @param e The exception.
+     */
+    public void recordError(Throwable e) {
+        if (handledDepth.get()[0] == 0) {
+            errors.get(e.getClass()).increment();
+        }
+    }
+
+    /**
+     * Runs work whose exceptions the caller handles rather than throws, such as the optional notification
+     * of {@link ac.il.bgu.qa.Library#getBookByISBN(String, String)}. Exceptions recorded on this thread
+     * meanwhile, by the library or by the metered services it calls, are not counted as errors.
+     *
+     * @param work The work.
+     * @return The result of the work.
+     */
+    public <T> T supplyHandled(Supplier<T> work) {
+        int[] depth = handledDepth.get();
+        depth[0]++;
+        try {
+            return work.get();
+        } finally {
+            depth[0]--;
+        }
+    }
+
+    /**
+     * Runs work whose exceptions the caller handles rather than throws; see {@link #supplyHandled(Supplier)}.
+     *
+     * @param work The work.
+     */
+    public void runHandled(Runnable work) {
+        supplyHandled(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Retrieves the number of exceptions of a type counted.
+     *
+     * @param type The type of the exceptions.
+     * @return The number of exceptions of exactly that type.
+     */
+    public long getErrorCount(Class<? extends Throwable> type) {
+        LongAdder counter = counters.get(ERRORS + type.getSimpleName());
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Reads the current value of every metric.
+     *
+     * @return The snapshot.
+     */
+    public MetricsSnapshot snapshot() {
+        Map<String, Long> counterValues = new HashMap<>();
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            counterValues.put(entry.getKey(), entry.getValue().sum());
+        }
+        Map<String, MetricsSnapshot.Latency> latencyValues = new HashMap<>();
+        for (Map.Entry<String, LatencyRecorder> entry : latencies.entrySet()) {
+            latencyValues.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return new MetricsSnapshot(counterValues, latencyValues);
+    }
+
+    /**
+     * Hands a snapshot of the metrics to an exporter.
+     *
+     * @param exporter The exporter.
+     * @throws IOException If the exporter failed to publish the snapshot.
+     */
+    public void export(MetricsExporter exporter) throws IOException {
+        exporter.export(snapshot());
+    }
+
+    private static String requireName(String name) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Invalid metric name.");
+        }
+        return name;
+    }
+}
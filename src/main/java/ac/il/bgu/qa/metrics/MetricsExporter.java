@@ -0,0 +1,18 @@
+package ac.il.bgu.qa.metrics;
+
+import java.io.IOException;
+
+/**
+ * Publishes the metrics of a library, e.g. as text or through JMX.
+ * An exporter is handed snapshots by {@link LibraryMetrics#export(MetricsExporter)}, typically on a schedule.
+ */
+public interface MetricsExporter {
+
+    /**
+     * Publishes a snapshot of the metrics.
+     *
+     * @param snapshot The values of the metrics.
+     * @throws IOException If the snapshot couldn't be published.
+     */
+    void export(MetricsSnapshot snapshot) throws IOException;
+}
@@ -0,0 +1,179 @@
+package ac.il.bgu.qa.metrics;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The values of all the metrics of a {@link LibraryMetrics} at one point in time, handed to a {@link MetricsExporter}.
+ * A snapshot is immutable; its metrics are sorted by name.
+ */
+public final class MetricsSnapshot {
+
+    private final SortedMap<String, Long> counters;
+    private final SortedMap<String, Latency> latencies;
+
+    /**
+     * Constructs a new MetricsSnapshot.
+     *
+     * @param counters  The value of every counter, by name.
+     * @param latencies The latencies of every operation, by name.
+     */
+    public MetricsSnapshot(Map<String, Long> counters, Map<String, Latency> latencies) {
+        this.counters = Collections.unmodifiableSortedMap(new TreeMap<>(counters));
+        this.latencies = Collections.unmodifiableSortedMap(new TreeMap<>(latencies));
+    }
+
+    /**
+     * Retrieves the counters.
+     *
+     * @return The value of every counter, by name.
+     */
+    public SortedMap<String, Long> getCounters() {
+        return counters;
+    }
+
+    /**
+     * Retrieves the value of a counter.
+     *
+     * @param name The name of the counter.
+     * @return The value, or 0 if there is no such counter.
+     */
+    public long getCounter(String name) {
+        return counters.getOrDefault(name, 0L);
+    }
+
+    /**
+     * Retrieves the latencies.
+     *
+     * @return The latencies of every operation, by name.
+     */
+    public SortedMap<String, Latency> getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * Retrieves the latencies of an operation.
+     *
+     * @param name The name of the operation.
+     * @return The latencies, or null if there is no such operation.
+     */
+    public Latency getLatency(String name) {
+        return latencies.get(name);
+    }
+
+    /**
+     * Writes the snapshot as text, one metric per line: the counters as "name value", then the latencies
+     * as "name count=... mean=... p50=... p90=... p99=... p999=... max=...", in nanoseconds.
+     *
+     * @param out The destination.
+     * @throws IOException If the destination can't be written to.
+     */
+    public void writeTo(Appendable out) throws IOException {
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            out.append(entry.getKey()).append(' ').append(Long.toString(entry.getValue())).append('\n');
+        }
+        for (Map.Entry<String, Latency> entry : latencies.entrySet()) {
+            Latency latency = entry.getValue();
+            out.append(entry.getKey())
+                    .append(" count=").append(Long.toString(latency.getCount()))
+                    .append(" mean=").append(Long.toString(latency.getMeanNanos()))
+                    .append(" p50=").append(Long.toString(latency.getValueAtPercentile(50)))
+                    .append(" p90=").append(Long.toString(latency.getValueAtPercentile(90)))
+                    .append(" p99=").append(Long.toString(latency.getValueAtPercentile(99)))
+                    .append(" p999=").append(Long.toString(latency.getValueAtPercentile(99.9)))
+                    .append(" max=").append(Long.toString(latency.getMaxNanos()))
+                    .append('\n');
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        try {
+            writeTo(builder);
+        } catch (IOException e) {
+            // A StringBuilder doesn't throw.
+            throw new IllegalStateException(e);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * The latencies of an operation recorded by a {@link LatencyRecorder}.
+     */
+    public static final class Latency {
+
+        // Number of latencies in each bucket of the recorder.
+        private final long[] counts;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        Latency(long[] counts, long totalNanos, long maxNanos) {
+            long sum = 0;
+            for (long bucket : counts) {
+                sum += bucket;
+            }
+            this.counts = counts;
+            this.count = sum;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        /**
+         * Retrieves the number of latencies.
+         *
+         * @return The number of latencies.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Retrieves the mean latency.
+         *
+         * @return The mean latency, in nanoseconds, or 0 if there are no latencies.
+         */
+        public long getMeanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+
+        /**
+         * Retrieves the highest latency.
+         *
+         * @return The maximum latency, in nanoseconds, or 0 if there are no latencies.
+         */
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * Estimates a percentile of the latencies.
+         *
+         * @param percentile The percentile, between 0 and 100.
+         * @return The highest latency in the bucket of the percentile, at most the maximum, in nanoseconds,
+         * or 0 if there are no latencies.
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new IllegalArgumentException("Invalid percentile.");
+            }
+            if (count == 0) {
+                return 0;
+            }
+            // The rank of the percentile, at least the first latency.
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(LatencyRecorder.highestValueOf(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+    }
+}
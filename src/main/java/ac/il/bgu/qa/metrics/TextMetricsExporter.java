@@ -0,0 +1,31 @@
+package ac.il.bgu.qa.metrics;
+
+import java.io.IOException;
+
+/**
+ * Exports the metrics as text, in the format of {@link MetricsSnapshot#writeTo(Appendable)}, e.g. to a log.
+ * Every snapshot is followed by an empty line.
+ */
+public class TextMetricsExporter implements MetricsExporter {
+
+    // The destination of the snapshots.
+    private final Appendable out;
+
+    /**
+     * Constructs a new TextMetricsExporter.
+     *
+     * @param out The destination of the snapshots.
+     */
+    public TextMetricsExporter(Appendable out) {
+        if (out == null) {
+            throw new IllegalArgumentException("Invalid destination.");
+        }
+        this.out = out;
+    }
+
+    @Override
+    public void export(MetricsSnapshot snapshot) throws IOException {
+        snapshot.writeTo(out);
+        out.append('\n');
+    }
+}
@@ -0,0 +1,222 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.errors.NotificationException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Notification service decorator that sends notifications to the underlying service in batches.
+ * Any number of threads queue messages into a bounded queue, which a single dispatcher thread drains
+ * into batches. A batch is sent with {@link NotificationService#notifyUsers(Map)} once it holds the
+ * maximum batch size, or once its first message has waited for the maximum delay.
+ * {@link #notifyUser(String, String)} still blocks until its own message has been sent and throws if
+ * sending it failed, so callers such as {@link ac.il.bgu.qa.Library#notifyUserWithBookReviews(String, String)}
+ * retry exactly as with an unbatched service. A message for a user already in the current batch goes
+ * in the next batch, so each user gets their own result.
+ */
+public class BatchingNotificationService implements NotificationService, AutoCloseable {
+
+    // Tells the dispatcher to stop once it has sent the messages queued before it.
+    private static final Pending CLOSE = new Pending(null, null);
+
+    // The service the batches are sent to.
+    private final NotificationService delegate;
+    // The maximum number of messages in a batch.
+    private final int batchSize;
+    // How long the first message of a batch waits for more messages, in nanoseconds.
+    private final long maxDelayNanos;
+    // Messages waiting to be sent.
+    private final BlockingQueue<Pending> queue;
+    // Sends the batches.
+    private final Thread dispatcher;
+
+    private volatile boolean closed;
+    // Whether the dispatcher stopped, closed or not. Set before it fails the messages left in the queue.
+    private volatile boolean stopped;
+
+    /**
+     * Constructs a new BatchingNotificationService and starts its dispatcher thread.
+     *
+     * @param delegate      The service the batches are sent to.
+     * @param batchSize     The maximum number of messages in a batch.
+     * @param maxDelay      How long the first message of a batch waits for more messages.
+     * @param unit          The unit of the delay.
+     * @param queueCapacity The maximum number of messages waiting to be sent.
+     */
+    public BatchingNotificationService(NotificationService delegate, int batchSize, long maxDelay, TimeUnit unit, int queueCapacity) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Invalid notification service.");
+        } else if (batchSize < 1) {
+            throw new IllegalArgumentException("Invalid batch size.");
+        } else if (maxDelay < 0) {
+            throw new IllegalArgumentException("Invalid delay.");
+        } else if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Invalid queue capacity.");
+        }
+        this.delegate = delegate;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.dispatcher = new Thread(this::dispatch, "notification-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Queues a notification message and waits until the batch holding it has been sent.
+     *
+     * @param userId  The unique identifier of the user to be notified.
+     * @param message The content of the notification message.
+     * @throws NotificationException If the queue is full, the service is closed, the dispatcher stopped
+     *                               or sending the message failed.
+     */
+    @Override
+    public void notifyUser(String userId, String message) throws NotificationException {
+        Pending pending = new Pending(userId, message);
+        if (closed) {
+            throw new NotificationException("Notification service is closed!");
+        } else if (stopped || !dispatcher.isAlive()) {
+            throw new NotificationException("Notification dispatcher stopped!");
+        }
+        if (!queue.offer(pending)) {
+            throw new NotificationException("Notification queue is full!");
+        }
+        if ((closed || stopped || !dispatcher.isAlive()) && queue.remove(pending)) {
+            // Queued after the dispatcher stopped, nobody would send it.
+            throw new NotificationException(closed ? "Notification service is closed!" : "Notification dispatcher stopped!");
+        }
+
+        try {
+            pending.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NotificationException("Interrupted while sending the notification!");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof NotificationException) {
+                throw (NotificationException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new NotificationException("Notification failed!");
+        }
+    }
+
+    /**
+     * Sends the queued messages, stops the dispatcher and waits for it to finish.
+     * Messages queued afterwards fail.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            // The queue may be full, but the dispatcher keeps draining it while it runs.
+            while (dispatcher.isAlive()) {
+                if (queue.offer(CLOSE, 10, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            }
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dispatch() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        Map<String, String> messages = new HashMap<>();
+        Pending next = null;
+        try {
+            while (true) {
+                if (next == null) {
+                    next = queue.take();
+                }
+                if (next == CLOSE) {
+                    break;
+                }
+
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (next != null && next != CLOSE && !messages.containsKey(next.userId)) {
+                    batch.add(next);
+                    messages.put(next.userId, next.message);
+                    next = null;
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() == batchSize || remaining <= 0) {
+                        break;
+                    }
+                    next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                }
+                send(batch, messages);
+                batch.clear();
+                // A new map, the underlying service may keep the one it was given.
+                messages = new HashMap<>();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Also reached if the dispatcher died of an interrupt or an Error while the service is still open.
+            stopped = true;
+            NotificationException failure = new NotificationException(closed
+                    ? "Notification service is closed!"
+                    : "Notification dispatcher stopped!");
+            for (Pending pending : batch) {
+                pending.result.completeExceptionally(failure);
+            }
+            if (next != null && next != CLOSE) {
+                next.result.completeExceptionally(failure);
+            }
+            for (Pending pending; (pending = queue.poll()) != null; ) {
+                pending.result.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private void send(List<Pending> batch, Map<String, String> messages) {
+        Map<String, NotificationException> failures;
+        try {
+            failures = delegate.notifyUsers(messages);
+        } catch (RuntimeException e) {
+            // The whole batch failed, report it to each user the way a single failed send would be.
+            NotificationException failure = e instanceof NotificationException
+                    ? (NotificationException) e
+                    : new NotificationException("Notification failed!");
+            for (Pending pending : batch) {
+                pending.result.completeExceptionally(failure);
+            }
+            return;
+        }
+        for (Pending pending : batch) {
+            NotificationException failure = failures == null ? null : failures.get(pending.userId);
+            if (failure == null) {
+                pending.result.complete(null);
+            } else {
+                pending.result.completeExceptionally(failure);
+            }
+        }
+    }
+
+    /**
+     * A queued message and the result of sending it.
+     */
+    private static final class Pending {
+        private final String userId;
+        private final String message;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        Pending(String userId, String message) {
+            this.userId = userId;
+            this.message = message;
+        }
+    }
+}
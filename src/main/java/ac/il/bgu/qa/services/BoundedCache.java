@@ -0,0 +1,171 @@
+package ac.il.bgu.qa.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Least recently used cache of values by primitive key, for the caching decorators.
+ * Every write to a key bumps a generation shared by a stripe of keys; a value loaded on a miss is
+ * only cached if the generation of its key didn't change while it was loaded, so a load that raced
+ * with a write can't put the state from before the write back in the cache.
+ *
+ * @param <V> The type of the values.
+ */
+final class BoundedCache<V> {
+
+    // Number of generation stripes, a power of two.
+    private static final int STRIPES = 64;
+
+    // The maximum number of values in the cache.
+    private final int maximumSize;
+    // Cached values by key, in access order. Guarded by lock.
+    private final LinkedHashMap<Long, V> entries;
+    // Number of writes to the keys of each stripe. Guarded by lock.
+    private final long[] generations = new long[STRIPES];
+    // A lock rather than a monitor, so virtual threads waiting for it don't pin their carrier.
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    BoundedCache(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Invalid maximum size.");
+        }
+        this.maximumSize = maximumSize;
+        this.entries = new LinkedHashMap<Long, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, V> eldest) {
+                if (size() > BoundedCache.this.maximumSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Looks a value up, counting a hit or a miss.
+     *
+     * @param key The key.
+     * @return The cached value, or null on a miss.
+     */
+    V get(long key) {
+        V value;
+        lock.lock();
+        try {
+            value = entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Retrieves the generation of a key, to be read after a miss and before loading the value.
+     *
+     * @param key The key.
+     * @return The generation, to be passed to {@link #putIfCurrent(long, Object, long)}.
+     */
+    long generation(long key) {
+        lock.lock();
+        try {
+            return generations[stripe(key)];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Caches a loaded value, unless a key of its stripe was written since the load began.
+     *
+     * @param key        The key.
+     * @param value      The loaded value.
+     * @param generation The generation of the key before the load.
+     */
+    void putIfCurrent(long key, V value, long generation) {
+        lock.lock();
+        try {
+            if (generations[stripe(key)] == generation) {
+                entries.put(key, value);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Caches a value just written to the underlying store.
+     *
+     * @param key   The key.
+     * @param value The value written.
+     */
+    void put(long key, V value) {
+        lock.lock();
+        try {
+            generations[stripe(key)]++;
+            entries.put(key, value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the value of a key whose state in the underlying store changed.
+     *
+     * @param key The key.
+     */
+    void invalidate(long key) {
+        lock.lock();
+        try {
+            generations[stripe(key)]++;
+            entries.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all the values.
+     */
+    void invalidateAll() {
+        lock.lock();
+        try {
+            for (int i = 0; i < STRIPES; i++) {
+                generations[i]++;
+            }
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads the statistics of the cache.
+     *
+     * @return The statistics.
+     */
+    CacheStats stats() {
+        int size;
+        lock.lock();
+        try {
+            size = entries.size();
+        } finally {
+            lock.unlock();
+        }
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    private static int stripe(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 58);
+    }
+}
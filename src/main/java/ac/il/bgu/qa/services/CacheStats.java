@@ -0,0 +1,79 @@
+package ac.il.bgu.qa.services;
+
+/**
+ * The statistics of a cache at one point in time.
+ */
+public final class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final int size;
+
+    /**
+     * Constructs a new CacheStats.
+     *
+     * @param hitCount      The number of lookups served from the cache.
+     * @param missCount     The number of lookups that had to go to the underlying store.
+     * @param evictionCount The number of entries evicted to keep the cache within its maximum size.
+     * @param size          The number of entries in the cache.
+     */
+    public CacheStats(long hitCount, long missCount, long evictionCount, int size) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+    }
+
+    /**
+     * Retrieves the number of lookups served from the cache.
+     *
+     * @return The number of hits.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Retrieves the number of lookups that had to go to the underlying store.
+     *
+     * @return The number of misses.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Retrieves the share of the lookups served from the cache.
+     *
+     * @return The hit ratio between 0 and 1, or 0 if there were no lookups.
+     */
+    public double getHitRatio() {
+        long lookups = hitCount + missCount;
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    /**
+     * Retrieves the number of entries evicted to keep the cache within its maximum size.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Retrieves the number of entries in the cache.
+     *
+     * @return The size of the cache.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hits=" + hitCount + ", misses=" + missCount + ", hitRatio=" + getHitRatio()
+                + ", evictions=" + evictionCount + ", size=" + size + "}";
+    }
+}
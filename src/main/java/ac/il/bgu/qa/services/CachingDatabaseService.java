@@ -0,0 +1,244 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.IsbnKey;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.UserIdValidator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Database service decorator that caches recently used books and users, each in a bounded least
+ * recently used cache of its own. Reads go through the cache and load from the underlying database
+ * on a miss; books and users that don't exist are not cached. Writes go to the database first.
+ * Added books and registered users are then cached as written. A borrow or a return removes the book
+ * from the cache, so its borrowed state is always read back from the database. A read that raced
+ * with a write never puts the state from before the write back in the cache.
+ * The cache assumes every write to the database goes through it; {@link #invalidateAll()} resyncs it otherwise.
+ */
+public class CachingDatabaseService implements DatabaseService {
+
+    // The database the reads fall back to and the writes go to.
+    private final DatabaseService delegate;
+    // Books by ISBN key.
+    private final BoundedCache<Book> books;
+    // Users by packed user Id.
+    private final BoundedCache<User> users;
+
+    /**
+     * Constructs a new CachingDatabaseService.
+     *
+     * @param delegate     The database the reads fall back to and the writes go to.
+     * @param maximumBooks The maximum number of books in the cache.
+     * @param maximumUsers The maximum number of users in the cache.
+     */
+    public CachingDatabaseService(DatabaseService delegate, int maximumBooks, int maximumUsers) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Invalid database service.");
+        } else if (maximumBooks < 1 || maximumUsers < 1) {
+            throw new IllegalArgumentException("Invalid maximum size.");
+        }
+        this.delegate = delegate;
+        this.books = new BoundedCache<>(maximumBooks);
+        this.users = new BoundedCache<>(maximumUsers);
+    }
+
+    @Override
+    public void addBook(String ISBN, Book book) {
+        long key = IsbnKey.of(ISBN);
+        try {
+            delegate.addBook(ISBN, book);
+        } catch (RuntimeException e) {
+            // The write may still have happened.
+            invalidateBook(key);
+            throw e;
+        }
+        if (key != IsbnKey.INVALID && book != null) {
+            books.put(key, book);
+        }
+    }
+
+    @Override
+    public void registerUser(String id, User user) {
+        long key = UserIdValidator.pack(id);
+        try {
+            delegate.registerUser(id, user);
+        } catch (RuntimeException e) {
+            if (key != UserIdValidator.INVALID) {
+                users.invalidate(key);
+            }
+            throw e;
+        }
+        if (key != UserIdValidator.INVALID && user != null) {
+            users.put(key, user);
+        }
+    }
+
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        long key = IsbnKey.of(ISBN);
+        if (key == IsbnKey.INVALID) {
+            // Nothing sensible to cache, let the underlying database decide.
+            return delegate.getBookByISBN(ISBN);
+        }
+        Book book = books.get(key);
+        if (book != null) {
+            return book;
+        }
+        long generation = books.generation(key);
+        book = delegate.getBookByISBN(ISBN);
+        if (book != null) {
+            books.putIfCurrent(key, book, generation);
+        }
+        return book;
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        long key = UserIdValidator.pack(userId);
+        if (key == UserIdValidator.INVALID) {
+            return delegate.getUserById(userId);
+        }
+        User user = users.get(key);
+        if (user != null) {
+            return user;
+        }
+        long generation = users.generation(key);
+        user = delegate.getUserById(userId);
+        if (user != null) {
+            users.putIfCurrent(key, user, generation);
+        }
+        return user;
+    }
+
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        try {
+            delegate.borrowBook(ISBN, userId);
+        } finally {
+            invalidateBook(IsbnKey.of(ISBN));
+        }
+    }
+
+    @Override
+    public void returnBook(String ISBN) {
+        try {
+            delegate.returnBook(ISBN);
+        } finally {
+            invalidateBook(IsbnKey.of(ISBN));
+        }
+    }
+
+    /**
+     * Fetches several books, from the cache where possible and the others from the underlying
+     * database in one round-trip.
+     *
+     * @param ISBNs The International Standard Book Numbers.
+     * @return The books found, by the ISBN they were requested with. ISBNs without a book are absent.
+     */
+    @Override
+    public Map<String, Book> getBooksByISBN(Collection<String> ISBNs) {
+        Map<String, Book> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        Map<String, Long> generations = new HashMap<>();
+        for (String ISBN : ISBNs) {
+            long key = IsbnKey.of(ISBN);
+            Book book = key == IsbnKey.INVALID ? null : books.get(key);
+            if (book != null) {
+                found.put(ISBN, book);
+            } else {
+                if (key != IsbnKey.INVALID) {
+                    generations.put(ISBN, books.generation(key));
+                }
+                missing.add(ISBN);
+            }
+        }
+        if (missing.isEmpty()) {
+            return found;
+        }
+        for (Map.Entry<String, Book> entry : delegate.getBooksByISBN(missing).entrySet()) {
+            found.put(entry.getKey(), entry.getValue());
+            Long generation = generations.get(entry.getKey());
+            if (generation != null && entry.getValue() != null) {
+                books.putIfCurrent(IsbnKey.of(entry.getKey()), entry.getValue(), generation);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void addBooks(Map<String, Book> added) {
+        try {
+            delegate.addBooks(added);
+        } catch (RuntimeException e) {
+            for (String ISBN : added.keySet()) {
+                invalidateBook(IsbnKey.of(ISBN));
+            }
+            throw e;
+        }
+        for (Map.Entry<String, Book> entry : added.entrySet()) {
+            long key = IsbnKey.of(entry.getKey());
+            if (key != IsbnKey.INVALID && entry.getValue() != null) {
+                books.put(key, entry.getValue());
+            }
+        }
+    }
+
+    @Override
+    public void borrowBooks(Collection<String> ISBNs, String userId) {
+        try {
+            delegate.borrowBooks(ISBNs, userId);
+        } finally {
+            for (String ISBN : ISBNs) {
+                invalidateBook(IsbnKey.of(ISBN));
+            }
+        }
+    }
+
+    @Override
+    public void returnBooks(Collection<String> ISBNs) {
+        try {
+            delegate.returnBooks(ISBNs);
+        } finally {
+            for (String ISBN : ISBNs) {
+                invalidateBook(IsbnKey.of(ISBN));
+            }
+        }
+    }
+
+    /**
+     * Removes all the books and users from the caches, e.g. after the database was changed behind them.
+     */
+    public void invalidateAll() {
+        books.invalidateAll();
+        users.invalidateAll();
+    }
+
+    /**
+     * Retrieves the statistics of the book cache.
+     *
+     * @return The hits, misses and evictions of the book cache and its size.
+     */
+    public CacheStats getBookCacheStats() {
+        return books.stats();
+    }
+
+    /**
+     * Retrieves the statistics of the user cache.
+     *
+     * @return The hits, misses and evictions of the user cache and its size.
+     */
+    public CacheStats getUserCacheStats() {
+        return users.stats();
+    }
+
+    private void invalidateBook(long key) {
+        if (key != IsbnKey.INVALID) {
+            books.invalidate(key);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.IsbnKey;
+import ac.il.bgu.qa.errors.ReviewException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Review service decorator that caches the reviews of recently requested books.
+ * The cache holds a bounded number of books and evicts the least recently used one when full.
+ * Entries expire after a time to live; books without reviews are cached as well, usually with a
+ * shorter time to live, so that titles nobody reviewed don't hit the backend on every request.
+ * Failed fetches are never cached.
+ * {@link #close()} keeps its meaning and closes the underlying service; the cache survives it.
+ */
+public class CachingReviewService implements ReviewService {
+
+    // The service the reviews are fetched from on a miss.
+    private final ReviewService delegate;
+    // The maximum number of books in the cache.
+    private final int maximumSize;
+    // Time to live of books with reviews, in nanoseconds.
+    private final long ttlNanos;
+    // Time to live of books without reviews, in nanoseconds.
+    private final long negativeTtlNanos;
+    // Source of the current time, in nanoseconds.
+    private final LongSupplier clock;
+
+    // Cached reviews by ISBN key, in access order. Guarded by lock.
+    private final LinkedHashMap<Long, Entry> entries;
+    // A lock rather than a monitor, so virtual threads waiting for it don't pin their carrier.
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructs a new CachingReviewService.
+     *
+     * @param delegate    The service the reviews are fetched from on a miss.
+     * @param maximumSize The maximum number of books in the cache.
+     * @param ttl         The time to live of books with reviews.
+     * @param negativeTtl The time to live of books without reviews.
+     * @param unit        The unit of both times to live.
+     */
+    public CachingReviewService(ReviewService delegate, int maximumSize, long ttl, long negativeTtl, TimeUnit unit) {
+        this(delegate, maximumSize, ttl, negativeTtl, unit, System::nanoTime);
+    }
+
+    CachingReviewService(ReviewService delegate, int maximumSize, long ttl, long negativeTtl, TimeUnit unit, LongSupplier clock) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Invalid review service.");
+        } else if (maximumSize < 1) {
+            throw new IllegalArgumentException("Invalid maximum size.");
+        } else if (ttl < 0 || negativeTtl < 0) {
+            throw new IllegalArgumentException("Invalid time to live.");
+        }
+        this.delegate = delegate;
+        this.maximumSize = maximumSize;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.negativeTtlNanos = unit.toNanos(negativeTtl);
+        this.clock = clock;
+        this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > CachingReviewService.this.maximumSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Fetches the list of reviews for a book, from the cache if it holds a live entry for it.
+     * Reviews fetched from the underlying service are cached as an unmodifiable copy.
+     *
+     * @param ISBN The International Standard Book Number (ISBN) of the book.
+     * @return A list of reviews associated with the given book's ISBN, empty if it has none.
+     * @throws ReviewException If there's an issue fetching the reviews.
+     */
+    @Override
+    public List<String> getReviewsForBook(String ISBN) throws ReviewException {
+        long key = IsbnKey.of(ISBN);
+        if (key == IsbnKey.INVALID) {
+            // Nothing sensible to cache, let the underlying service decide.
+            return delegate.getReviewsForBook(ISBN);
+        }
+
+        long now = clock.getAsLong();
+        lock.lock();
+        try {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (now - entry.expiresAt < 0) {
+                    hits.increment();
+                    return entry.reviews;
+                }
+                entries.remove(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+
+        // Fetch outside the lock, a slow backend must not block hits on other books.
+        List<String> fetched = delegate.getReviewsForBook(ISBN);
+        List<String> reviews = fetched == null || fetched.isEmpty()
+                ? Collections.<String>emptyList()
+                : Collections.unmodifiableList(new ArrayList<>(fetched));
+        long expiresAt = clock.getAsLong() + (reviews.isEmpty() ? negativeTtlNanos : ttlNanos);
+        lock.lock();
+        try {
+            entries.put(key, new Entry(reviews, expiresAt));
+        } finally {
+            lock.unlock();
+        }
+        return reviews;
+    }
+
+    /**
+     * Closes the underlying review service. The cached reviews are kept.
+     */
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    /**
+     * Removes all the books from the cache.
+     */
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of requests served from the cache.
+     *
+     * @return The number of hits.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Retrieves the number of requests that had to fetch from the underlying service.
+     *
+     * @return The number of misses.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Retrieves the number of books evicted to keep the cache within its maximum size.
+     *
+     * @return The number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Retrieves the number of books currently in the cache, including expired ones not yet removed.
+     *
+     * @return The size of the cache.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The reviews of a book and the time they expire.
+     */
+    private static final class Entry {
+        private final List<String> reviews;
+        private final long expiresAt;
+
+        Entry(List<String> reviews, long expiresAt) {
+            this.reviews = reviews;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
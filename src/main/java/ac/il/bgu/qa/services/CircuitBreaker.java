@@ -0,0 +1,278 @@
+package ac.il.bgu.qa.services;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Tracks the outcome of calls to a remote service and stops calling it while it is failing.
+ * While closed, every call goes through and its outcome is recorded in a sliding window of the most
+ * recent calls. Once the window holds enough calls and the failure rate in it reaches the threshold,
+ * the breaker opens and calls fail fast without reaching the service. After the open duration it
+ * lets a few trial calls through; if they all succeed it closes again, otherwise it reopens.
+ * A call asks for permission with {@link #tryAcquirePermission()} and then reports its outcome with
+ * {@link #onSuccess()} or {@link #onFailure()}.
+ */
+public class CircuitBreaker {
+
+    /**
+     * The states of a circuit breaker.
+     */
+    public enum State {
+        // Calls go through and their outcomes are recorded.
+        CLOSED,
+        // Calls fail fast.
+        OPEN,
+        // A limited number of trial calls go through.
+        HALF_OPEN
+    }
+
+    // The number of most recent calls the failure rate is computed over.
+    private final int windowSize;
+    // The number of calls the window must hold before the breaker may open.
+    private final int minimumCalls;
+    // The failure rate, between 0 and 1, at which the breaker opens.
+    private final double failureRateThreshold;
+    // How long the breaker stays open before letting trial calls through, in nanoseconds.
+    private final long openDurationNanos;
+    // The number of trial calls let through while half-open.
+    private final int halfOpenCalls;
+    // Source of the current time, in nanoseconds.
+    private final LongSupplier clock;
+
+    // Guards the state and the window. A lock rather than a monitor, so waiting virtual threads don't pin their carrier.
+    private final ReentrantLock lock = new ReentrantLock();
+    // Outcomes of the most recent calls, true for a failure, as a ring buffer.
+    private final boolean[] window;
+    // Position of the next outcome in the window.
+    private int next;
+    // Number of outcomes in the window.
+    private int recorded;
+    // Number of failures in the window.
+    private int failures;
+
+    private State state = State.CLOSED;
+    // The time the breaker last opened.
+    private long openedAt;
+    // Trial calls let through since the breaker became half-open.
+    private int trialsStarted;
+    // Trial calls that succeeded since the breaker became half-open.
+    private int trialsSucceeded;
+
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failuresTotal = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder openings = new LongAdder();
+
+    /**
+     * Constructs a breaker over a window of 100 calls that opens at a 50% failure rate once it has
+     * seen 20 calls, stays open for 30 seconds and then lets 5 trial calls through.
+     */
+    public CircuitBreaker() {
+        this(100, 20, 0.5, 30, TimeUnit.SECONDS, 5);
+    }
+
+    /**
+     * Constructs a new CircuitBreaker.
+     *
+     * @param windowSize           The number of most recent calls the failure rate is computed over.
+     * @param minimumCalls         The number of calls the window must hold before the breaker may open.
+     * @param failureRateThreshold The failure rate, between 0 and 1, at which the breaker opens.
+     * @param openDuration         How long the breaker stays open before letting trial calls through.
+     * @param unit                 The unit of the open duration.
+     * @param halfOpenCalls        The number of trial calls let through while half-open.
+     */
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                          long openDuration, TimeUnit unit, int halfOpenCalls) {
+        this(windowSize, minimumCalls, failureRateThreshold, openDuration, unit, halfOpenCalls, System::nanoTime);
+    }
+
+    CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                   long openDuration, TimeUnit unit, int halfOpenCalls, LongSupplier clock) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Invalid window size.");
+        } else if (minimumCalls < 1 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("Invalid minimum number of calls.");
+        } else if (!(failureRateThreshold > 0 && failureRateThreshold <= 1)) {
+            throw new IllegalArgumentException("Invalid failure rate threshold.");
+        } else if (openDuration < 0) {
+            throw new IllegalArgumentException("Invalid open duration.");
+        } else if (halfOpenCalls < 1) {
+            throw new IllegalArgumentException("Invalid number of half-open calls.");
+        }
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = unit.toNanos(openDuration);
+        this.halfOpenCalls = halfOpenCalls;
+        this.clock = clock;
+        this.window = new boolean[windowSize];
+    }
+
+    /**
+     * Asks for permission to make a call. A permitted call must report its outcome.
+     *
+     * @return True if the call may go through, false if it must fail fast.
+     */
+    public boolean tryAcquirePermission() {
+        lock.lock();
+        try {
+            if (state == State.OPEN && clock.getAsLong() - openedAt >= openDurationNanos) {
+                transitionTo(State.HALF_OPEN);
+            }
+            switch (state) {
+                case CLOSED:
+                    return true;
+                case HALF_OPEN:
+                    if (trialsStarted < halfOpenCalls) {
+                        trialsStarted++;
+                        return true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } finally {
+            lock.unlock();
+        }
+        rejections.increment();
+        return false;
+    }
+
+    /**
+     * Reports that a permitted call succeeded.
+     */
+    public void onSuccess() {
+        successes.increment();
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN) {
+                if (++trialsSucceeded == halfOpenCalls) {
+                    transitionTo(State.CLOSED);
+                }
+            } else if (state == State.CLOSED) {
+                record(false);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reports that a permitted call failed.
+     */
+    public void onFailure() {
+        failuresTotal.increment();
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN) {
+                transitionTo(State.OPEN);
+            } else if (state == State.CLOSED) {
+                record(true);
+                if (recorded >= minimumCalls && failures >= failureRateThreshold * recorded) {
+                    transitionTo(State.OPEN);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the current state of the breaker.
+     *
+     * @return The state.
+     */
+    public State getState() {
+        lock.lock();
+        try {
+            if (state == State.OPEN && clock.getAsLong() - openedAt >= openDurationNanos) {
+                transitionTo(State.HALF_OPEN);
+            }
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the failure rate over the calls currently in the window.
+     *
+     * @return The failure rate between 0 and 1, or 0 if the window is empty.
+     */
+    public double getFailureRate() {
+        lock.lock();
+        try {
+            return recorded == 0 ? 0 : (double) failures / recorded;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of permitted calls that succeeded.
+     *
+     * @return The number of successful calls.
+     */
+    public long getSuccessCount() {
+        return successes.sum();
+    }
+
+    /**
+     * Retrieves the number of permitted calls that failed.
+     *
+     * @return The number of failed calls.
+     */
+    public long getFailureCount() {
+        return failuresTotal.sum();
+    }
+
+    /**
+     * Retrieves the number of calls that failed fast.
+     *
+     * @return The number of rejected calls.
+     */
+    public long getRejectedCount() {
+        return rejections.sum();
+    }
+
+    /**
+     * Retrieves the number of times the breaker opened.
+     *
+     * @return The number of openings.
+     */
+    public long getOpenedCount() {
+        return openings.sum();
+    }
+
+    private void record(boolean failure) {
+        if (recorded == windowSize) {
+            if (window[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        window[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % windowSize;
+    }
+
+    private void transitionTo(State target) {
+        state = target;
+        trialsStarted = 0;
+        trialsSucceeded = 0;
+        if (target == State.OPEN) {
+            openedAt = clock.getAsLong();
+            openings.increment();
+        } else if (target == State.CLOSED) {
+            // Start over, the failures that opened the breaker are history.
+            next = 0;
+            recorded = 0;
+            failures = 0;
+        }
+    }
+}
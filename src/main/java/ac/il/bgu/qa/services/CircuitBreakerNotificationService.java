@@ -0,0 +1,101 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.errors.NotificationException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Notification service decorator that stops sending through the underlying service while it is failing.
+ * Every send is guarded by a {@link CircuitBreaker}; while the breaker is open, sends throw a
+ * {@link NotificationException} right away, so the retries of
+ * {@link ac.il.bgu.qa.Library#notifyUserWithBookReviews(String, String)} against a dead provider
+ * cost nothing. A batch sent with {@link #notifyUsers(Map)} is one call to the provider and is
+ * recorded as one outcome, a failure only if no user in it could be notified.
+ */
+public class CircuitBreakerNotificationService implements NotificationService {
+
+    // The service the notifications are sent through.
+    private final NotificationService delegate;
+    // Decides whether a send may reach the service.
+    private final CircuitBreaker circuitBreaker;
+
+    /**
+     * Constructs a new CircuitBreakerNotificationService.
+     *
+     * @param delegate       The service the notifications are sent through.
+     * @param circuitBreaker Decides whether a send may reach the service.
+     */
+    public CircuitBreakerNotificationService(NotificationService delegate, CircuitBreaker circuitBreaker) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Invalid notification service.");
+        } else if (circuitBreaker == null) {
+            throw new IllegalArgumentException("Invalid circuit breaker.");
+        }
+        this.delegate = delegate;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Sends a notification message to a specific user, unless the circuit breaker is open.
+     *
+     * @param userId  The unique identifier of the user to be notified.
+     * @param message The content of the notification message.
+     * @throws NotificationException If the circuit breaker is open or there's an issue sending the notification.
+     */
+    @Override
+    public void notifyUser(String userId, String message) throws NotificationException {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            throw new NotificationException("Notification service circuit is open!", false);
+        }
+        try {
+            delegate.notifyUser(userId, message);
+        } catch (RuntimeException | Error e) {
+            // An Error settles the call too, or a half-open breaker would wait for its trial call forever.
+            circuitBreaker.onFailure();
+            throw e;
+        }
+        circuitBreaker.onSuccess();
+    }
+
+    /**
+     * Sends notification messages to several users in one round-trip, unless the circuit breaker is open.
+     *
+     * @param messages The content of the notification message, by the unique identifier of the user to be notified.
+     * @return The reason each user that couldn't be notified failed, by user Id. Every user if the circuit breaker is open.
+     */
+    @Override
+    public Map<String, NotificationException> notifyUsers(Map<String, String> messages) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            NotificationException failure = new NotificationException("Notification service circuit is open!", false);
+            Map<String, NotificationException> failures = new HashMap<>();
+            for (String userId : messages.keySet()) {
+                failures.put(userId, failure);
+            }
+            return failures;
+        }
+        Map<String, NotificationException> failures;
+        try {
+            failures = delegate.notifyUsers(messages);
+        } catch (RuntimeException | Error e) {
+            // An Error settles the call too, or a half-open breaker would wait for its trial call forever.
+            circuitBreaker.onFailure();
+            throw e;
+        }
+        if (!messages.isEmpty() && failures != null && failures.size() == messages.size()) {
+            circuitBreaker.onFailure();
+        } else {
+            circuitBreaker.onSuccess();
+        }
+        return failures;
+    }
+
+    /**
+     * Retrieves the circuit breaker guarding the service, for its state and metrics.
+     *
+     * @return The circuit breaker.
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+}
@@ -0,0 +1,77 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.errors.ReviewException;
+
+import java.util.List;
+
+/**
+ * Review service decorator that stops fetching from the underlying service while it is failing.
+ * Every fetch is guarded by a {@link CircuitBreaker}; while the breaker is open, fetches throw a
+ * {@link ReviewException} right away instead of waiting for the service to fail, which
+ * {@link ac.il.bgu.qa.Library} already handles as the service being unavailable.
+ * Closing the service is not guarded, it always reaches the underlying service.
+ */
+public class CircuitBreakerReviewService implements ReviewService {
+
+    // The service the reviews are fetched from.
+    private final ReviewService delegate;
+    // Decides whether a fetch may reach the service.
+    private final CircuitBreaker circuitBreaker;
+
+    /**
+     * Constructs a new CircuitBreakerReviewService.
+     *
+     * @param delegate       The service the reviews are fetched from.
+     * @param circuitBreaker Decides whether a fetch may reach the service.
+     */
+    public CircuitBreakerReviewService(ReviewService delegate, CircuitBreaker circuitBreaker) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Invalid review service.");
+        } else if (circuitBreaker == null) {
+            throw new IllegalArgumentException("Invalid circuit breaker.");
+        }
+        this.delegate = delegate;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Fetches the list of reviews for a book, unless the circuit breaker is open.
+     *
+     * @param ISBN The International Standard Book Number (ISBN) of the book.
+     * @return A list of reviews associated with the given book's ISBN.
+     * @throws ReviewException If the circuit breaker is open or there's an issue fetching the reviews.
+     */
+    @Override
+    public List<String> getReviewsForBook(String ISBN) throws ReviewException {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            throw new ReviewException("Review service circuit is open!", false);
+        }
+        List<String> reviews;
+        try {
+            reviews = delegate.getReviewsForBook(ISBN);
+        } catch (RuntimeException | Error e) {
+            // An Error settles the call too, or a half-open breaker would wait for its trial call forever.
+            circuitBreaker.onFailure();
+            throw e;
+        }
+        circuitBreaker.onSuccess();
+        return reviews;
+    }
+
+    /**
+     * Closes the underlying review service.
+     */
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    /**
+     * Retrieves the circuit breaker guarding the service, for its state and metrics.
+     *
+     * @return The circuit breaker.
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+}
@@ -0,0 +1,171 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.IsbnKey;
+import ac.il.bgu.qa.errors.ReviewException;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Review service decorator that coalesces concurrent requests for the same book into one fetch.
+ * The first caller for a book fetches from the underlying service while the callers that arrive
+ * before it finishes wait and share its result, or its exception. This protects the backend from
+ * thundering herds when a title trends.
+ * Callers close the service after every fetch, as {@link ac.il.bgu.qa.Library} does, from the thread
+ * that fetched. Each fetch counts the callers sharing it, and the underlying service is closed once the
+ * last of them has closed it, so a shared fetch is never cut short by a caller that finished earlier.
+ * Once a fetch has finished, or its callers have all closed, nobody joins it anymore, so the underlying
+ * service is closed exactly once per fetch however much traffic follows for the same or other books.
+ */
+public class CoalescingReviewService implements ReviewService {
+
+    // The service the reviews are fetched from.
+    private final ReviewService delegate;
+
+    // Fetches in progress, by ISBN key, or by the ISBN itself if it isn't valid.
+    private final ConcurrentHashMap<Object, Fetch> inFlight = new ConcurrentHashMap<>();
+
+    // The fetch the calling thread last took part in and hasn't closed yet.
+    private final ThreadLocal<Fetch> callerFetch = new ThreadLocal<>();
+
+    private final LongAdder fetches = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Constructs a new CoalescingReviewService.
+     *
+     * @param delegate The service the reviews are fetched from.
+     */
+    public CoalescingReviewService(ReviewService delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Invalid review service.");
+        }
+        this.delegate = delegate;
+    }
+
+    /**
+     * Fetches the list of reviews for a book, sharing the fetch with concurrent callers for the same book.
+     * Callers sharing a fetch get the same list, which must not be modified.
+     *
+     * @param ISBN The International Standard Book Number (ISBN) of the book.
+     * @return A list of reviews associated with the given book's ISBN.
+     * @throws ReviewException If there's an issue fetching the reviews.
+     */
+    @Override
+    public List<String> getReviewsForBook(String ISBN) throws ReviewException {
+        long isbnKey = IsbnKey.of(ISBN);
+        Object key = isbnKey == IsbnKey.INVALID ? String.valueOf(ISBN) : Long.valueOf(isbnKey);
+
+        Fetch fetch = new Fetch();
+        for (Fetch shared; (shared = inFlight.putIfAbsent(key, fetch)) != null; ) {
+            if (shared.join()) {
+                callerFetch.set(shared);
+                coalesced.increment();
+                return await(shared.result);
+            }
+            // Every caller of the fetch closed while it was still on its way out of the map; start a fresh one.
+            if (inFlight.replace(key, shared, fetch)) {
+                break;
+            }
+        }
+
+        // This caller leads the fetch. Later callers only join it until it is removed.
+        callerFetch.set(fetch);
+        fetches.increment();
+        try {
+            List<String> reviews = delegate.getReviewsForBook(ISBN);
+            fetch.result.complete(reviews);
+            return reviews;
+        } catch (RuntimeException | Error e) {
+            fetch.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, fetch);
+        }
+    }
+
+    /**
+     * Closes the underlying review service once every caller sharing the calling thread's fetch has closed it.
+     */
+    @Override
+    public void close() {
+        Fetch fetch = callerFetch.get();
+        if (fetch == null) {
+            // Not paired with a fetch, keep the plain meaning of close.
+            delegate.close();
+            return;
+        }
+        callerFetch.remove();
+        if (fetch.leave()) {
+            delegate.close();
+        }
+    }
+
+    /**
+     * Retrieves the number of fetches made from the underlying service.
+     *
+     * @return The number of fetches.
+     */
+    public long getFetchCount() {
+        return fetches.sum();
+    }
+
+    /**
+     * Retrieves the number of requests that shared another caller's fetch.
+     *
+     * @return The number of coalesced requests.
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    private static List<String> await(CompletableFuture<List<String>> fetch) {
+        try {
+            return fetch.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * A fetch and the callers sharing it.
+     */
+    static final class Fetch {
+        private final CompletableFuture<List<String>> result = new CompletableFuture<>();
+        // Callers that took part in the fetch and haven't closed yet, the leader included. Never raised from 0.
+        private final AtomicInteger openCallers = new AtomicInteger(1);
+
+        /**
+         * Joins the fetch as one more caller, unless every caller has already closed.
+         *
+         * @return true if joined, false if the fetch is closed.
+         */
+        boolean join() {
+            for (int callers = openCallers.get(); callers > 0; callers = openCallers.get()) {
+                if (openCallers.compareAndSet(callers, callers + 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Leaves the fetch as a caller that closed.
+         *
+         * @return true if this was the last caller, who closes the underlying service.
+         */
+        boolean leave() {
+            return openCallers.decrementAndGet() == 0;
+        }
+    }
+}
@@ -3,6 +3,12 @@ package ac.il.bgu.qa.services;
 import ac.il.bgu.qa.Book;
 import ac.il.bgu.qa.User;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Provides an interface for services responsible for managing the database of books and users.
  */
@@ -56,4 +62,70 @@ public interface DatabaseService {
      * @param ISBN The International Standard Book Number of the book to be returned.
      */
     void returnBook(String ISBN);
+
+    /**
+     * Fetches several books from the database in one round-trip.
+     * The default implementation fetches the books one by one; implementations backed by a remote
+     * store should override it.
+     *
+     * @param ISBNs The International Standard Book Numbers.
+     * @return The books found, by the ISBN they were requested with. ISBNs without a book are absent.
+     */
+    default Map<String, Book> getBooksByISBN(Collection<String> ISBNs) {
+        Map<String, Book> books = new HashMap<>();
+        for (String ISBN : ISBNs) {
+            Book book = getBookByISBN(ISBN);
+            if (book != null) {
+                books.put(ISBN, book);
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Adds several books to the database in one round-trip.
+     * The default implementation adds the books one by one.
+     *
+     * @param books The books to be added, by ISBN.
+     */
+    default void addBooks(Map<String, Book> books) {
+        for (Map.Entry<String, Book> entry : books.entrySet()) {
+            addBook(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Borrows several books for a user in one round-trip.
+     * Either all the books are borrowed or none of them is. The default implementation borrows the
+     * books one by one and, if one of the borrows fails, returns the books it already borrowed.
+     *
+     * @param ISBNs  The International Standard Book Numbers of the books to be borrowed.
+     * @param userId The unique identifier for the user borrowing the books.
+     */
+    default void borrowBooks(Collection<String> ISBNs, String userId) {
+        List<String> borrowed = new ArrayList<>(ISBNs.size());
+        try {
+            for (String ISBN : ISBNs) {
+                borrowBook(ISBN, userId);
+                borrowed.add(ISBN);
+            }
+        } catch (RuntimeException e) {
+            for (String ISBN : borrowed) {
+                returnBook(ISBN);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Marks several books as returned in one round-trip.
+     * The default implementation returns the books one by one.
+     *
+     * @param ISBNs The International Standard Book Numbers of the books to be returned.
+     */
+    default void returnBooks(Collection<String> ISBNs) {
+        for (String ISBN : ISBNs) {
+            returnBook(ISBN);
+        }
+    }
 }
@@ -0,0 +1,189 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.IsbnKey;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.UserIdValidator;
+import ac.il.bgu.qa.errors.BookAlreadyBorrowedException;
+import ac.il.bgu.qa.errors.BookNotBorrowedException;
+import ac.il.bgu.qa.errors.BookNotFoundException;
+import ac.il.bgu.qa.errors.UserNotRegisteredException;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Thread-safe in-memory database of books, users and the borrow ledger.
+ * Books and users are kept in concurrent maps keyed by their canonical {@link IsbnKey} and packed
+ * {@link UserIdValidator} Id. The ledger maps every borrowed ISBN to its borrower and every
+ * borrower to the ISBNs they hold. Updates of a book's ledger entry are atomic and only lock
+ * that entry, so borrows and returns of different books never contend on a global lock.
+ */
+public class InMemoryDatabaseService implements DatabaseService {
+
+    // Books by ISBN key.
+    private final ConcurrentHashMap<Long, Book> books = new ConcurrentHashMap<>();
+    // Users by packed user Id.
+    private final ConcurrentHashMap<Long, User> users = new ConcurrentHashMap<>();
+    // Id of the user currently holding each borrowed book, by ISBN key.
+    private final ConcurrentHashMap<Long, String> borrowers = new ConcurrentHashMap<>();
+    // Canonical ISBNs of the books held by each user, by user Id.
+    private final ConcurrentHashMap<String, Set<String>> loans = new ConcurrentHashMap<>();
+
+    @Override
+    public void addBook(String ISBN, Book book) {
+        if (book == null) {
+            throw new IllegalArgumentException("Invalid book.");
+        }
+        if (books.putIfAbsent(Keys.isbn(ISBN), book) != null) {
+            throw new IllegalArgumentException("Book already exists.");
+        }
+    }
+
+    @Override
+    public void registerUser(String id, User user) {
+        if (user == null) {
+            throw new IllegalArgumentException("Invalid user.");
+        }
+        if (users.putIfAbsent(Keys.user(id), user) != null) {
+            throw new IllegalArgumentException("User already exists.");
+        }
+    }
+
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        long key = IsbnKey.of(ISBN);
+        return key == IsbnKey.INVALID ? null : books.get(key);
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        long key = UserIdValidator.pack(userId);
+        return key == UserIdValidator.INVALID ? null : users.get(key);
+    }
+
+    /**
+     * Records that a book is borrowed by a user.
+     * The borrowed state of the {@link Book} itself is owned by the caller, so only the ledger is updated here.
+     * If two users race for the same book, exactly one of them succeeds.
+     *
+     * @param ISBN   The International Standard Book Number of the book to be borrowed.
+     * @param userId The unique identifier for the user borrowing the book.
+     */
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        long key = Keys.isbn(ISBN);
+        if (!books.containsKey(key)) {
+            throw new BookNotFoundException("Book not found!");
+        }
+        if (!users.containsKey(Keys.user(userId))) {
+            throw new UserNotRegisteredException("User not found!");
+        }
+
+        String canonical = IsbnKey.toString(key);
+        borrowers.compute(key, (k, current) -> {
+            if (current != null) {
+                throw new BookAlreadyBorrowedException("Book is already borrowed!");
+            }
+            // Updated while holding the book's entry, so the two sides of the ledger never disagree.
+            loans.compute(userId, (u, held) -> {
+                Set<String> isbns = held == null ? ConcurrentHashMap.newKeySet() : held;
+                isbns.add(canonical);
+                return isbns;
+            });
+            return userId;
+        });
+    }
+
+    /**
+     * Removes a book from the ledger of the user who borrowed it.
+     *
+     * @param ISBN The International Standard Book Number of the book to be returned.
+     */
+    @Override
+    public void returnBook(String ISBN) {
+        long key = Keys.isbn(ISBN);
+        String canonical = IsbnKey.toString(key);
+        borrowers.compute(key, (k, current) -> {
+            if (current == null) {
+                throw new BookNotBorrowedException("Book wasn't borrowed!");
+            }
+            loans.computeIfPresent(current, (u, held) -> {
+                held.remove(canonical);
+                return held.isEmpty() ? null : held;
+            });
+            return null;
+        });
+    }
+
+    /**
+     * Retrieves the Id of the user currently holding a book.
+     *
+     * @param ISBN The International Standard Book Number of the book.
+     * @return The user Id, or null if the book is not borrowed.
+     */
+    public String getBorrowerId(String ISBN) {
+        long key = IsbnKey.of(ISBN);
+        return key == IsbnKey.INVALID ? null : borrowers.get(key);
+    }
+
+    /**
+     * Retrieves the books currently held by a user.
+     *
+     * @param userId The unique identifier for the user.
+     * @return A snapshot of the canonical ISBNs of the borrowed books.
+     */
+    public Set<String> getBorrowedBooks(String userId) {
+        Set<String> held = userId == null ? null : loans.get(userId);
+        return held == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(new HashSet<>(held));
+    }
+
+    /**
+     * Retrieves the number of books in the database.
+     *
+     * @return The number of books.
+     */
+    public int getBookCount() {
+        return books.size();
+    }
+
+    /**
+     * Retrieves the number of users in the database.
+     *
+     * @return The number of users.
+     */
+    public int getUserCount() {
+        return users.size();
+    }
+
+    /**
+     * Retrieves the number of books currently borrowed.
+     *
+     * @return The number of borrowed books.
+     */
+    public int getBorrowedCount() {
+        return borrowers.size();
+    }
+
+    /**
+     * Visits every book without blocking writers. Books added meanwhile may or may not be visited.
+     *
+     * @param action Called with the canonical ISBN of every book and the book.
+     */
+    void forEachBook(BiConsumer<String, Book> action) {
+        books.forEach((key, book) -> action.accept(IsbnKey.toString(key), book));
+    }
+
+    /**
+     * Visits every user without blocking writers. Users registered meanwhile may or may not be visited.
+     *
+     * @param action Called with every user.
+     */
+    void forEachUser(Consumer<User> action) {
+        users.values().forEach(action);
+    }
+}
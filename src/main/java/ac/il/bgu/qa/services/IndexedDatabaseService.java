@@ -0,0 +1,142 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.IsbnKey;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.UserIdValidator;
+import ac.il.bgu.qa.errors.BookAlreadyBorrowedException;
+import ac.il.bgu.qa.errors.BookNotBorrowedException;
+import ac.il.bgu.qa.errors.BookNotFoundException;
+import ac.il.bgu.qa.errors.UserNotRegisteredException;
+
+/**
+ * In-memory database of books and users keyed by primitive {@code long} keys.
+ * Books are indexed by their {@link IsbnKey}, so every spelling of an ISBN finds the same book,
+ * and users by their packed {@link UserIdValidator} Id. The indexes are open-addressing tables
+ * without boxing, which keeps the memory per entry small and lookup latency flat even for
+ * catalogues of tens of millions of titles.
+ * This class is not thread-safe.
+ */
+public class IndexedDatabaseService implements DatabaseService {
+
+    // Books by ISBN key.
+    private final LongHashMap<Book> books;
+    // Users by packed user Id.
+    private final LongHashMap<User> users;
+    // Id of the user currently holding each borrowed book, by ISBN key.
+    private final LongHashMap<String> borrowers;
+
+    /**
+     * Constructs an empty database.
+     */
+    public IndexedDatabaseService() {
+        this(1024, 1024);
+    }
+
+    /**
+     * Constructs an empty database sized for the expected number of books and users.
+     *
+     * @param expectedBooks The number of books the database should hold without resizing.
+     * @param expectedUsers The number of users the database should hold without resizing.
+     */
+    public IndexedDatabaseService(int expectedBooks, int expectedUsers) {
+        this.books = new LongHashMap<>(expectedBooks);
+        this.users = new LongHashMap<>(expectedUsers);
+        this.borrowers = new LongHashMap<>(Math.max(16, expectedBooks / 8));
+    }
+
+    @Override
+    public void addBook(String ISBN, Book book) {
+        if (book == null) {
+            throw new IllegalArgumentException("Invalid book.");
+        }
+        if (books.putIfAbsent(Keys.isbn(ISBN), book) != null) {
+            throw new IllegalArgumentException("Book already exists.");
+        }
+    }
+
+    @Override
+    public void registerUser(String id, User user) {
+        if (user == null) {
+            throw new IllegalArgumentException("Invalid user.");
+        }
+        if (users.putIfAbsent(Keys.user(id), user) != null) {
+            throw new IllegalArgumentException("User already exists.");
+        }
+    }
+
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        long key = IsbnKey.of(ISBN);
+        return key == IsbnKey.INVALID ? null : books.get(key);
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        long key = UserIdValidator.pack(userId);
+        return key == UserIdValidator.INVALID ? null : users.get(key);
+    }
+
+    /**
+     * Records that a book is borrowed by a user.
+     * The borrowed state of the {@link Book} itself is owned by the caller, so only the association
+     * between the book and the user is stored here.
+     *
+     * @param ISBN   The International Standard Book Number of the book to be borrowed.
+     * @param userId The unique identifier for the user borrowing the book.
+     */
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        long key = Keys.isbn(ISBN);
+        if (books.get(key) == null) {
+            throw new BookNotFoundException("Book not found!");
+        }
+        if (users.get(Keys.user(userId)) == null) {
+            throw new UserNotRegisteredException("User not found!");
+        }
+        if (borrowers.putIfAbsent(key, userId) != null) {
+            throw new BookAlreadyBorrowedException("Book is already borrowed!");
+        }
+    }
+
+    /**
+     * Removes the association between a book and the user who borrowed it.
+     *
+     * @param ISBN The International Standard Book Number of the book to be returned.
+     */
+    @Override
+    public void returnBook(String ISBN) {
+        if (borrowers.remove(Keys.isbn(ISBN)) == null) {
+            throw new BookNotBorrowedException("Book wasn't borrowed!");
+        }
+    }
+
+    /**
+     * Retrieves the Id of the user currently holding a book.
+     *
+     * @param ISBN The International Standard Book Number of the book.
+     * @return The user Id, or null if the book is not borrowed.
+     */
+    public String getBorrowerId(String ISBN) {
+        long key = IsbnKey.of(ISBN);
+        return key == IsbnKey.INVALID ? null : borrowers.get(key);
+    }
+
+    /**
+     * Retrieves the number of books in the database.
+     *
+     * @return The number of books.
+     */
+    public int getBookCount() {
+        return books.size();
+    }
+
+    /**
+     * Retrieves the number of users in the database.
+     *
+     * @return The number of users.
+     */
+    public int getUserCount() {
+        return users.size();
+    }
+}
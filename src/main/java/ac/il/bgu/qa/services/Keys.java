@@ -0,0 +1,44 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.IsbnKey;
+import ac.il.bgu.qa.UserIdValidator;
+
+/**
+ * Converts the string identifiers used by {@link DatabaseService} into primitive keys,
+ * rejecting identifiers that are not valid.
+ */
+final class Keys {
+
+    private Keys() {
+    }
+
+    /**
+     * Retrieves the key of an ISBN.
+     *
+     * @param ISBN The International Standard Book Number.
+     * @return The {@link IsbnKey} of the ISBN.
+     * @throws IllegalArgumentException If the ISBN is not valid.
+     */
+    static long isbn(String ISBN) {
+        long key = IsbnKey.of(ISBN);
+        if (key == IsbnKey.INVALID) {
+            throw new IllegalArgumentException("Invalid ISBN.");
+        }
+        return key;
+    }
+
+    /**
+     * Retrieves the packed form of a user Id.
+     *
+     * @param userId The unique identifier for the user.
+     * @return The packed user Id.
+     * @throws IllegalArgumentException If the user Id is not valid.
+     */
+    static long user(String userId) {
+        long key = UserIdValidator.pack(userId);
+        if (key == UserIdValidator.INVALID) {
+            throw new IllegalArgumentException("Invalid user Id.");
+        }
+        return key;
+    }
+}
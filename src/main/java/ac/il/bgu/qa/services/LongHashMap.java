@@ -0,0 +1,175 @@
+package ac.il.bgu.qa.services;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from non-negative {@code long} keys to values.
+ * Keys are stored unboxed in a flat array and collisions are resolved with linear probing,
+ * so a lookup touches one or two cache lines and never allocates.
+ * This class is not thread-safe.
+ *
+ * @param <V> The type of the values.
+ */
+final class LongHashMap<V> {
+
+    // Marks a free slot. Keys are never negative, so it can't collide with a real key.
+    private static final long EMPTY = -1L;
+
+    // The table is grown once it is this full, which keeps probe sequences short.
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int threshold;
+
+    /**
+     * Constructs an empty map.
+     *
+     * @param expectedSize The number of entries the map should hold without resizing.
+     */
+    LongHashMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * Retrieves the value of a key.
+     *
+     * @param key The key.
+     * @return The value mapped to the key, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) {
+                return (V) values[i];
+            }
+            if (k == EMPTY) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Maps a key to a value if the key has no value yet.
+     *
+     * @param key   The key, must not be negative.
+     * @param value The value, must not be null.
+     * @return The value already mapped to the key, or null if the new value was stored.
+     */
+    @SuppressWarnings("unchecked")
+    V putIfAbsent(long key, V value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Negative key.");
+        }
+
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        for (long k; (k = keys[i]) != EMPTY; i = (i + 1) & mask) {
+            if (k == key) {
+                return (V) values[i];
+            }
+        }
+
+        keys[i] = key;
+        values[i] = value;
+        if (++size > threshold) {
+            resize();
+        }
+        return null;
+    }
+
+    /**
+     * Removes the value of a key.
+     * The entries following the removed one in its probe sequence are shifted back, so no
+     * tombstones are left behind and lookups stay as short as they were before the insert.
+     *
+     * @param key The key.
+     * @return The value that was mapped to the key, or null if there was none.
+     */
+    @SuppressWarnings("unchecked")
+    V remove(long key) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        for (long k; (k = keys[i]) != key; i = (i + 1) & mask) {
+            if (k == EMPTY) {
+                return null;
+            }
+        }
+
+        V removed = (V) values[i];
+        for (int gap = i, j = (i + 1) & mask; ; j = (j + 1) & mask) {
+            long k = keys[j];
+            if (k == EMPTY) {
+                keys[gap] = EMPTY;
+                values[gap] = null;
+                break;
+            }
+            // Move the entry into the gap unless its home slot lies cyclically in (gap, j].
+            int home = slot(k, mask);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = k;
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        size--;
+        return removed;
+    }
+
+    /**
+     * Retrieves the number of entries in the map.
+     *
+     * @return The number of entries.
+     */
+    int size() {
+        return size;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(oldKeys.length << 1);
+
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            long k = oldKeys[j];
+            if (k != EMPTY) {
+                int i = slot(k, mask);
+                while (keys[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = k;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new Object[capacity];
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR);
+        if (needed > 1 << 30) {
+            throw new IllegalArgumentException("Map too large.");
+        }
+        return Math.max(16, Integer.highestOneBit((int) needed - 1) << 1);
+    }
+
+    private static int slot(long key, int mask) {
+        // Keys such as ISBNs share long prefixes, so mix all bits before masking (murmur3 finalizer).
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+}
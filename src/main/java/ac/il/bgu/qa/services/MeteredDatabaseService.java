@@ -0,0 +1,187 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.metrics.LatencyRecorder;
+import ac.il.bgu.qa.metrics.LibraryMetrics;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Database service decorator that records the latency of every call to the underlying database,
+ * as "database." followed by the name of the method, and counts the exceptions it throws.
+ * The batch methods are forwarded as batches, so the database keeps its own round-trip behavior.
+ */
+public class MeteredDatabaseService implements DatabaseService {
+
+    // The database the calls are forwarded to.
+    private final DatabaseService delegate;
+    private final LibraryMetrics metrics;
+    private final LatencyRecorder addBook;
+    private final LatencyRecorder registerUser;
+    private final LatencyRecorder getBookByISBN;
+    private final LatencyRecorder getUserById;
+    private final LatencyRecorder borrowBook;
+    private final LatencyRecorder returnBook;
+    private final LatencyRecorder getBooksByISBN;
+    private final LatencyRecorder addBooks;
+    private final LatencyRecorder borrowBooks;
+    private final LatencyRecorder returnBooks;
+
+    /**
+     * Constructs a new MeteredDatabaseService.
+     *
+     * @param delegate The database the calls are forwarded to.
+     * @param metrics  The metrics to record the calls in.
+     */
+    public MeteredDatabaseService(DatabaseService delegate, LibraryMetrics metrics) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Invalid database service.");
+        } else if (metrics == null) {
+            throw new IllegalArgumentException("Invalid metrics.");
+        }
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.addBook = metrics.latency("database.addBook");
+        this.registerUser = metrics.latency("database.registerUser");
+        this.getBookByISBN = metrics.latency("database.getBookByISBN");
+        this.getUserById = metrics.latency("database.getUserById");
+        this.borrowBook = metrics.latency("database.borrowBook");
+        this.returnBook = metrics.latency("database.returnBook");
+        this.getBooksByISBN = metrics.latency("database.getBooksByISBN");
+        this.addBooks = metrics.latency("database.addBooks");
+        this.borrowBooks = metrics.latency("database.borrowBooks");
+        this.returnBooks = metrics.latency("database.returnBooks");
+    }
+
+    @Override
+    public void addBook(String ISBN, Book book) {
+        long start = System.nanoTime();
+        try {
+            delegate.addBook(ISBN, book);
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            addBook.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void registerUser(String id, User user) {
+        long start = System.nanoTime();
+        try {
+            delegate.registerUser(id, user);
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            registerUser.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getBookByISBN(ISBN);
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            getBookByISBN.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getUserById(userId);
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            getUserById.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        long start = System.nanoTime();
+        try {
+            delegate.borrowBook(ISBN, userId);
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            borrowBook.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void returnBook(String ISBN) {
+        long start = System.nanoTime();
+        try {
+            delegate.returnBook(ISBN);
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            returnBook.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Map<String, Book> getBooksByISBN(Collection<String> ISBNs) {
+        long start = System.nanoTime();
+        try {
+            return delegate.getBooksByISBN(ISBNs);
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            getBooksByISBN.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void addBooks(Map<String, Book> books) {
+        long start = System.nanoTime();
+        try {
+            delegate.addBooks(books);
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            addBooks.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void borrowBooks(Collection<String> ISBNs, String userId) {
+        long start = System.nanoTime();
+        try {
+            delegate.borrowBooks(ISBNs, userId);
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            borrowBooks.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void returnBooks(Collection<String> ISBNs) {
+        long start = System.nanoTime();
+        try {
+            delegate.returnBooks(ISBNs);
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            returnBooks.record(System.nanoTime() - start);
+        }
+    }
+}
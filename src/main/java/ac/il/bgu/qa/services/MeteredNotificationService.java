@@ -0,0 +1,99 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.errors.NotificationException;
+import ac.il.bgu.qa.metrics.LatencyRecorder;
+import ac.il.bgu.qa.metrics.LibraryMetrics;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Notification service decorator that records the latency of every call to the underlying service,
+ * as "notification.notifyUser" whatever the type of the message and "notification.notifyUsers", and
+ * counts the exceptions it throws, including the failure of every user of a batch.
+ */
+public class MeteredNotificationService implements NotificationService {
+
+    // The service the notifications are sent through.
+    private final NotificationService delegate;
+    private final LibraryMetrics metrics;
+    private final LatencyRecorder notifyUser;
+    private final LatencyRecorder notifyUsers;
+
+    /**
+     * Constructs a new MeteredNotificationService.
+     *
+     * @param delegate The service the notifications are sent through.
+     * @param metrics  The metrics to record the calls in.
+     */
+    public MeteredNotificationService(NotificationService delegate, LibraryMetrics metrics) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Invalid notification service.");
+        } else if (metrics == null) {
+            throw new IllegalArgumentException("Invalid metrics.");
+        }
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.notifyUser = metrics.latency("notification.notifyUser");
+        this.notifyUsers = metrics.latency("notification.notifyUsers");
+    }
+
+    @Override
+    public void notifyUser(String userId, String message) throws NotificationException {
+        long start = System.nanoTime();
+        try {
+            delegate.notifyUser(userId, message);
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            notifyUser.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void notifyUser(String userId, CharSequence message) throws NotificationException {
+        long start = System.nanoTime();
+        try {
+            delegate.notifyUser(userId, message);
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            notifyUser.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void notifyUser(String userId, ByteBuffer message) throws NotificationException {
+        long start = System.nanoTime();
+        try {
+            delegate.notifyUser(userId, message);
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            notifyUser.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Map<String, NotificationException> notifyUsers(Map<String, String> messages) {
+        long start = System.nanoTime();
+        try {
+            Map<String, NotificationException> failures = delegate.notifyUsers(messages);
+            // Some services report no failures as null.
+            if (failures != null) {
+                for (NotificationException failure : failures.values()) {
+                    metrics.recordError(failure);
+                }
+            }
+            return failures;
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            notifyUsers.record(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.errors.ReviewException;
+import ac.il.bgu.qa.metrics.LatencyRecorder;
+import ac.il.bgu.qa.metrics.LibraryMetrics;
+
+import java.util.List;
+
+/**
+ * Review service decorator that records the latency of every call to the underlying service, as
+ * "review.getReviewsForBook" and "review.close", and counts the exceptions it throws.
+ */
+public class MeteredReviewService implements ReviewService {
+
+    // The service the reviews are fetched from.
+    private final ReviewService delegate;
+    private final LibraryMetrics metrics;
+    private final LatencyRecorder getReviewsForBook;
+    private final LatencyRecorder close;
+
+    /**
+     * Constructs a new MeteredReviewService.
+     *
+     * @param delegate The service the reviews are fetched from.
+     * @param metrics  The metrics to record the calls in.
+     */
+    public MeteredReviewService(ReviewService delegate, LibraryMetrics metrics) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Invalid review service.");
+        } else if (metrics == null) {
+            throw new IllegalArgumentException("Invalid metrics.");
+        }
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.getReviewsForBook = metrics.latency("review.getReviewsForBook");
+        this.close = metrics.latency("review.close");
+    }
+
+    @Override
+    public List<String> getReviewsForBook(String ISBN) throws ReviewException {
+        long start = System.nanoTime();
+        try {
+            return delegate.getReviewsForBook(ISBN);
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            getReviewsForBook.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void close() {
+        long start = System.nanoTime();
+        try {
+            delegate.close();
+        } catch (RuntimeException e) {
+            metrics.recordError(e);
+            throw e;
+        } finally {
+            close.record(System.nanoTime() - start);
+        }
+    }
+}
@@ -2,6 +2,11 @@ package ac.il.bgu.qa.services;
 
 import ac.il.bgu.qa.errors.NotificationException;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Provides an interface for services responsible for notifying users.
  */
@@ -15,4 +20,49 @@ public interface NotificationService {
      * @throws NotificationException If there's an issue sending the notification.
      */
     void notifyUser(String userId, String message) throws NotificationException;
+
+    /**
+     * Sends a notification message to a specific user without requiring it as a {@link String}, e.g. a
+     * {@link ac.il.bgu.qa.ReviewDigest} shared by many users. The default implementation converts the
+     * message to a string; implementations that can stream it should override it.
+     *
+     * @param userId  The unique identifier of the user to be notified.
+     * @param message The content of the notification message.
+     * @throws NotificationException If there's an issue sending the notification.
+     */
+    default void notifyUser(String userId, CharSequence message) throws NotificationException {
+        notifyUser(userId, message.toString());
+    }
+
+    /**
+     * Sends a UTF-8 encoded notification message to a specific user. The buffer's position is not changed.
+     * The default implementation decodes the message; implementations that send bytes should override it.
+     *
+     * @param userId  The unique identifier of the user to be notified.
+     * @param message The content of the notification message, UTF-8 encoded, from its position to its limit.
+     * @throws NotificationException If there's an issue sending the notification.
+     */
+    default void notifyUser(String userId, ByteBuffer message) throws NotificationException {
+        notifyUser(userId, StandardCharsets.UTF_8.decode(message.duplicate()).toString());
+    }
+
+    /**
+     * Sends notification messages to several users in one round-trip.
+     * A failure to notify one user doesn't prevent notifying the others. The default implementation
+     * notifies the users one by one; implementations backed by a provider with a batch API should override it.
+     *
+     * @param messages The content of the notification message, by the unique identifier of the user to be notified.
+     * @return The reason each user that couldn't be notified failed, by user Id. Empty if all users were notified.
+     */
+    default Map<String, NotificationException> notifyUsers(Map<String, String> messages) {
+        Map<String, NotificationException> failures = new HashMap<>();
+        for (Map.Entry<String, String> entry : messages.entrySet()) {
+            try {
+                notifyUser(entry.getKey(), entry.getValue());
+            } catch (NotificationException e) {
+                failures.put(entry.getKey(), e);
+            }
+        }
+        return failures;
+    }
 }
@@ -0,0 +1,1011 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.BookCodec;
+import ac.il.bgu.qa.IsbnKey;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.UserCodec;
+import ac.il.bgu.qa.errors.BookNotBorrowedException;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Database service that persists the books, the users and the borrow ledger in an append-only
+ * write-ahead log, and recovers them by replaying the log when opened.
+ * The state itself is held by an {@link InMemoryDatabaseService}. Every write is checked and applied to
+ * it and its record appended to an in-memory buffer under one short lock, so the log lists the writes
+ * in the order they were applied. The writer then waits for the record to reach the disk as its
+ * {@link Durability} requires. Waiting writers commit as a group: one of them writes everything
+ * buffered so far and syncs it with a single fsync on behalf of all of them, while new records
+ * accumulate for the next group, so the number of fsyncs per second is bounded by the disk and not
+ * by the number of writers.
+ * Every record is framed by its length and a CRC32C checksum; a torn or corrupt record at the end of
+ * the log, left by a crash in the middle of a write, is dropped on recovery along with anything after it.
+ * If writing the log fails, the service refuses all further writes: the log is the source of truth
+ * and the service must be reopened from it.
+ * A snapshot of all the books and users, next to the log, spares replaying the whole log when opened:
+ * the snapshot is loaded and only the log after the point it was taken from is replayed. The snapshot
+ * holds the users and books in the formats of {@link UserCodec} and {@link BookCodec}. Snapshots are
+ * fuzzy, taken from the live state while writes go on. The log position is noted when a snapshot starts,
+ * so every write the snapshot may have missed is in the log after it, and replaying a record the snapshot
+ * already reflects leaves the state as it was. A snapshot that can't be read is ignored and the whole
+ * log replayed instead.
+ */
+public class PersistentDatabaseService implements DatabaseService, AutoCloseable {
+
+    /**
+     * How far a write has to get before it returns.
+     */
+    public enum Durability {
+        // On disk: the write survives a crash of the machine. Concurrent writes share an fsync.
+        SYNC,
+        // Handed to the operating system: the write survives a crash of the process, not of the machine.
+        WRITE,
+        // Buffered: the write is lost if the process crashes before the next flush. Buffered records are
+        // written once they exceed a megabyte, and synced by flush() and close().
+        ASYNC
+    }
+
+    // The first bytes of a log: "QALG" and the version of the format.
+    private static final int MAGIC = 0x51414C47;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    // The size of the frame of a record: its length and its checksum.
+    private static final int FRAME_SIZE = 8;
+
+    // Types of records.
+    private static final byte ADD_BOOK = 1;
+    private static final byte REGISTER_USER = 2;
+    private static final byte BORROW = 3;
+    private static final byte RETURN = 4;
+
+    // Buffered bytes above which an asynchronous write writes the buffer out.
+    private static final int ASYNC_LIMIT = 1 << 20;
+
+    // The first bytes of a snapshot: "QASN", the version of the format and the log offset it replays from.
+    private static final int SNAPSHOT_MAGIC = 0x5141534E;
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int SNAPSHOT_HEADER_SIZE = 16;
+    // Types of snapshot entries, each followed by the encoded user or book. A snapshot ends with END and
+    // the CRC32C checksum of everything before it.
+    private static final byte END = 0;
+    private static final byte USER = 1;
+    private static final byte BOOK = 2;
+    // The most bytes of a snapshot mapped at once, the most a buffer can hold.
+    private static final int MAPPING_SIZE = Integer.MAX_VALUE;
+
+    // The books, users and ledger as of the last record appended.
+    private final InMemoryDatabaseService state = new InMemoryDatabaseService();
+    private final FileChannel channel;
+    private final Durability durability;
+    // The snapshot next to the log.
+    private final Path snapshotPath;
+
+    // Serializes the writes: applying them to the state, appending their records and swapping the buffers.
+    private final ReentrantLock appendLock = new ReentrantLock();
+    // Records appended but not yet written. Guarded by appendLock.
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+    // The buffer the next group is written from, null while a group is being written. Guarded by appendLock.
+    private ByteBuffer spare = ByteBuffer.allocate(1 << 16);
+    // Number of records appended. Guarded by appendLock.
+    private long appended;
+    // Offset in the log just past the last record appended. Guarded by appendLock.
+    private long end;
+    // Whether the service was closed. Guarded by appendLock.
+    private boolean closed;
+
+    // Coordinates the group commits. A lock rather than a monitor, so waiting virtual threads don't pin their carrier.
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private final Condition committed = commitLock.newCondition();
+    // Whether a writer is writing a group. Guarded by commitLock.
+    private boolean committing;
+    // Number of records handed to the operating system. Guarded by commitLock.
+    private long written;
+    // Number of records synced to disk. Guarded by commitLock.
+    private long synced;
+    // The failure that made the log unusable, if any.
+    private volatile IOException failure;
+
+    private final LongAdder syncs = new LongAdder();
+
+    // Serializes the snapshots, and closing with them.
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    // Records appended between automatic snapshots, 0 for none.
+    private final long snapshotInterval;
+    // Takes the automatic snapshots, null if there are none.
+    private final ExecutorService snapshotter;
+    // Whether an automatic snapshot is scheduled or running.
+    private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
+    // Number of records appended when the last snapshot started.
+    private volatile long snapshotted;
+    private final LongAdder snapshots = new LongAdder();
+    // Number of log records replayed when opened.
+    private long replayed;
+    // The most bytes of a snapshot mapped at once when loading it.
+    private final int mappingSize;
+
+    private PersistentDatabaseService(FileChannel channel, Durability durability, Path snapshotPath, long snapshotInterval,
+                                      int mappingSize) {
+        this.channel = channel;
+        this.durability = durability;
+        this.snapshotPath = snapshotPath;
+        this.snapshotInterval = snapshotInterval;
+        this.mappingSize = mappingSize;
+        this.snapshotter = snapshotInterval == 0 ? null : Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "library-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens a log, creating it if it doesn't exist, and recovers the state it records.
+     * Snapshots are only taken by {@link #snapshot()}.
+     *
+     * @param path                The log file.
+     * @param durability          How far a write has to get before it returns.
+     * @param notificationService The notification service of the users recovered from the log.
+     * @return The service, positioned to append to the log.
+     * @throws IOException If the log can't be read or written, or is not a log.
+     */
+    public static PersistentDatabaseService open(Path path, Durability durability,
+                                                 NotificationService notificationService) throws IOException {
+        return open(path, durability, notificationService, 0);
+    }
+
+    /**
+     * Opens a log, creating it if it doesn't exist, and recovers the state it records from the latest
+     * snapshot and the log after it. The snapshot is the log file name followed by ".snapshot".
+     *
+     * @param path                The log file.
+     * @param durability          How far a write has to get before it returns.
+     * @param notificationService The notification service of the users recovered from the log.
+     * @param snapshotInterval    The number of records after which a snapshot is taken in the background,
+     *                            0 to take snapshots only by {@link #snapshot()}.
+     * @return The service, positioned to append to the log.
+     * @throws IOException If the log can't be read or written, or is not a log.
+     */
+    public static PersistentDatabaseService open(Path path, Durability durability,
+                                                 NotificationService notificationService,
+                                                 long snapshotInterval) throws IOException {
+        return open(path, durability, notificationService, snapshotInterval, MAPPING_SIZE);
+    }
+
+    /**
+     * Opens a log as {@link #open(Path, Durability, NotificationService, long)} does, mapping at most a given
+     * number of bytes of the snapshot at once, so loading a snapshot in several windows can be tested.
+     *
+     * @param mappingSize The most bytes of the snapshot mapped at once.
+     */
+    static PersistentDatabaseService open(Path path, Durability durability, NotificationService notificationService,
+                                          long snapshotInterval, int mappingSize) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Invalid path.");
+        } else if (durability == null) {
+            throw new IllegalArgumentException("Invalid durability.");
+        } else if (notificationService == null) {
+            throw new IllegalArgumentException("Invalid notification service.");
+        } else if (snapshotInterval < 0) {
+            throw new IllegalArgumentException("Invalid snapshot interval.");
+        } else if (mappingSize < SNAPSHOT_HEADER_SIZE) {
+            throw new IllegalArgumentException("Invalid mapping size.");
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        PersistentDatabaseService service = null;
+        try {
+            service = new PersistentDatabaseService(channel, durability,
+                    path.resolveSibling(path.getFileName() + ".snapshot"), snapshotInterval, mappingSize);
+            service.recover(notificationService);
+            return service;
+        } catch (IOException | RuntimeException e) {
+            if (service != null && service.snapshotter != null) {
+                service.snapshotter.shutdown();
+            }
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void addBook(String ISBN, Book book) {
+        long record;
+        appendLock.lock();
+        try {
+            ensureWritable();
+            state.addBook(ISBN, book);
+            record = append(ADD_BOOK, canonical(ISBN), book.getTitle(), book.getAuthor());
+        } finally {
+            appendLock.unlock();
+        }
+        commit(record);
+    }
+
+    @Override
+    public void registerUser(String id, User user) {
+        long record;
+        appendLock.lock();
+        try {
+            ensureWritable();
+            state.registerUser(id, user);
+            record = append(REGISTER_USER, id, user.getName());
+        } finally {
+            appendLock.unlock();
+        }
+        commit(record);
+    }
+
+    @Override
+    public Book getBookByISBN(String ISBN) {
+        return state.getBookByISBN(ISBN);
+    }
+
+    @Override
+    public User getUserById(String userId) {
+        return state.getUserById(userId);
+    }
+
+    @Override
+    public void borrowBook(String ISBN, String userId) {
+        long record;
+        appendLock.lock();
+        try {
+            ensureWritable();
+            state.borrowBook(ISBN, userId);
+            record = append(BORROW, ISBN, userId);
+        } finally {
+            appendLock.unlock();
+        }
+        commit(record);
+    }
+
+    @Override
+    public void returnBook(String ISBN) {
+        long record;
+        appendLock.lock();
+        try {
+            ensureWritable();
+            state.returnBook(ISBN);
+            record = append(RETURN, ISBN);
+        } finally {
+            appendLock.unlock();
+        }
+        commit(record);
+    }
+
+    @Override
+    public Map<String, Book> getBooksByISBN(Collection<String> ISBNs) {
+        return state.getBooksByISBN(ISBNs);
+    }
+
+    /**
+     * Adds several books, committed together. Either all the books are added or none of them is.
+     *
+     * @param books The books to be added, by ISBN.
+     */
+    @Override
+    public void addBooks(Map<String, Book> books) {
+        long record = 0;
+        appendLock.lock();
+        try {
+            ensureWritable();
+            // Checked as a whole first; the state only changes under appendLock, so the checks still hold below.
+            Set<Long> keys = new HashSet<>();
+            for (Map.Entry<String, Book> entry : books.entrySet()) {
+                if (entry.getValue() == null) {
+                    throw new IllegalArgumentException("Invalid book.");
+                } else if (!keys.add(Keys.isbn(entry.getKey())) || state.getBookByISBN(entry.getKey()) != null) {
+                    throw new IllegalArgumentException("Book already exists.");
+                }
+            }
+            for (Map.Entry<String, Book> entry : books.entrySet()) {
+                state.addBook(entry.getKey(), entry.getValue());
+                record = append(ADD_BOOK, canonical(entry.getKey()), entry.getValue().getTitle(), entry.getValue().getAuthor());
+            }
+        } finally {
+            appendLock.unlock();
+            commitApplied(record);
+        }
+    }
+
+    /**
+     * Borrows several books for a user, committed together. Either all the books are borrowed or none of them is.
+     *
+     * @param ISBNs  The International Standard Book Numbers of the books to be borrowed.
+     * @param userId The unique identifier for the user borrowing the books.
+     */
+    @Override
+    public void borrowBooks(Collection<String> ISBNs, String userId) {
+        long record = 0;
+        appendLock.lock();
+        try {
+            ensureWritable();
+            // Borrows all the books or, undoing the borrows already made, none of them.
+            state.borrowBooks(ISBNs, userId);
+            for (String ISBN : ISBNs) {
+                record = append(BORROW, ISBN, userId);
+            }
+        } finally {
+            appendLock.unlock();
+            commitApplied(record);
+        }
+    }
+
+    /**
+     * Marks several books as returned, committed together. Either all the books are returned or none of them is.
+     *
+     * @param ISBNs The International Standard Book Numbers of the books to be returned.
+     */
+    @Override
+    public void returnBooks(Collection<String> ISBNs) {
+        long record = 0;
+        appendLock.lock();
+        try {
+            ensureWritable();
+            // Checked as a whole first; the state only changes under appendLock, so the checks still hold below.
+            Set<Long> keys = new HashSet<>();
+            for (String ISBN : ISBNs) {
+                if (!keys.add(Keys.isbn(ISBN)) || state.getBorrowerId(ISBN) == null) {
+                    throw new BookNotBorrowedException("Book wasn't borrowed!");
+                }
+            }
+            for (String ISBN : ISBNs) {
+                state.returnBook(ISBN);
+                record = append(RETURN, ISBN);
+            }
+        } finally {
+            appendLock.unlock();
+            commitApplied(record);
+        }
+    }
+
+    /**
+     * Retrieves the Id of the user currently holding a book.
+     *
+     * @param ISBN The International Standard Book Number of the book.
+     * @return The user Id, or null if the book is not borrowed.
+     */
+    public String getBorrowerId(String ISBN) {
+        return state.getBorrowerId(ISBN);
+    }
+
+    /**
+     * Retrieves the number of fsyncs of the log, to see how many writes share each one.
+     *
+     * @return The number of fsyncs.
+     */
+    public long getSyncCount() {
+        return syncs.sum();
+    }
+
+    /**
+     * Retrieves the number of log records replayed when the service was opened, those after the snapshot it started from.
+     *
+     * @return The number of records replayed.
+     */
+    public long getReplayedCount() {
+        return replayed;
+    }
+
+    /**
+     * Retrieves the number of snapshots taken since the service was opened.
+     *
+     * @return The number of snapshots.
+     */
+    public long getSnapshotCount() {
+        return snapshots.sum();
+    }
+
+    /**
+     * Takes a snapshot of all the books and users, replacing the previous one once it is complete.
+     * Writes go on while it is taken. Before the snapshot replaces the previous one, the log is synced
+     * up to every write the snapshot may reflect, so a snapshot never gets ahead of the log.
+     *
+     * @throws IOException If the snapshot or the log couldn't be written.
+     */
+    public void snapshot() throws IOException {
+        snapshotLock.lock();
+        try {
+            long offset;
+            long from;
+            appendLock.lock();
+            try {
+                ensureWritable();
+                offset = end;
+                from = appended;
+            } finally {
+                appendLock.unlock();
+            }
+
+            Path temporary = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                SnapshotWriter writer = new SnapshotWriter(out);
+                writer.reserve(SNAPSHOT_HEADER_SIZE).putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putLong(offset);
+                try {
+                    // Users first, so the borrowers of the books are known when loading them.
+                    state.forEachUser(user -> UserCodec.encode(user, writer.reserve(1 + UserCodec.encodedSize(user)).put(USER)));
+                    state.forEachBook((ISBN, book) -> {
+                        // The ledger, not the book, is kept in step with the log.
+                        String borrowerId = state.getBorrowerId(ISBN);
+                        BookCodec.encode(book, borrowerId, writer.reserve(1 + BookCodec.encodedSize(book, borrowerId)).put(BOOK));
+                    });
+                    writer.reserve(1).put(END);
+                    writer.finish();
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                out.force(true);
+            }
+            flush();
+            Files.move(temporary, snapshotPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            syncDirectory();
+            snapshotted = from;
+            snapshots.increment();
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * Writes and syncs every record appended so far, whatever the durability.
+     *
+     * @throws IOException If the log couldn't be written.
+     */
+    public void flush() throws IOException {
+        long record;
+        appendLock.lock();
+        try {
+            record = appended;
+        } finally {
+            appendLock.unlock();
+        }
+        try {
+            awaitCommit(record, true);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Writes and syncs every record appended so far and closes the log. Writes are refused afterwards.
+     *
+     * @throws IOException If the log couldn't be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            appendLock.unlock();
+        }
+        if (snapshotter != null) {
+            snapshotter.shutdown();
+        }
+        // Waits for a snapshot being taken, which syncs the log through the channel.
+        snapshotLock.lock();
+        try {
+            if (failure == null) {
+                flush();
+            }
+        } finally {
+            snapshotLock.unlock();
+            channel.close();
+        }
+    }
+
+    private void ensureWritable() {
+        if (closed) {
+            throw new IllegalStateException("Database is closed.");
+        } else if (failure != null) {
+            throw new UncheckedIOException("Write-ahead log failed.", failure);
+        }
+    }
+
+    /**
+     * Appends a record to the buffer. Must be called holding appendLock.
+     *
+     * @param type   The type of the record.
+     * @param fields The fields of the record, null allowed.
+     * @return The number of records appended, this one included.
+     */
+    private long append(byte type, String... fields) {
+        byte[][] encoded = new byte[fields.length][];
+        int length = 1;
+        for (int i = 0; i < fields.length; i++) {
+            encoded[i] = fields[i] == null ? null : fields[i].getBytes(StandardCharsets.UTF_8);
+            length += 4 + (encoded[i] == null ? 0 : encoded[i].length);
+        }
+        if (pending.remaining() < FRAME_SIZE + length) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + FRAME_SIZE + length));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+        int start = pending.position();
+        pending.putInt(length).putInt(0).put(type);
+        for (byte[] field : encoded) {
+            if (field == null) {
+                pending.putInt(-1);
+            } else {
+                pending.putInt(field.length).put(field);
+            }
+        }
+        pending.putInt(start + 4, checksum(pending.array(), start + FRAME_SIZE, length));
+        end += FRAME_SIZE + length;
+        return ++appended;
+    }
+
+    /**
+     * Waits for the last record of a batch as the durability requires, even if the batch failed after it,
+     * so whatever was applied gets the durability of the writes that succeed.
+     *
+     * @param record The number of the last record appended, 0 if none was.
+     */
+    private void commitApplied(long record) {
+        if (record > 0) {
+            commit(record);
+        }
+    }
+
+    /**
+     * Waits for a record as the durability requires.
+     *
+     * @param record The number of the record.
+     */
+    private void commit(long record) {
+        switch (durability) {
+            case SYNC:
+                awaitCommit(record, true);
+                break;
+            case WRITE:
+                awaitCommit(record, false);
+                break;
+            default:
+                boolean full;
+                appendLock.lock();
+                try {
+                    full = pending.position() > ASYNC_LIMIT;
+                } finally {
+                    appendLock.unlock();
+                }
+                if (full) {
+                    awaitCommit(record, false);
+                }
+                break;
+        }
+        if (snapshotter != null && record - snapshotted >= snapshotInterval && snapshotScheduled.compareAndSet(false, true)) {
+            try {
+                snapshotter.execute(() -> {
+                    try {
+                        snapshot();
+                    } catch (IOException | RuntimeException e) {
+                        // The log still has everything, the next snapshot tries again.
+                    } finally {
+                        snapshotScheduled.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Closed meanwhile.
+                snapshotScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Waits until a record is written, or synced, writing the buffered records itself if no other
+     * writer is; the records appended meanwhile are written by the next group.
+     *
+     * @param record The number of the record.
+     * @param sync   Whether to wait for the record to be synced rather than just written.
+     * @throws UncheckedIOException If the log couldn't be written.
+     */
+    private void awaitCommit(long record, boolean sync) {
+        commitLock.lock();
+        try {
+            while ((sync ? synced : written) < record) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Write-ahead log failed.", failure);
+                }
+                if (committing) {
+                    committed.awaitUninterruptibly();
+                    continue;
+                }
+                committing = true;
+                commitLock.unlock();
+                long upTo = -1;
+                IOException error = null;
+                try {
+                    upTo = writeGroup(sync);
+                } catch (IOException e) {
+                    error = e;
+                } finally {
+                    commitLock.lock();
+                    committing = false;
+                    if (error != null) {
+                        failure = error;
+                    } else if (upTo >= 0) {
+                        written = Math.max(written, upTo);
+                        if (sync) {
+                            synced = Math.max(synced, upTo);
+                        }
+                    }
+                    committed.signalAll();
+                }
+            }
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the buffered records, and syncs the log if asked to. Only one writer at a time calls it.
+     *
+     * @param sync Whether to sync the log.
+     * @return The number of records written.
+     * @throws IOException If the log couldn't be written.
+     */
+    private long writeGroup(boolean sync) throws IOException {
+        ByteBuffer group;
+        long upTo;
+        appendLock.lock();
+        try {
+            group = pending;
+            pending = spare;
+            spare = null;
+            upTo = appended;
+        } finally {
+            appendLock.unlock();
+        }
+        try {
+            group.flip();
+            while (group.hasRemaining()) {
+                channel.write(group);
+            }
+            if (sync) {
+                channel.force(false);
+                syncs.increment();
+            }
+        } finally {
+            group.clear();
+            appendLock.lock();
+            try {
+                spare = group;
+            } finally {
+                appendLock.unlock();
+            }
+        }
+        return upTo;
+    }
+
+    /**
+     * Replays the log into the state and drops a torn or corrupt tail.
+     *
+     * @param notificationService The notification service of the users recovered.
+     * @throws IOException If the log can't be read or written, or is not a log.
+     */
+    private void recover(NotificationService notificationService) throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            // A snapshot left from an earlier log would claim records of this one.
+            Files.deleteIfExists(snapshotPath);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+            channel.position(HEADER_SIZE);
+            end = HEADER_SIZE;
+            return;
+        }
+
+        // The stream isn't closed, that would close the channel.
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0)), 1 << 16));
+        if (size < HEADER_SIZE || in.readInt() != MAGIC) {
+            throw new IOException("Not a library log.");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported log version " + version + ".");
+        }
+
+        long valid = loadSnapshot(size, notificationService);
+        in.skipNBytes(valid - HEADER_SIZE);
+        while (size - valid >= FRAME_SIZE) {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length < 1 || length > size - valid - FRAME_SIZE) {
+                break;
+            }
+            byte[] record = new byte[length];
+            in.readFully(record);
+            if (checksum(record, 0, length) != checksum) {
+                break;
+            }
+            try {
+                replay(ByteBuffer.wrap(record), notificationService);
+            } catch (RuntimeException e) {
+                throw new IOException("Invalid log record at offset " + valid + ".", e);
+            }
+            valid += FRAME_SIZE + length;
+            appended++;
+        }
+        if (valid < size) {
+            channel.truncate(valid);
+            channel.force(true);
+        }
+        channel.position(valid);
+        end = valid;
+        replayed = appended;
+        written = appended;
+        synced = appended;
+        snapshotted = appended;
+    }
+
+    /**
+     * Loads the snapshot into the state, if there is a valid one. A snapshot larger than a mapping can hold
+     * is checksummed and decoded a window at a time, each window starting at an entry.
+     *
+     * @param size                The size of the log.
+     * @param notificationService The notification service of the users loaded.
+     * @return The offset in the log to replay from.
+     * @throws IOException If the snapshot can't be read.
+     */
+    private long loadSnapshot(long size, NotificationService notificationService) throws IOException {
+        if (!Files.exists(snapshotPath)) {
+            return HEADER_SIZE;
+        }
+        try (FileChannel in = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            long length = in.size();
+            if (length < SNAPSHOT_HEADER_SIZE + 5) {
+                return HEADER_SIZE;
+            }
+            CRC32C crc = new CRC32C();
+            for (long position = 0; position < length - 4; position += mappingSize) {
+                crc.update(in.map(FileChannel.MapMode.READ_ONLY, position, Math.min(mappingSize, length - 4 - position)));
+            }
+            MappedByteBuffer header = in.map(FileChannel.MapMode.READ_ONLY, 0, SNAPSHOT_HEADER_SIZE);
+            MappedByteBuffer trailer = in.map(FileChannel.MapMode.READ_ONLY, length - 4, 4);
+            long offset = header.getLong(8);
+            if (header.getInt(0) != SNAPSHOT_MAGIC || header.getInt(4) != SNAPSHOT_VERSION
+                    || trailer.getInt(0) != (int) crc.getValue()
+                    || offset < HEADER_SIZE || offset > size) {
+                return HEADER_SIZE;
+            }
+
+            long base = SNAPSHOT_HEADER_SIZE;
+            MappedByteBuffer snapshot = in.map(FileChannel.MapMode.READ_ONLY, base, Math.min(mappingSize, length - base));
+            List<Book> borrowed = new ArrayList<>();
+            try {
+                while (true) {
+                    int start = snapshot.position();
+                    byte type;
+                    User user = null;
+                    Book book = null;
+                    try {
+                        type = snapshot.get();
+                        if (type == USER) {
+                            user = UserCodec.decode(snapshot, notificationService);
+                        } else if (type == BOOK) {
+                            book = BookCodec.decode(snapshot);
+                        }
+                    } catch (BufferUnderflowException e) {
+                        if (start == 0 || base + snapshot.limit() == length) {
+                            throw e;
+                        }
+                        // The entry runs past the window, the next window starts at it.
+                        base += start;
+                        snapshot = in.map(FileChannel.MapMode.READ_ONLY, base, Math.min(mappingSize, length - base));
+                        continue;
+                    }
+                    if (type == END) {
+                        break;
+                    } else if (user != null) {
+                        state.registerUser(user.getId(), user);
+                    } else if (book != null) {
+                        state.addBook(book.getISBN(), book);
+                        if (book.isBorrowed()) {
+                            borrowed.add(book);
+                        }
+                    } else {
+                        throw new IllegalArgumentException("Unknown entry type " + type + ".");
+                    }
+                }
+                for (Book book : borrowed) {
+                    // A borrower the snapshot missed registered after it started; the log after it borrows the book again.
+                    if (state.getUserById(book.getBorrowerId()) != null) {
+                        state.borrowBook(book.getISBN(), book.getBorrowerId());
+                    } else {
+                        book.tryReturn();
+                    }
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("Invalid snapshot.", e);
+            }
+            return offset;
+        }
+    }
+
+    /**
+     * Applies a record to the state. Records after a snapshot may already be reflected by it, so each
+     * record sets the state it leaves instead of requiring the state it was written in.
+     *
+     * @param record              The record, without its frame.
+     * @param notificationService The notification service of the users registered.
+     */
+    private void replay(ByteBuffer record, NotificationService notificationService) {
+        byte type = record.get();
+        switch (type) {
+            case ADD_BOOK: {
+                // Canonical in logs written before the ISBN was canonicalized too, so books agree with those of a snapshot.
+                String ISBN = canonical(readField(record));
+                Book book = new Book(ISBN, readField(record), readField(record));
+                if (state.getBookByISBN(ISBN) == null) {
+                    state.addBook(ISBN, book);
+                }
+                break;
+            }
+            case REGISTER_USER: {
+                String id = readField(record);
+                User user = new User(readField(record), id, notificationService);
+                if (state.getUserById(id) == null) {
+                    state.registerUser(id, user);
+                }
+                break;
+            }
+            case BORROW: {
+                String ISBN = readField(record);
+                String userId = readField(record);
+                String current = state.getBorrowerId(ISBN);
+                if (!userId.equals(current)) {
+                    if (current != null) {
+                        state.returnBook(ISBN);
+                    }
+                    state.borrowBook(ISBN, userId);
+                }
+                // The borrowed state of the book is owned by the library, restore it as well.
+                Book book = state.getBookByISBN(ISBN);
+                if (!userId.equals(book.getBorrowerId())) {
+                    book.tryReturn();
+                    book.tryBorrow(userId);
+                }
+                break;
+            }
+            case RETURN: {
+                String ISBN = readField(record);
+                if (state.getBorrowerId(ISBN) != null) {
+                    state.returnBook(ISBN);
+                }
+                state.getBookByISBN(ISBN).tryReturn();
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown record type " + type + ".");
+        }
+    }
+
+    /**
+     * Spells an ISBN the way a snapshot gives it back, 13 digits without hyphens, so a recovered book has the
+     * same ISBN whether it was loaded from a snapshot or replayed from the log.
+     *
+     * @param ISBN The ISBN, in any valid spelling.
+     * @return The canonical ISBN.
+     */
+    private static String canonical(String ISBN) {
+        return IsbnKey.toString(Keys.isbn(ISBN));
+    }
+
+    private static String readField(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String field = new String(record.array(), record.position(), length, StandardCharsets.UTF_8);
+        record.position(record.position() + length);
+        return field;
+    }
+
+    /**
+     * Syncs the directory of the snapshot, so its renaming survives a crash.
+     */
+    private void syncDirectory() {
+        Path directory = snapshotPath.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform can sync a directory; the snapshot is then only as durable as the rename.
+        }
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Writes a snapshot through a buffer, checksumming it on the way.
+     */
+    private static final class SnapshotWriter {
+
+        private final FileChannel channel;
+        private final CRC32C crc = new CRC32C();
+        private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+        SnapshotWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Makes room for an entry, writing the buffer out if it is too full.
+         *
+         * @param size The size of the entry.
+         * @return The buffer to put the entry in.
+         * @throws UncheckedIOException If the snapshot couldn't be written.
+         */
+        ByteBuffer reserve(int size) {
+            if (buffer.remaining() < size) {
+                drain();
+                if (buffer.capacity() < size) {
+                    buffer = ByteBuffer.allocate(size);
+                }
+            }
+            return buffer;
+        }
+
+        /**
+         * Writes the buffer out, followed by the checksum of everything written.
+         *
+         * @throws UncheckedIOException If the snapshot couldn't be written.
+         */
+        void finish() {
+            drain();
+            buffer.putInt((int) crc.getValue());
+            drain();
+        }
+
+        private void drain() {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.errors.ReviewException;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of reusable review service connections.
+ * A caller leases a service for one fetch and releases it back to the pool instead of closing it,
+ * so the next fetch doesn't pay for reconnecting. Services are closed only when the pool shrinks,
+ * when they fail a health check, or when they are invalidated after an error.
+ * The pool keeps at least its minimum size of services open and never opens more than its
+ * maximum size; a lease waits for a free service up to the acquire timeout.
+ */
+public class ReviewServicePool implements AutoCloseable {
+
+    // Opens a new review service connection.
+    private final Supplier<ReviewService> factory;
+    // The number of services kept open even when idle.
+    private final int minSize;
+    // The maximum number of services open at the same time.
+    private final int maxSize;
+    // How long a service may stay idle before it is closed, in nanoseconds.
+    private final long maxIdleNanos;
+    // How long a lease waits for a free service, in nanoseconds.
+    private final long acquireTimeoutNanos;
+    // Checks that an idle service is still usable before it is leased.
+    private final Predicate<ReviewService> healthCheck;
+    // Source of the current time, in nanoseconds.
+    private final LongSupplier clock;
+
+    // Idle services, most recently released first.
+    private final ConcurrentLinkedDeque<IdleService> idle = new ConcurrentLinkedDeque<>();
+    // One permit per service that may still be leased.
+    private final Semaphore permits;
+    // Number of services currently open, idle or leased.
+    private final AtomicInteger open = new AtomicInteger();
+
+    private volatile boolean closed;
+
+    /**
+     * Constructs a pool that keeps idle services for a minute and waits up to a second for a lease.
+     *
+     * @param factory Opens a new review service connection.
+     * @param minSize The number of services kept open even when idle.
+     * @param maxSize The maximum number of services open at the same time.
+     */
+    public ReviewServicePool(Supplier<ReviewService> factory, int minSize, int maxSize) {
+        this(factory, minSize, maxSize, 60, 1, TimeUnit.SECONDS, service -> true);
+    }
+
+    /**
+     * Constructs a new ReviewServicePool and opens its minimum number of services.
+     *
+     * @param factory        Opens a new review service connection.
+     * @param minSize        The number of services kept open even when idle.
+     * @param maxSize        The maximum number of services open at the same time.
+     * @param maxIdleTime    How long a service may stay idle before {@link #evictIdle()} closes it.
+     * @param acquireTimeout How long a lease waits for a free service.
+     * @param unit           The unit of both times.
+     * @param healthCheck    Checks that an idle service is still usable before it is leased.
+     */
+    public ReviewServicePool(Supplier<ReviewService> factory, int minSize, int maxSize, long maxIdleTime,
+                             long acquireTimeout, TimeUnit unit, Predicate<ReviewService> healthCheck) {
+        this(factory, minSize, maxSize, maxIdleTime, acquireTimeout, unit, healthCheck, System::nanoTime);
+    }
+
+    ReviewServicePool(Supplier<ReviewService> factory, int minSize, int maxSize, long maxIdleTime,
+                      long acquireTimeout, TimeUnit unit, Predicate<ReviewService> healthCheck, LongSupplier clock) {
+        if (factory == null) {
+            throw new IllegalArgumentException("Invalid review service factory.");
+        } else if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size.");
+        } else if (maxIdleTime < 0 || acquireTimeout < 0) {
+            throw new IllegalArgumentException("Invalid timeout.");
+        } else if (healthCheck == null) {
+            throw new IllegalArgumentException("Invalid health check.");
+        }
+        this.factory = factory;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.maxIdleNanos = unit.toNanos(maxIdleTime);
+        this.acquireTimeoutNanos = unit.toNanos(acquireTimeout);
+        this.healthCheck = healthCheck;
+        this.clock = clock;
+        this.permits = new Semaphore(maxSize, true);
+        fill();
+    }
+
+    /**
+     * Leases a review service, reusing an idle one if possible.
+     * The service must be handed back with {@link #release(ReviewService)} or {@link #invalidate(ReviewService)}.
+     *
+     * @return A healthy review service.
+     * @throws ReviewException If the pool is closed, no service became free in time or a new one couldn't be opened.
+     */
+    public ReviewService lease() throws ReviewException {
+        if (closed) {
+            throw new ReviewException("Review service pool is closed!");
+        }
+        try {
+            if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new ReviewException("No review service available!");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ReviewException("Interrupted while waiting for a review service!");
+        }
+
+        try {
+            for (IdleService candidate; (candidate = idle.pollFirst()) != null; ) {
+                if (healthCheck.test(candidate.service)) {
+                    return candidate.service;
+                }
+                destroy(candidate.service);
+            }
+            return create();
+        } catch (RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Hands a leased service back to the pool for reuse.
+     *
+     * @param service The service previously returned by {@link #lease()}.
+     */
+    public void release(ReviewService service) {
+        if (closed) {
+            destroy(service);
+        } else {
+            idle.offerFirst(new IdleService(service, clock.getAsLong()));
+        }
+        permits.release();
+    }
+
+    /**
+     * Hands a leased service back to the pool after it failed, closing it instead of reusing it.
+     *
+     * @param service The service previously returned by {@link #lease()}.
+     */
+    public void invalidate(ReviewService service) {
+        destroy(service);
+        permits.release();
+    }
+
+    /**
+     * Closes the services that have been idle for longer than the maximum idle time, keeping at least
+     * the minimum size open, and opens services if fewer than the minimum size are open.
+     * Call it periodically, e.g. from a {@link java.util.concurrent.ScheduledExecutorService}.
+     *
+     * @return The number of services closed.
+     */
+    public int evictIdle() {
+        long now = clock.getAsLong();
+        int evicted = 0;
+        // The oldest services sit at the end of the deque.
+        for (Iterator<IdleService> it = idle.descendingIterator(); it.hasNext(); ) {
+            IdleService candidate = it.next();
+            if (open.get() <= minSize || now - candidate.releasedAt < maxIdleNanos) {
+                break;
+            }
+            if (idle.removeLastOccurrence(candidate)) {
+                destroy(candidate.service);
+                evicted++;
+            }
+        }
+        fill();
+        return evicted;
+    }
+
+    /**
+     * Closes the pool and every idle service. Leased services are closed when they are handed back.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (IdleService candidate; (candidate = idle.pollFirst()) != null; ) {
+            destroy(candidate.service);
+        }
+    }
+
+    /**
+     * Retrieves the number of services currently open, idle or leased.
+     *
+     * @return The number of open services.
+     */
+    public int getOpenCount() {
+        return open.get();
+    }
+
+    /**
+     * Retrieves the number of idle services.
+     *
+     * @return The number of idle services.
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Retrieves the number of leased services.
+     *
+     * @return The number of leased services.
+     */
+    public int getLeasedCount() {
+        return maxSize - permits.availablePermits();
+    }
+
+    private void fill() {
+        while (!closed && open.get() < minSize) {
+            idle.offerLast(new IdleService(create(), clock.getAsLong()));
+        }
+    }
+
+    private ReviewService create() {
+        ReviewService service = factory.get();
+        if (service == null) {
+            throw new ReviewException("Review service factory returned null!");
+        }
+        open.incrementAndGet();
+        return service;
+    }
+
+    private void destroy(ReviewService service) {
+        open.decrementAndGet();
+        try {
+            service.close();
+        } catch (RuntimeException e) {
+            // The service is discarded either way.
+        }
+    }
+
+    /**
+     * An idle service and the time it was released.
+     */
+    private static final class IdleService {
+        private final ReviewService service;
+        private final long releasedAt;
+
+        IdleService(ReviewService service, long releasedAt) {
+            this.service = service;
+            this.releasedAt = releasedAt;
+        }
+    }
+}
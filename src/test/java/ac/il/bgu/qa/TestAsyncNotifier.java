@@ -0,0 +1,241 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.errors.NotificationException;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class TestAsyncNotifier {
+
+    @Mock
+    private User user;
+
+    private AsyncNotifier notifier;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        notifier = AsyncNotifier.create(2, 16, new RetryPolicy(3, 1, 10, TimeUnit.MILLISECONDS, 2, 0));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        notifier.close();
+    }
+
+    @Test
+    public void GivenWorkingUser_WhenSend_ThenSentOnce() throws Exception {
+        notifier.send(user, "message").get(10, TimeUnit.SECONDS);
+        Mockito.verify(user, Mockito.times(1)).sendNotification("message");
+    }
+
+    @Test
+    public void GivenTransientFailure_WhenSend_ThenRetriedUntilSent() throws Exception {
+        Mockito.doThrow(new NotificationException("down")).doNothing().when(user).sendNotification("message");
+        notifier.send(user, "message").get(10, TimeUnit.SECONDS);
+        Mockito.verify(user, Mockito.times(2)).sendNotification("message");
+    }
+
+    @Test
+    public void GivenPermanentFailure_WhenSend_ThenFailsAfterMaxAttempts() {
+        Mockito.doThrow(new NotificationException("down")).when(user).sendNotification("message");
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class,
+                () -> notifier.send(user, "message").get(10, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(NotificationException.class, exception.getCause());
+        Assertions.assertEquals("Notification failed!", exception.getCause().getMessage());
+        Assertions.assertEquals("down", exception.getCause().getSuppressed()[0].getMessage());
+        Mockito.verify(user, Mockito.times(3)).sendNotification("message");
+    }
+
+    @Test
+    public void GivenRetryPending_WhenSend_ThenNoThreadHeldDuringBackoff() throws Exception {
+        // One thread and a long wait: a second notification must go through while the first waits to be retried.
+        notifier.close();
+        notifier = AsyncNotifier.create(1, 16, new RetryPolicy(2, 10, 10, TimeUnit.SECONDS, 1, 0));
+        User other = Mockito.mock(User.class);
+        Mockito.doThrow(new NotificationException("down")).when(user).sendNotification("message");
+
+        CompletableFuture<Void> pending = notifier.send(user, "message");
+        notifier.send(other, "message").get(5, TimeUnit.SECONDS);
+        Assertions.assertFalse(pending.isDone());
+    }
+
+    @Test
+    public void GivenFullQueue_WhenSend_ThenFailsWithRejectedExecutionException() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ThreadPoolExecutor saturated = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new SynchronousQueue<>());
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            saturated.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            AsyncNotifier bounded = new AsyncNotifier(saturated, scheduler, RetryPolicy.defaultPolicy());
+            ExecutionException exception = Assertions.assertThrows(ExecutionException.class,
+                    () -> bounded.send(user, "message").get(5, TimeUnit.SECONDS));
+            Assertions.assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+        } finally {
+            release.countDown();
+            saturated.shutdown();
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    public void GivenFullQueueAndAbortPolicy_WhenSend_ThenNewNotificationRejected() throws Exception {
+        CountDownLatch release = saturate(AsyncNotifier.RejectionPolicy.ABORT);
+        User queued = Mockito.mock(User.class);
+        CompletableFuture<Void> first = notifier.send(queued, "message");
+        CompletableFuture<Void> second = notifier.send(user, "message");
+
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> second.get(5, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(1, notifier.getRejectedCount());
+    }
+
+    @Test
+    public void GivenFullQueueAndDiscardOldestPolicy_WhenSend_ThenOldestNotificationRejected() throws Exception {
+        CountDownLatch release = saturate(AsyncNotifier.RejectionPolicy.DISCARD_OLDEST);
+        User queued = Mockito.mock(User.class);
+        CompletableFuture<Void> first = notifier.send(queued, "message");
+        CompletableFuture<Void> second = notifier.send(user, "message");
+
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+        release.countDown();
+        second.get(5, TimeUnit.SECONDS);
+        Mockito.verify(queued, Mockito.never()).sendNotification(Mockito.anyString());
+        Mockito.verify(user).sendNotification("message");
+    }
+
+    @Test
+    public void GivenFullQueueAndCallerRunsPolicy_WhenSend_ThenSentOnCallingThread() throws Exception {
+        CountDownLatch release = saturate(AsyncNotifier.RejectionPolicy.CALLER_RUNS);
+        Thread caller = Thread.currentThread();
+        Thread[] sender = new Thread[1];
+        Mockito.doAnswer(invocation -> {
+            sender[0] = Thread.currentThread();
+            return null;
+        }).when(user).sendNotification("message");
+
+        notifier.send(Mockito.mock(User.class), "message");
+        CompletableFuture<Void> second = notifier.send(user, "message");
+
+        Assertions.assertTrue(second.isDone());
+        Assertions.assertSame(caller, sender[0]);
+        release.countDown();
+    }
+
+    @Test
+    public void GivenFullQueueAndCallerRunsPolicy_WhenRetry_ThenRescheduledInsteadOfRunOnScheduler() throws Exception {
+        CountDownLatch release = saturate(AsyncNotifier.RejectionPolicy.CALLER_RUNS);
+        List<String> senders = Collections.synchronizedList(new ArrayList<>());
+        Mockito.doAnswer(invocation -> {
+            senders.add(Thread.currentThread().getName());
+            if (senders.size() == 1) {
+                throw new NotificationException("Unavailable");
+            }
+            return null;
+        }).when(user).sendNotification("message");
+
+        notifier.send(Mockito.mock(User.class), "message");
+        CompletableFuture<Void> sent = notifier.send(user, "message");
+        // Long enough for the first retry to find the queue still full.
+        Thread.sleep(300);
+        release.countDown();
+        sent.get(10, TimeUnit.SECONDS);
+
+        Assertions.assertEquals(2, senders.size());
+        Assertions.assertFalse(senders.get(1).startsWith("library-notifier-retry-"));
+    }
+
+    @Test
+    public void GivenQueueStayingFullAndCallerRunsPolicy_WhenRetry_ThenFailsOnceAttemptsRunOut() throws Exception {
+        CountDownLatch release = saturate(AsyncNotifier.RejectionPolicy.CALLER_RUNS, new RetryPolicy(3, 1, 10, TimeUnit.MILLISECONDS, 2, 0));
+        notifier.send(Mockito.mock(User.class), "message");
+        Mockito.doThrow(new NotificationException("Unavailable")).when(user).sendNotification("message");
+
+        CompletableFuture<Void> sent = notifier.send(user, "message");
+
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> sent.get(5, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(NotificationException.class, exception.getCause());
+        Mockito.verify(user, Mockito.times(1)).sendNotification("message");
+        release.countDown();
+    }
+
+    @Test
+    public void GivenFullQueueAndCallerRunsPolicy_WhenOptionalSend_ThenDiscardedInsteadOfRunOnCaller() throws Exception {
+        CountDownLatch release = saturate(AsyncNotifier.RejectionPolicy.CALLER_RUNS);
+        notifier.send(Mockito.mock(User.class), "message");
+
+        CompletableFuture<Void> optional = notifier.send(user, "message", true);
+
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> optional.get(5, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+        Mockito.verify(user, Mockito.never()).sendNotification(Mockito.anyString());
+        Assertions.assertEquals(1, notifier.getRejectedCount());
+        release.countDown();
+    }
+
+    @Test
+    public void GivenFullQueueAndDiscardOldestPolicy_WhenOptionalSend_ThenOldestDiscardedAndOptionalSent() throws Exception {
+        CountDownLatch release = saturate(AsyncNotifier.RejectionPolicy.DISCARD_OLDEST);
+        CompletableFuture<Void> oldest = notifier.send(Mockito.mock(User.class), "message");
+
+        CompletableFuture<Void> optional = notifier.send(user, "message", true);
+        release.countDown();
+
+        optional.get(5, TimeUnit.SECONDS);
+        Mockito.verify(user).sendNotification("message");
+        Assertions.assertTrue(oldest.isCompletedExceptionally());
+        Assertions.assertEquals(1, notifier.getRejectedCount());
+    }
+
+    @Test
+    public void GivenRetries_WhenDelayNanos_ThenGrowsExponentiallyUpToMaximum() {
+        RetryPolicy policy = new RetryPolicy(10, 100, 500, TimeUnit.MILLISECONDS, 2, 0.5);
+        Assertions.assertEquals(TimeUnit.MILLISECONDS.toNanos(100), policy.delayNanos(1, 0));
+        Assertions.assertEquals(TimeUnit.MILLISECONDS.toNanos(200), policy.delayNanos(2, 0));
+        Assertions.assertEquals(TimeUnit.MILLISECONDS.toNanos(500), policy.delayNanos(5, 0));
+        Assertions.assertEquals(TimeUnit.MILLISECONDS.toNanos(50), policy.delayNanos(1, 1));
+    }
+
+    @Test
+    public void GivenInvalidParameters_WhenRetryPolicy_ThenIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new RetryPolicy(0, 1, 1, TimeUnit.SECONDS, 2, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new RetryPolicy(1, 2, 1, TimeUnit.SECONDS, 2, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new RetryPolicy(1, 1, 1, TimeUnit.SECONDS, 0.5, 0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new RetryPolicy(1, 1, 1, TimeUnit.SECONDS, 2, 2));
+    }
+
+    /**
+     * Replaces the notifier with one whose single thread is busy and whose queue holds one task.
+     *
+     * @return A latch releasing the busy thread.
+     */
+    private CountDownLatch saturate(AsyncNotifier.RejectionPolicy rejectionPolicy) throws InterruptedException {
+        return saturate(rejectionPolicy, RetryPolicy.defaultPolicy());
+    }
+
+    private CountDownLatch saturate(AsyncNotifier.RejectionPolicy rejectionPolicy, RetryPolicy retryPolicy) throws InterruptedException {
+        notifier.close();
+        notifier = AsyncNotifier.create(1, 1, retryPolicy, rejectionPolicy);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        notifier.supply(() -> {
+            started.countDown();
+            return release.await(10, TimeUnit.SECONDS);
+        });
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+}
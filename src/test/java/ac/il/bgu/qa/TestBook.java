@@ -0,0 +1,71 @@
+package ac.il.bgu.qa;
+
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestBook {
+
+    private Book book;
+
+    @BeforeEach
+    public void setUp() {
+        book = new Book("978-3-16-148410-0", "Title", "Author");
+    }
+
+    @Test
+    public void GivenFreeBook_WhenTryBorrow_ThenBorrowerRecorded() {
+        Assertions.assertTrue(book.tryBorrow("123456789012"));
+        Assertions.assertTrue(book.isBorrowed());
+        Assertions.assertEquals("123456789012", book.getBorrowerId());
+        Assertions.assertFalse(book.tryBorrow("123456789013"));
+        Assertions.assertEquals("123456789012", book.getBorrowerId());
+    }
+
+    @Test
+    public void GivenBorrowedBook_WhenTryReturn_ThenBookFree() {
+        Assertions.assertFalse(book.tryReturn());
+        book.borrow();
+        Assertions.assertNull(book.getBorrowerId());
+        Assertions.assertTrue(book.tryReturn());
+        Assertions.assertFalse(book.isBorrowed());
+        Assertions.assertFalse(book.tryReturn());
+    }
+
+    @Test
+    public void GivenBorrowedBook_WhenBorrow_ThenIllegalStateException() {
+        book.borrow();
+        Assertions.assertThrows(IllegalStateException.class, () -> book.borrow());
+        book.returnBook();
+        Assertions.assertThrows(IllegalStateException.class, () -> book.returnBook());
+    }
+
+    @Test
+    public void GivenManyThreads_WhenTryBorrow_ThenExactlyOneSucceeds() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger successes = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String userId = String.format("%012d", t);
+            futures.add(executor.submit(() -> {
+                start.await();
+                if (book.tryBorrow(userId)) {
+                    successes.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Assertions.assertEquals(1, successes.get());
+    }
+}
@@ -0,0 +1,109 @@
+package ac.il.bgu.qa;
+
+import org.junit.jupiter.api.*;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+public class TestBookCodec {
+
+    private static final String ISBN = "978-3-16-148410-0";
+
+    private static Book roundTrip(Book book, ByteBuffer buffer) {
+        BookCodec.encode(book, buffer);
+        Assertions.assertEquals(BookCodec.encodedSize(book), buffer.position());
+        buffer.flip();
+        Book decoded = BookCodec.decode(buffer);
+        Assertions.assertFalse(buffer.hasRemaining());
+        return decoded;
+    }
+
+    @Test
+    public void GivenBook_WhenEncodedAndDecoded_ThenSameBookWithCanonicalIsbn() {
+        Book decoded = roundTrip(new Book(ISBN, "Title", "Author"), ByteBuffer.allocate(64));
+
+        Assertions.assertEquals("9783161484100", decoded.getISBN());
+        Assertions.assertEquals("Title", decoded.getTitle());
+        Assertions.assertEquals("Author", decoded.getAuthor());
+        Assertions.assertFalse(decoded.isBorrowed());
+    }
+
+    @Test
+    public void GivenBook_WhenEncoded_ThenCompact() {
+        Book book = new Book(ISBN, "Title", "Author");
+        // Version, flags, packed ISBN and two length-prefixed strings.
+        Assertions.assertEquals(1 + 1 + 8 + (1 + 5) + (1 + 6), BookCodec.encodedSize(book));
+    }
+
+    @Test
+    public void GivenBorrowedBook_WhenEncodedAndDecoded_ThenBorrowerKept() {
+        Book book = new Book(ISBN, "Title", "Author");
+        book.tryBorrow("012345678912");
+        Book decoded = roundTrip(book, ByteBuffer.allocateDirect(64));
+        Assertions.assertEquals("012345678912", decoded.getBorrowerId());
+
+        Book anonymous = new Book(ISBN, "Title", "Author");
+        anonymous.borrow();
+        decoded = roundTrip(anonymous, ByteBuffer.allocate(64));
+        Assertions.assertTrue(decoded.isBorrowed());
+        Assertions.assertNull(decoded.getBorrowerId());
+    }
+
+    @Test
+    public void GivenBorrowerFromLedger_WhenEncoded_ThenLedgerBorrowerKept() {
+        Book book = new Book(ISBN, "Title", "Author");
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        BookCodec.encode(book, "123456789123", buffer);
+        Assertions.assertEquals(BookCodec.encodedSize(book, "123456789123"), buffer.position());
+        buffer.flip();
+        Assertions.assertEquals("123456789123", BookCodec.decode(buffer).getBorrowerId());
+    }
+
+    @Test
+    public void GivenNonAsciiAndNullFields_WhenEncodedAndDecoded_ThenSameFields() {
+        String title = "Caf\u00e9 \u05e1\u05e4\u05e8 \ud83d\udcda";
+        Book decoded = roundTrip(new Book(ISBN, title, null), ByteBuffer.allocate(64));
+        Assertions.assertEquals(title, decoded.getTitle());
+        Assertions.assertNull(decoded.getAuthor());
+
+        Book unpaired = roundTrip(new Book(ISBN, "a\ud83d", "Author"), ByteBuffer.allocate(64));
+        Assertions.assertEquals("a?", unpaired.getTitle());
+    }
+
+    @Test
+    public void GivenLongTitle_WhenEncodedAndDecoded_ThenSameTitle() {
+        String title = "x".repeat(70_000);
+        Book decoded = roundTrip(new Book(ISBN, title, "Author"), ByteBuffer.allocate(70_100));
+        Assertions.assertEquals(title, decoded.getTitle());
+    }
+
+    @Test
+    public void GivenSmallBuffer_WhenEncode_ThenBufferOverflowExceptionAndNothingWritten() {
+        ByteBuffer buffer = ByteBuffer.allocate(10);
+        Assertions.assertThrows(BufferOverflowException.class, () -> BookCodec.encode(new Book(ISBN, "Title", "Author"), buffer));
+        Assertions.assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void GivenInvalidIsbnOrBorrower_WhenEncode_ThenIllegalArgumentException() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BookCodec.encode(new Book("123", "Title", "Author"), buffer));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BookCodec.encode(new Book(ISBN, "Title", "Author"), "abc", buffer));
+    }
+
+    @Test
+    public void GivenOtherVersionOrTruncatedBook_WhenDecode_ThenException() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        BookCodec.encode(new Book(ISBN, "Title", "Author"), buffer);
+        buffer.flip();
+
+        ByteBuffer truncated = buffer.duplicate().limit(buffer.limit() - 1);
+        Assertions.assertThrows(RuntimeException.class, () -> BookCodec.decode(truncated));
+        ByteBuffer header = buffer.duplicate().limit(5);
+        Assertions.assertThrows(BufferUnderflowException.class, () -> BookCodec.decode(header));
+
+        buffer.put(0, (byte) 2);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BookCodec.decode(buffer));
+    }
+}
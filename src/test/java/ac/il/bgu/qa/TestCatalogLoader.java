@@ -0,0 +1,91 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.services.InMemoryDatabaseService;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class TestCatalogLoader {
+
+    @TempDir
+    Path directory;
+
+    private InMemoryDatabaseService databaseService;
+
+    private Library library;
+
+    @BeforeEach
+    public void setUp() {
+        databaseService = new InMemoryDatabaseService();
+        library = new Library(databaseService, Mockito.mock(ReviewService.class));
+    }
+
+    @Test
+    public void GivenCsvWithQuotesAndHeader_WhenLoad_ThenBooksAdded() throws IOException {
+        Path file = write("isbn,title,author\r\n" +
+                "978-3-16-148410-0,\"War, and \"\"Peace\"\"\",Leo Tolstoy\r\n" +
+                "9780306406157,Caf\u00e9,J. R. R. Tolkien\n" +
+                "\n" +
+                "978-1-56619-909-4,Title,A--B\n" +
+                "978-1-4028-9462-6,Only two columns\n" +
+                "978-3-16-148410-0,Duplicate,Author");
+
+        ImportReport report = new CatalogLoader(library, ',', true).load(file);
+
+        Assertions.assertEquals(2, report.getImportedCount());
+        Assertions.assertEquals(3, report.getRejections().size());
+        Book book = databaseService.getBookByISBN("978-3-16-148410-0");
+        Assertions.assertEquals("War, and \"Peace\"", book.getTitle());
+        Assertions.assertEquals("Leo Tolstoy", book.getAuthor());
+        Assertions.assertEquals("Caf\u00e9", databaseService.getBookByISBN("9780306406157").getTitle());
+    }
+
+    @Test
+    public void GivenLargeTsvSplitIntoManyChunks_WhenLoad_ThenEveryRowLoadedOnce() throws IOException {
+        Path file = directory.resolve("catalogue.tsv");
+        int rows = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (long key = 9780000000000L; rows < 20_000; key++) {
+                String isbn = Long.toString(key);
+                if (IsbnValidator.isValid(isbn)) {
+                    writer.write(isbn + "\tTitle " + rows + "\tAuthor\n");
+                    rows++;
+                }
+            }
+        }
+
+        ImportReport report = new CatalogLoader(library, '\t', false, 100, 4, 4096).load(file);
+
+        Assertions.assertEquals(rows, report.getImportedCount());
+        Assertions.assertTrue(report.getRejections().isEmpty());
+        Assertions.assertEquals(rows, databaseService.getBookCount());
+    }
+
+    @Test
+    public void GivenEmptyFile_WhenLoad_ThenNothingAdded() throws IOException {
+        ImportReport report = new CatalogLoader(library, ',', true).load(write(""));
+        Assertions.assertEquals(0, report.getImportedCount());
+        Assertions.assertTrue(report.getRejections().isEmpty());
+    }
+
+    @Test
+    public void GivenNonPositiveChunkSize_WhenConstructed_ThenIllegalArgumentException() {
+        IllegalArgumentException exception = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new CatalogLoader(library, ',', true, 100, 4, 0));
+        Assertions.assertEquals("Invalid chunk size.", exception.getMessage());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new CatalogLoader(library, ',', true, 100, 4, -1));
+    }
+
+    private Path write(String content) throws IOException {
+        Path file = directory.resolve("catalogue.csv");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,145 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.services.InMemoryDatabaseService;
+import ac.il.bgu.qa.services.NotificationService;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestConcurrentLibrary {
+
+    private static final int THREADS = 8;
+    private static final int BOOKS = 16;
+    private static final int OPERATIONS = 20_000;
+
+    @Mock
+    private ReviewService reviewService;
+
+    @Mock
+    private NotificationService notificationService;
+
+    private InMemoryDatabaseService databaseService;
+
+    private ConcurrentLibrary library;
+
+    private final List<String> isbns = new ArrayList<>();
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        databaseService = new InMemoryDatabaseService();
+        library = new ConcurrentLibrary(databaseService, reviewService, 4);
+        for (int i = 0; isbns.size() < BOOKS; i++) {
+            String isbn = Long.toString(9780000000000L + i);
+            if (IsbnKey.of(isbn) != IsbnKey.INVALID) {
+                isbns.add(isbn);
+                library.addBook(new Book(isbn, "Title", "Author"));
+            }
+        }
+        for (int i = 0; i < THREADS; i++) {
+            library.registerUser(new User("Name", userId(i), notificationService));
+        }
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void GivenManyThreads_WhenBorrowAndReturnSameBooks_ThenBooksAndDatabaseAgree() throws Exception {
+        AtomicInteger borrowed = new AtomicInteger();
+        AtomicInteger returned = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            String userId = userId(t);
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < OPERATIONS; i++) {
+                    String isbn = isbns.get(ThreadLocalRandom.current().nextInt(BOOKS));
+                    if (ThreadLocalRandom.current().nextBoolean()) {
+                        if (library.tryBorrowBook(isbn, userId) == BorrowResult.BORROWED) {
+                            borrowed.incrementAndGet();
+                        }
+                    } else if (library.tryReturnBook(isbn) == ReturnResult.RETURNED) {
+                        returned.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        // Without the locks the database sees interleaved borrows and returns of a book and throws.
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+
+        int held = 0;
+        for (String isbn : isbns) {
+            Book book = databaseService.getBookByISBN(isbn);
+            Assertions.assertEquals(book.getBorrowerId(), databaseService.getBorrowerId(isbn));
+            if (book.isBorrowed()) {
+                held++;
+            }
+        }
+        Assertions.assertEquals(held, databaseService.getBorrowedCount());
+        Assertions.assertEquals(borrowed.get() - returned.get(), held);
+    }
+
+    @Test
+    public void GivenOverlappingBatches_WhenBorrowBooksAndReturnBooks_ThenNoDeadlock() throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            String userId = userId(t);
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < OPERATIONS / 10; i++) {
+                    List<String> batch = new ArrayList<>(isbns);
+                    Collections.shuffle(batch, ThreadLocalRandom.current());
+                    batch = batch.subList(0, 4);
+                    Map<String, BorrowResult> results = library.borrowBooks(userId, batch);
+                    List<String> mine = new ArrayList<>();
+                    for (Map.Entry<String, BorrowResult> entry : results.entrySet()) {
+                        if (entry.getValue() == BorrowResult.BORROWED) {
+                            mine.add(entry.getKey());
+                        }
+                    }
+                    for (ReturnResult result : library.returnBooks(mine).values()) {
+                        Assertions.assertEquals(ReturnResult.RETURNED, result);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        Assertions.assertEquals(0, databaseService.getBorrowedCount());
+    }
+
+    @Test
+    public void GivenSameBookInDifferentSpellings_WhenStripe_ThenSameLock() {
+        Assertions.assertEquals(library.stripe("978-3-16-148410-0"), library.stripe("9783161484100"));
+        Assertions.assertEquals(-1, library.stripe("not an ISBN"));
+    }
+
+    @Test
+    public void GivenStripeCounts_WhenConcurrentLibrary_ThenRoundedUpToPowerOfTwo() {
+        Assertions.assertEquals(1, new ConcurrentLibrary(databaseService, reviewService, 1).getStripeCount());
+        Assertions.assertEquals(8, new ConcurrentLibrary(databaseService, reviewService, 5).getStripeCount());
+        Assertions.assertEquals(8, new ConcurrentLibrary(databaseService, reviewService, 8).getStripeCount());
+        for (int stripes : Arrays.asList(0, -1, (1 << 16) + 1)) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> new ConcurrentLibrary(databaseService, reviewService, stripes));
+        }
+    }
+
+    private static String userId(int i) {
+        return String.format("%012d", 100000000000L + i);
+    }
+}
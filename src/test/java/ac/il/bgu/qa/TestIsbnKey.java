@@ -0,0 +1,31 @@
+package ac.il.bgu.qa;
+
+import org.junit.jupiter.api.*;
+
+public class TestIsbnKey {
+
+    @Test
+    public void GivenDifferentSpellings_WhenOf_ThenSameKey() {
+        Assertions.assertEquals(9780306406157L, IsbnKey.of("978-0-306-40615-7"));
+        Assertions.assertEquals(IsbnKey.of("9780306406157"), IsbnKey.of("978-0-306-40615-7"));
+    }
+
+    @Test
+    public void GivenInvalidIsbn_WhenOf_ThenInvalid() {
+        Assertions.assertEquals(IsbnKey.INVALID, IsbnKey.of(null));
+        Assertions.assertEquals(IsbnKey.INVALID, IsbnKey.of("978-3-16-148410-1"));
+        Assertions.assertEquals(IsbnKey.INVALID, IsbnKey.of("978-3-16-148410-01"));
+        Assertions.assertEquals(IsbnKey.INVALID, IsbnKey.of("978-3-16-148410-0A"));
+    }
+
+    @Test
+    public void GivenKey_WhenToString_ThenCanonicalIsbn() {
+        Assertions.assertEquals("9780306406157", IsbnKey.toString(IsbnKey.of("978-0-306-40615-7")));
+        Assertions.assertEquals("0000000000000", IsbnKey.toString(IsbnKey.of("0000000000000")));
+    }
+
+    @Test
+    public void GivenInvalidKey_WhenToString_ThenIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> IsbnKey.toString(IsbnKey.INVALID));
+    }
+}
@@ -0,0 +1,63 @@
+package ac.il.bgu.qa;
+
+import org.junit.jupiter.api.*;
+
+import java.nio.charset.StandardCharsets;
+
+public class TestIsbnValidator {
+
+    @Test
+    public void GivenHyphenatedIsbn_WhenIsValid_ThenTrue() {
+        Assertions.assertTrue(IsbnValidator.isValid("978-3-16-148410-0"));
+        Assertions.assertTrue(IsbnValidator.isValid("978-316148-4100"));
+    }
+
+    @Test
+    public void GivenPlainIsbn_WhenIsValid_ThenTrue() {
+        Assertions.assertTrue(IsbnValidator.isValid("9780306406157"));
+    }
+
+    @Test
+    public void GivenStrayHyphens_WhenIsValid_ThenTrue() {
+        Assertions.assertTrue(IsbnValidator.isValid("--978--0306406157-"));
+    }
+
+    @Test
+    public void GivenNull_WhenIsValid_ThenFalse() {
+        Assertions.assertFalse(IsbnValidator.isValid((CharSequence) null));
+        Assertions.assertFalse(IsbnValidator.isValid((byte[]) null));
+    }
+
+    @Test
+    public void GivenWrongChecksum_WhenIsValid_ThenFalse() {
+        Assertions.assertFalse(IsbnValidator.isValid("978-3-16-148410-1"));
+    }
+
+    @Test
+    public void GivenWrongLength_WhenIsValid_ThenFalse() {
+        Assertions.assertFalse(IsbnValidator.isValid("978-3-16-148410-01"));
+        Assertions.assertFalse(IsbnValidator.isValid("978-3-16-148410"));
+        Assertions.assertFalse(IsbnValidator.isValid(""));
+        Assertions.assertFalse(IsbnValidator.isValid("-------------"));
+    }
+
+    @Test
+    public void GivenNonAsciiDigits_WhenIsValid_ThenFalse() {
+        Assertions.assertFalse(IsbnValidator.isValid("978-3-16-148410-0A"));
+        Assertions.assertFalse(IsbnValidator.isValid("978 3 16 148410 0"));
+        Assertions.assertFalse(IsbnValidator.isValid("\u0669780306406157"));
+    }
+
+    @Test
+    public void GivenStringBuilder_WhenIsValid_ThenSameAsString() {
+        Assertions.assertTrue(IsbnValidator.isValid(new StringBuilder("978-0-306-40615-7")));
+    }
+
+    @Test
+    public void GivenAsciiBytes_WhenIsValid_ThenSameAsString() {
+        byte[] bytes = "xx978-0-306-40615-7yy".getBytes(StandardCharsets.US_ASCII);
+        Assertions.assertTrue(IsbnValidator.isValid(bytes, 2, bytes.length - 4));
+        Assertions.assertFalse(IsbnValidator.isValid(bytes));
+        Assertions.assertTrue(IsbnValidator.isValid("9780306406157".getBytes(StandardCharsets.US_ASCII)));
+    }
+}
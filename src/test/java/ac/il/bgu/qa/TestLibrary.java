@@ -1,6 +1,8 @@
 package ac.il.bgu.qa;
 
 import ac.il.bgu.qa.errors.*;
+import ac.il.bgu.qa.metrics.LibraryMetrics;
+import ac.il.bgu.qa.metrics.MetricsSnapshot;
 import ac.il.bgu.qa.services.*;
 import org.junit.jupiter.api.*;
 import org.mockito.*;
@@ -8,7 +10,15 @@ import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class TestLibrary {
 
@@ -327,6 +337,7 @@ public class TestLibrary {
             Mockito.when(databaseService.getBookByISBN("978-3-16-148410-0")).thenReturn(mockBook);
             Mockito.when(databaseService.getUserById("user")).thenReturn(mockUser);
             Mockito.when(mockBook.isBorrowed()).thenReturn(false);
+            Mockito.when(mockBook.tryBorrow(Mockito.anyString())).thenReturn(true);
         }
 
         @Test
@@ -391,6 +402,30 @@ public class TestLibrary {
             BookAlreadyBorrowedException exception = Assertions.assertThrows(BookAlreadyBorrowedException.class, () -> library.borrowBook("978-3-16-148410-0", "123456789123"));
             Assertions.assertEquals("Book is already borrowed!", exception.getMessage());
             Mockito.verify(databaseService, Mockito.times(1)).borrowBook(Mockito.anyString(), Mockito.anyString());        }
+
+        @Test
+        public void GivenBookBorrowedByAnotherThreadAfterCheck_WhenBorrowBook_ThenBookAlreadyBorrowedException() {
+            Mockito.when(databaseService.getUserById("123456789123")).thenReturn(mockUser);
+            Mockito.when(mockBook.tryBorrow("123456789123")).thenReturn(false);
+            BookAlreadyBorrowedException exception = Assertions.assertThrows(BookAlreadyBorrowedException.class, () -> library.borrowBook("978-3-16-148410-0", "123456789123"));
+            Assertions.assertEquals("Book is already borrowed!", exception.getMessage());
+            Mockito.verify(databaseService, Mockito.never()).borrowBook(Mockito.anyString(), Mockito.anyString());
+        }
+
+        @Test
+        public void GivenUnregisteredUser_WhenBorrowBook_ThenExceptionWithoutStackTrace() {
+            Mockito.when(databaseService.getUserById("123456789123")).thenReturn(null);
+            UserNotRegisteredException exception = Assertions.assertThrows(UserNotRegisteredException.class, () -> library.borrowBook("978-3-16-148410-0", "123456789123"));
+            Assertions.assertEquals(0, exception.getStackTrace().length);
+        }
+
+        @Test
+        public void GivenFailingDatabase_WhenBorrowBook_ThenBookRolledBack() {
+            Mockito.when(databaseService.getUserById("123456789123")).thenReturn(mockUser);
+            Mockito.doThrow(IllegalStateException.class).when(databaseService).borrowBook("978-3-16-148410-0", "123456789123");
+            Assertions.assertThrows(IllegalStateException.class, () -> library.borrowBook("978-3-16-148410-0", "123456789123"));
+            Mockito.verify(mockBook).tryReturn();
+        }
     }
 
     /**
@@ -403,6 +438,7 @@ public class TestLibrary {
         public void setUp() {
             Mockito.when(databaseService.getBookByISBN("978-3-16-148410-0")).thenReturn(mockBook);
             Mockito.when(mockBook.isBorrowed()).thenReturn(true);
+            Mockito.when(mockBook.tryReturn()).thenReturn(true);
         }
 
         @Test
@@ -428,12 +464,224 @@ public class TestLibrary {
             Mockito.verify(databaseService, Mockito.never()).returnBook(Mockito.anyString());
         }
 
+        @Test
+        public void GivenFailingDatabase_WhenReturnBook_ThenBookRolledBack() {
+            Mockito.when(mockBook.getBorrower()).thenReturn("123456789123");
+            Mockito.doThrow(IllegalStateException.class).when(databaseService).returnBook("978-3-16-148410-0");
+            Assertions.assertThrows(IllegalStateException.class, () -> library.returnBook("978-3-16-148410-0"));
+            Mockito.verify(mockBook).restoreBorrower("123456789123");
+        }
+
         @Test
         public void GivenCorrectBook_WhenReturnBook_ThenBookReturned() {
             Mockito.when(mockBook.isBorrowed()).thenReturn(true);
             library.returnBook("978-3-16-148410-0");
             Mockito.verify(databaseService).returnBook("978-3-16-148410-0");
         }
+
+        @Test
+        public void GivenBookReturnedByAnotherThreadAfterCheck_WhenReturnBook_ThenBookNotBorrowedException() {
+            Mockito.when(mockBook.tryReturn()).thenReturn(false);
+            BookNotBorrowedException exception = Assertions.assertThrows(BookNotBorrowedException.class, () -> library.returnBook("978-3-16-148410-0"));
+            Assertions.assertEquals("Book wasn't borrowed!", exception.getMessage());
+            Mockito.verify(databaseService, Mockito.never()).returnBook(Mockito.anyString());
+        }
+    }
+
+    /**
+     * Tests for the exception-free tryAddBook, tryBorrowBook and tryReturnBook methods.
+     */
+    @Nested
+    class tryMethodsTests {
+
+        @BeforeEach
+        public void setUp() {
+            Mockito.when(databaseService.getBookByISBN("978-3-16-148410-0")).thenReturn(mockBook);
+            Mockito.when(databaseService.getUserById("123456789123")).thenReturn(mockUser);
+        }
+
+        @Test
+        public void GivenInvalidBooks_WhenTryAddBook_ThenRejectedWithoutException() {
+            Assertions.assertEquals(AddBookResult.INVALID_BOOK, library.tryAddBook(null));
+            Mockito.when(mockBook.getISBN()).thenReturn("978-3-16-148410-1");
+            Assertions.assertEquals(AddBookResult.INVALID_ISBN, library.tryAddBook(mockBook));
+            Mockito.when(mockBook.getISBN()).thenReturn("978-3-16-148410-0");
+            Mockito.when(mockBook.getTitle()).thenReturn("Title");
+            Mockito.when(mockBook.getAuthor()).thenReturn("Author");
+            Assertions.assertEquals(AddBookResult.ALREADY_EXISTS, library.tryAddBook(mockBook));
+            Mockito.verify(databaseService, Mockito.never()).addBook(Mockito.anyString(), Mockito.any(Book.class));
+        }
+
+        @Test
+        public void GivenValidBook_WhenTryAddBook_ThenAdded() {
+            Book book = new Book("978-0-306-40615-7", "Title", "Author");
+            Assertions.assertEquals(AddBookResult.ADDED, library.tryAddBook(book));
+            Mockito.verify(databaseService).addBook("978-0-306-40615-7", book);
+        }
+
+        @Test
+        public void GivenRejectedBorrows_WhenTryBorrowBook_ThenResultReported() {
+            Assertions.assertEquals(BorrowResult.INVALID_ISBN, library.tryBorrowBook("978-3-16-148410-1", "123456789123"));
+            Assertions.assertEquals(BorrowResult.BOOK_NOT_FOUND, library.tryBorrowBook("978-0-306-40615-7", "123456789123"));
+            Assertions.assertEquals(BorrowResult.INVALID_USER_ID, library.tryBorrowBook("978-3-16-148410-0", "user"));
+            Assertions.assertEquals(BorrowResult.USER_NOT_REGISTERED, library.tryBorrowBook("978-3-16-148410-0", "123456789876"));
+            Mockito.when(mockBook.isBorrowed()).thenReturn(true);
+            Assertions.assertEquals(BorrowResult.ALREADY_BORROWED, library.tryBorrowBook("978-3-16-148410-0", "123456789123"));
+            Mockito.when(mockBook.isBorrowed()).thenReturn(false);
+            Mockito.when(mockBook.tryBorrow("123456789123")).thenReturn(false);
+            Assertions.assertEquals(BorrowResult.ALREADY_BORROWED, library.tryBorrowBook("978-3-16-148410-0", "123456789123"));
+            Mockito.verify(databaseService, Mockito.never()).borrowBook(Mockito.anyString(), Mockito.anyString());
+        }
+
+        @Test
+        public void GivenAvailableBook_WhenTryBorrowBook_ThenBorrowed() {
+            Mockito.when(mockBook.tryBorrow("123456789123")).thenReturn(true);
+            Assertions.assertEquals(BorrowResult.BORROWED, library.tryBorrowBook("978-3-16-148410-0", "123456789123"));
+            Mockito.verify(databaseService).borrowBook("978-3-16-148410-0", "123456789123");
+        }
+
+        @Test
+        public void GivenRejectedReturns_WhenTryReturnBook_ThenResultReported() {
+            Assertions.assertEquals(ReturnResult.INVALID_ISBN, library.tryReturnBook(null));
+            Assertions.assertEquals(ReturnResult.BOOK_NOT_FOUND, library.tryReturnBook("978-0-306-40615-7"));
+            Assertions.assertEquals(ReturnResult.NOT_BORROWED, library.tryReturnBook("978-3-16-148410-0"));
+            Mockito.verify(databaseService, Mockito.never()).returnBook(Mockito.anyString());
+        }
+
+        @Test
+        public void GivenBorrowedBook_WhenTryReturnBook_ThenReturned() {
+            Mockito.when(mockBook.isBorrowed()).thenReturn(true);
+            Mockito.when(mockBook.tryReturn()).thenReturn(true);
+            Assertions.assertEquals(ReturnResult.RETURNED, library.tryReturnBook("978-3-16-148410-0"));
+            Mockito.verify(databaseService).returnBook("978-3-16-148410-0");
+        }
+    }
+
+    /**
+     * Tests for the borrowBooks and returnBooks batch methods.
+     */
+    @Nested
+    class batchTests {
+
+        private final Book available = new Book("978-3-16-148410-0", "Title", "Author");
+        private final Book borrowed = new Book("978-0-306-40615-7", "Title", "Author");
+
+        @BeforeEach
+        public void setUp() {
+            borrowed.tryBorrow("123456789876");
+            Map<String, Book> books = new HashMap<>();
+            books.put("978-3-16-148410-0", available);
+            books.put("978-0-306-40615-7", borrowed);
+            Mockito.when(databaseService.getBooksByISBN(Mockito.anyCollection())).thenReturn(books);
+            Mockito.when(databaseService.getUserById("123456789123")).thenReturn(mockUser);
+        }
+
+        @Test
+        public void GivenMixedBatch_WhenBorrowBooks_ThenResultPerItemAndSingleRoundTrips() {
+            Map<String, BorrowResult> results = library.borrowBooks("123456789123",
+                    Arrays.asList("978-3-16-148410-0", "978-0-306-40615-7", "978-1-56619-909-4", "invalid", "978-3-16-148410-0"));
+
+            Assertions.assertEquals(Arrays.asList("978-3-16-148410-0", "978-0-306-40615-7", "978-1-56619-909-4", "invalid"), new ArrayList<>(results.keySet()));
+            Assertions.assertEquals(Arrays.asList(BorrowResult.BORROWED, BorrowResult.ALREADY_BORROWED, BorrowResult.BOOK_NOT_FOUND, BorrowResult.INVALID_ISBN), new ArrayList<>(results.values()));
+            Assertions.assertEquals("123456789123", available.getBorrowerId());
+            Mockito.verify(databaseService).getBooksByISBN(Arrays.asList("978-3-16-148410-0", "978-0-306-40615-7", "978-1-56619-909-4"));
+            Mockito.verify(databaseService).getUserById("123456789123");
+            Mockito.verify(databaseService).borrowBooks(Collections.singletonList("978-3-16-148410-0"), "123456789123");
+            Mockito.verify(databaseService, Mockito.never()).getBookByISBN(Mockito.anyString());
+            Mockito.verify(databaseService, Mockito.never()).borrowBook(Mockito.anyString(), Mockito.anyString());
+        }
+
+        @Test
+        public void GivenUnregisteredUser_WhenBorrowBooks_ThenNothingBorrowed() {
+            Map<String, BorrowResult> results = library.borrowBooks("123456789000", Collections.singletonList("978-3-16-148410-0"));
+            Assertions.assertEquals(BorrowResult.USER_NOT_REGISTERED, results.get("978-3-16-148410-0"));
+            Assertions.assertFalse(available.isBorrowed());
+            Mockito.verify(databaseService, Mockito.never()).borrowBooks(Mockito.anyCollection(), Mockito.anyString());
+        }
+
+        @Test
+        public void GivenFailingDatabase_WhenBorrowBooks_ThenBooksRolledBack() {
+            Mockito.doThrow(IllegalStateException.class).when(databaseService).borrowBooks(Mockito.anyCollection(), Mockito.anyString());
+            Assertions.assertThrows(IllegalStateException.class, () -> library.borrowBooks("123456789123", Collections.singletonList("978-3-16-148410-0")));
+            Assertions.assertFalse(available.isBorrowed());
+        }
+
+        @Test
+        public void GivenFailingDatabase_WhenReturnBooks_ThenBooksRolledBack() {
+            Mockito.doThrow(IllegalStateException.class).when(databaseService).returnBooks(Mockito.anyCollection());
+            Assertions.assertThrows(IllegalStateException.class, () -> library.returnBooks(Collections.singletonList("978-0-306-40615-7")));
+            Assertions.assertEquals("123456789876", borrowed.getBorrowerId());
+        }
+
+        @Test
+        public void GivenMixedBatch_WhenReturnBooks_ThenResultPerItemAndSingleRoundTrip() {
+            Map<String, ReturnResult> results = library.returnBooks(Arrays.asList("978-3-16-148410-0", "978-0-306-40615-7"));
+
+            Assertions.assertEquals(ReturnResult.NOT_BORROWED, results.get("978-3-16-148410-0"));
+            Assertions.assertEquals(ReturnResult.RETURNED, results.get("978-0-306-40615-7"));
+            Assertions.assertFalse(borrowed.isBorrowed());
+            Mockito.verify(databaseService).returnBooks(Collections.singletonList("978-0-306-40615-7"));
+            Mockito.verify(databaseService, Mockito.never()).returnBook(Mockito.anyString());
+        }
+    }
+
+    /**
+     * Tests for the importBooks method.
+     */
+    @Nested
+    class importBooksTests {
+
+        @Test
+        public void GivenMixedRecords_WhenImportBooks_ThenValidNewBooksAddedAndOthersReported() {
+            Book valid = new Book("978-3-16-148410-0", "Title", "Author");
+            Book sameIsbnOtherSpelling = new Book("9783161484100", "Title", "Author");
+            Book existing = new Book("978-0-306-40615-7", "Title", "Author");
+            Book invalidAuthor = new Book("978-1-56619-909-4", "Title", "A--B");
+            Mockito.when(databaseService.getBooksByISBN(Mockito.anyCollection()))
+                    .thenReturn(Collections.singletonMap("978-0-306-40615-7", existing));
+
+            ImportReport report = library.importBooks(Stream.of(valid, null, sameIsbnOtherSpelling, existing, invalidAuthor), 10);
+
+            Assertions.assertEquals(1, report.getImportedCount());
+            Assertions.assertEquals(Arrays.asList(null, sameIsbnOtherSpelling, invalidAuthor, existing),
+                    report.getRejections().stream().map(ImportReport.Rejection::getBook).collect(Collectors.toList()));
+            Assertions.assertEquals(Arrays.asList(AddBookResult.INVALID_BOOK, AddBookResult.ALREADY_EXISTS, AddBookResult.INVALID_AUTHOR, AddBookResult.ALREADY_EXISTS),
+                    report.getRejections().stream().map(ImportReport.Rejection::getReason).collect(Collectors.toList()));
+            Mockito.verify(databaseService).getBooksByISBN(Arrays.asList("978-3-16-148410-0", "978-0-306-40615-7"));
+            Mockito.verify(databaseService).addBooks(Collections.singletonMap("978-3-16-148410-0", valid));
+            Mockito.verify(databaseService, Mockito.never()).getBookByISBN(Mockito.anyString());
+        }
+
+        @Test
+        public void GivenMoreBooksThanBatchSize_WhenImportBooks_ThenWrittenInBatches() {
+            List<Book> books = Arrays.asList(
+                    new Book("978-3-16-148410-0", "Title", "Author"),
+                    new Book("978-0-306-40615-7", "Title", "Author"),
+                    new Book("978-1-56619-909-4", "Title", "Author"));
+
+            ImportReport report = library.importBooks(books.iterator(), 2);
+
+            Assertions.assertEquals(3, report.getImportedCount());
+            Assertions.assertTrue(report.getRejections().isEmpty());
+            Mockito.verify(databaseService, Mockito.times(2)).getBooksByISBN(Mockito.anyCollection());
+            Mockito.verify(databaseService, Mockito.times(2)).addBooks(Mockito.anyMap());
+        }
+
+        @Test
+        public void GivenMoreRejectionsThanListed_WhenImportBooks_ThenAllCountedAndFirstListed() {
+            int records = ImportReport.MAX_LISTED_REJECTIONS + 5;
+            ImportReport report = library.importBooks(Stream.<Book>generate(() -> null).limit(records), 100);
+
+            Assertions.assertEquals(0, report.getImportedCount());
+            Assertions.assertEquals(records, report.getRejectedCount());
+            Assertions.assertEquals(ImportReport.MAX_LISTED_REJECTIONS, report.getRejections().size());
+        }
+
+        @Test
+        public void GivenInvalidBatchSize_WhenImportBooks_ThenIllegalArgumentException() {
+            IllegalArgumentException exception = Assertions.assertThrows(IllegalArgumentException.class, () -> library.importBooks(Stream.<Book>empty(), 0));
+            Assertions.assertEquals("Invalid batch size.", exception.getMessage());
+        }
     }
 
     /**
@@ -649,6 +897,301 @@ public class TestLibrary {
         }
     }
 
+    /**
+     * Tests for notifyUserWithBookReviews with a pool of review services.
+     */
+    @Nested
+    class pooledReviewServiceTests {
+
+        private ReviewServicePool pool;
+
+        @BeforeEach
+        public void setUp() {
+            pool = Mockito.mock(ReviewServicePool.class);
+            Mockito.when(pool.lease()).thenReturn(reviewService);
+            library = new Library(databaseService, pool);
+            Mockito.when(databaseService.getBookByISBN("978-3-16-148410-0")).thenReturn(mockBook);
+            Mockito.when(databaseService.getUserById("123456789123")).thenReturn(mockUser);
+        }
+
+        @Test
+        public void GivenValidParameters_WhenNotifyUserWithBookReviews_ThenServiceReleasedNotClosed() {
+            Mockito.when(reviewService.getReviewsForBook("978-3-16-148410-0")).thenReturn(Collections.singletonList("review"));
+            library.notifyUserWithBookReviews("978-3-16-148410-0", "123456789123");
+            Mockito.verify(pool).release(reviewService);
+            Mockito.verify(reviewService, Mockito.never()).close();
+        }
+
+        @Test
+        public void GivenFailingReviewService_WhenNotifyUserWithBookReviews_ThenServiceInvalidated() {
+            Mockito.when(reviewService.getReviewsForBook("978-3-16-148410-0")).thenThrow(ReviewException.class);
+            Assertions.assertThrows(ReviewServiceUnavailableException.class, () -> library.notifyUserWithBookReviews("978-3-16-148410-0", "123456789123"));
+            Mockito.verify(pool).invalidate(reviewService);
+            Mockito.verify(pool, Mockito.never()).release(Mockito.any());
+        }
+
+        @Test
+        public void GivenReviewServiceThrowingUnexpectedException_WhenNotifyUserWithBookReviews_ThenServiceInvalidated() {
+            Mockito.when(reviewService.getReviewsForBook("978-3-16-148410-0")).thenThrow(IllegalStateException.class);
+            Assertions.assertThrows(IllegalStateException.class, () -> library.notifyUserWithBookReviews("978-3-16-148410-0", "123456789123"));
+            Mockito.verify(pool).invalidate(reviewService);
+            Mockito.verify(pool, Mockito.never()).release(Mockito.any());
+        }
+
+        @Test
+        public void GivenNoReviews_WhenNotifyUserWithBookReviews_ThenServiceReleased() {
+            Mockito.when(reviewService.getReviewsForBook("978-3-16-148410-0")).thenReturn(Collections.emptyList());
+            Assertions.assertThrows(NoReviewsFoundException.class, () -> library.notifyUserWithBookReviews("978-3-16-148410-0", "123456789123"));
+            Mockito.verify(pool).release(reviewService);
+            Mockito.verify(pool, Mockito.never()).invalidate(Mockito.any());
+        }
+
+        @Test
+        public void GivenExhaustedPool_WhenNotifyUserWithBookReviews_ThenReviewServiceUnavailableException() {
+            Mockito.when(pool.lease()).thenThrow(ReviewException.class);
+            Assertions.assertThrows(ReviewServiceUnavailableException.class, () -> library.notifyUserWithBookReviews("978-3-16-148410-0", "123456789123"));
+            Mockito.verify(pool, Mockito.never()).invalidate(Mockito.any());
+        }
+    }
+
+    /**
+     * Tests for the notifyUserWithBookReviewsAsync method.
+     */
+    @Nested
+    class NotifyUserWithBookReviewsAsyncTests {
+
+        private AsyncNotifier notifier;
+
+        @BeforeEach
+        public void setUp() {
+            notifier = AsyncNotifier.create(2, 16, new RetryPolicy(5, 1, 10, TimeUnit.MILLISECONDS, 2, 0));
+            library = new Library(databaseService, reviewService, notifier);
+            Mockito.when(databaseService.getBookByISBN("978-3-16-148410-0")).thenReturn(mockBook);
+            Mockito.when(databaseService.getUserById("123456789123")).thenReturn(mockUser);
+            Mockito.when(mockBook.getTitle()).thenReturn("Title");
+            Mockito.when(reviewService.getReviewsForBook("978-3-16-148410-0")).thenReturn(Arrays.asList("review1", "review2"));
+        }
+
+        @AfterEach
+        public void tearDown() {
+            notifier.close();
+        }
+
+        @Test
+        public void GivenNoNotifier_WhenNotifyUserWithBookReviewsAsync_ThenIllegalStateException() {
+            Library synchronous = new Library(databaseService, reviewService);
+            Assertions.assertThrows(IllegalStateException.class, () -> synchronous.notifyUserWithBookReviewsAsync("978-3-16-148410-0", "123456789123"));
+        }
+
+        @Test
+        public void GivenValidParameters_WhenNotifyUserWithBookReviewsAsync_ThenNotificationSent() throws Exception {
+            library.notifyUserWithBookReviewsAsync("978-3-16-148410-0", "123456789123").get(10, TimeUnit.SECONDS);
+            Mockito.verify(mockUser).sendNotification("Reviews for 'Title':\nreview1\nreview2");
+            Mockito.verify(reviewService).close();
+        }
+
+        @Test
+        public void GivenFailingNotifications_WhenNotifyUserWithBookReviewsAsync_ThenRetriedThenNotificationException() {
+            Mockito.doThrow(NotificationException.class).when(mockUser).sendNotification(Mockito.anyString());
+            ExecutionException exception = Assertions.assertThrows(ExecutionException.class,
+                    () -> library.notifyUserWithBookReviewsAsync("978-3-16-148410-0", "123456789123").get(10, TimeUnit.SECONDS));
+            Assertions.assertInstanceOf(NotificationException.class, exception.getCause());
+            Mockito.verify(mockUser, Mockito.times(5)).sendNotification(Mockito.anyString());
+        }
+
+        @Test
+        public void GivenUnregisteredUser_WhenNotifyUserWithBookReviewsAsync_ThenFutureFailsWithUserNotRegisteredException() {
+            Mockito.when(databaseService.getUserById("123456789123")).thenReturn(null);
+            ExecutionException exception = Assertions.assertThrows(ExecutionException.class,
+                    () -> library.notifyUserWithBookReviewsAsync("978-3-16-148410-0", "123456789123").get(10, TimeUnit.SECONDS));
+            Assertions.assertInstanceOf(UserNotRegisteredException.class, exception.getCause());
+            Mockito.verify(mockUser, Mockito.never()).sendNotification(Mockito.anyString());
+        }
+    }
+
+    /**
+     * Tests for the notifyUsersWithBookReviews method.
+     */
+    @Nested
+    class NotifyUsersWithBookReviewsTests {
+
+        @Mock
+        private User otherUser;
+
+        @BeforeEach
+        public void setUp() {
+            MockitoAnnotations.openMocks(this);
+            Mockito.when(databaseService.getBookByISBN("978-3-16-148410-0")).thenReturn(mockBook);
+            Mockito.when(databaseService.getUserById("123456789123")).thenReturn(mockUser);
+            Mockito.when(databaseService.getUserById("123456789124")).thenReturn(otherUser);
+            Mockito.when(mockBook.getTitle()).thenReturn("Title");
+            Mockito.when(reviewService.getReviewsForBook("978-3-16-148410-0")).thenReturn(Arrays.asList("review1", "review2"));
+        }
+
+        @Test
+        public void GivenSeveralUsers_WhenNotifyUsersWithBookReviews_ThenReviewsFetchedOnceAndDigestShared() {
+            Map<String, RuntimeException> failures = library.notifyUsersWithBookReviews("978-3-16-148410-0", Arrays.asList("123456789123", "123456789124"));
+
+            Assertions.assertTrue(failures.isEmpty());
+            Mockito.verify(reviewService, Mockito.times(1)).getReviewsForBook("978-3-16-148410-0");
+            Mockito.verify(reviewService).close();
+            ArgumentCaptor<CharSequence> first = ArgumentCaptor.forClass(CharSequence.class);
+            ArgumentCaptor<CharSequence> second = ArgumentCaptor.forClass(CharSequence.class);
+            Mockito.verify(mockUser).sendNotification(first.capture());
+            Mockito.verify(otherUser).sendNotification(second.capture());
+            Assertions.assertSame(first.getValue(), second.getValue());
+            Assertions.assertEquals("Reviews for 'Title':\nreview1\nreview2", first.getValue().toString());
+        }
+
+        @Test
+        public void GivenFailingAndUnknownUsers_WhenNotifyUsersWithBookReviews_ThenFailuresReportedPerUser() {
+            Mockito.doThrow(NotificationException.class).when(mockUser).sendNotification(Mockito.any(CharSequence.class));
+            Map<String, RuntimeException> failures = library.notifyUsersWithBookReviews("978-3-16-148410-0",
+                    Arrays.asList("123456789123", "123456789124", "123456789125", "abc"));
+
+            Assertions.assertInstanceOf(NotificationException.class, failures.get("123456789123"));
+            Assertions.assertInstanceOf(UserNotRegisteredException.class, failures.get("123456789125"));
+            Assertions.assertInstanceOf(IllegalArgumentException.class, failures.get("abc"));
+            Assertions.assertFalse(failures.containsKey("123456789124"));
+            Mockito.verify(mockUser, Mockito.times(5)).sendNotification(Mockito.any(CharSequence.class));
+        }
+
+        @Test
+        public void GivenByteBudget_WhenNotifyUsersWithBookReviews_ThenDigestTruncated() {
+            library.notifyUsersWithBookReviews("978-3-16-148410-0", Collections.singletonList("123456789123"), 30);
+            ArgumentCaptor<CharSequence> message = ArgumentCaptor.forClass(CharSequence.class);
+            Mockito.verify(mockUser).sendNotification(message.capture());
+            Assertions.assertEquals("Reviews for 'Title':\nreview1", message.getValue().toString());
+        }
+
+        @Test
+        public void GivenNoReviews_WhenNotifyUsersWithBookReviews_ThenNoReviewsFoundException() {
+            Mockito.when(reviewService.getReviewsForBook("978-3-16-148410-0")).thenReturn(Collections.emptyList());
+            Assertions.assertThrows(NoReviewsFoundException.class,
+                    () -> library.notifyUsersWithBookReviews("978-3-16-148410-0", Collections.singletonList("123456789123")));
+            Mockito.verify(mockUser, Mockito.never()).sendNotification(Mockito.any(CharSequence.class));
+        }
+    }
+
+    /**
+     * Tests for getBookByISBN when the library has an asynchronous notifier.
+     */
+    @Nested
+    class BackgroundNotificationTests {
+
+        private AsyncNotifier notifier;
+
+        @BeforeEach
+        public void setUp() {
+            notifier = AsyncNotifier.create(1, 1, RetryPolicy.defaultPolicy());
+            library = new Library(databaseService, reviewService, notifier);
+            Mockito.when(databaseService.getBookByISBN("978-3-16-148410-0")).thenReturn(mockBook);
+            Mockito.when(databaseService.getUserById("123456789123")).thenReturn(mockUser);
+            Mockito.when(mockBook.getTitle()).thenReturn("Title");
+        }
+
+        @AfterEach
+        public void tearDown() {
+            notifier.close();
+        }
+
+        @Test
+        public void GivenSlowReviewService_WhenGetBookByISBN_ThenBookReturnedBeforeNotification() throws Exception {
+            CountDownLatch release = new CountDownLatch(1);
+            Mockito.when(reviewService.getReviewsForBook("978-3-16-148410-0")).thenAnswer(invocation -> {
+                release.await(10, TimeUnit.SECONDS);
+                return Collections.singletonList("review");
+            });
+
+            Assertions.assertEquals(mockBook, library.getBookByISBN("978-3-16-148410-0", "123456789123"));
+            Mockito.verify(mockUser, Mockito.never()).sendNotification(Mockito.anyString());
+
+            release.countDown();
+            Mockito.verify(mockUser, Mockito.timeout(5000)).sendNotification("Reviews for 'Title':\nreview");
+        }
+
+        @Test
+        public void GivenFullQueue_WhenGetBookByISBN_ThenBookStillReturned() {
+            CountDownLatch release = new CountDownLatch(1);
+            Mockito.when(reviewService.getReviewsForBook("978-3-16-148410-0")).thenAnswer(invocation -> {
+                release.await(10, TimeUnit.SECONDS);
+                return Collections.singletonList("review");
+            });
+
+            // One notification runs, one waits in the queue, the rest are rejected.
+            for (int i = 0; i < 5; i++) {
+                Assertions.assertEquals(mockBook, library.getBookByISBN("978-3-16-148410-0", "123456789123"));
+            }
+            Assertions.assertTrue(notifier.getRejectedCount() >= 3);
+            release.countDown();
+        }
+    }
+
+    /**
+     * Tests for the metrics recorded by the library.
+     */
+    @Nested
+    class MetricsTests {
+
+        @BeforeEach
+        public void setUp() {
+            Mockito.when(databaseService.getBookByISBN("978-3-16-148410-0")).thenReturn(mockBook);
+            Mockito.when(databaseService.getUserById("123456789123")).thenReturn(mockUser);
+            Mockito.when(mockBook.getTitle()).thenReturn("Title");
+            Mockito.when(reviewService.getReviewsForBook("978-3-16-148410-0")).thenReturn(Collections.singletonList("review"));
+        }
+
+        @Test
+        public void GivenBorrowedBook_WhenBorrowBook_ThenLatencyAndExceptionRecorded() {
+            Mockito.when(mockBook.isBorrowed()).thenReturn(true);
+            Assertions.assertThrows(BookAlreadyBorrowedException.class, () -> library.borrowBook("978-3-16-148410-0", "123456789123"));
+
+            Assertions.assertEquals(1, library.getMetrics().latency("library.borrowBook").getCount());
+            Assertions.assertEquals(1, library.getMetrics().getErrorCount(BookAlreadyBorrowedException.class));
+        }
+
+        @Test
+        public void GivenFailingNotification_WhenGetBookByISBN_ThenRetriesAndFailureCounted() {
+            Mockito.doThrow(NotificationException.class).when(mockUser).sendNotification(Mockito.anyString());
+            Assertions.assertEquals(mockBook, library.getBookByISBN("978-3-16-148410-0", "123456789123"));
+
+            MetricsSnapshot snapshot = library.getMetrics().snapshot();
+            Assertions.assertEquals(5, snapshot.getCounter("library.notificationRetries"));
+            Assertions.assertEquals(1, snapshot.getCounter("library.getBookByISBN.notificationFailures"));
+            // Handled by getBookByISBN, so not counted as an error.
+            Assertions.assertEquals(0, snapshot.getCounter("errors.NotificationException"));
+            Assertions.assertEquals(1, snapshot.getLatency("library.getBookByISBN").getCount());
+        }
+
+        @Test
+        public void GivenFailingDatabaseOnOptionalNotification_WhenGetBookByISBN_ThenNoErrorCounted() {
+            LibraryMetrics metrics = new LibraryMetrics();
+            Mockito.when(databaseService.getUserById("123456789123")).thenThrow(new IllegalStateException("Unavailable"));
+            library = new Library(new MeteredDatabaseService(databaseService, metrics), reviewService, null, metrics);
+
+            Assertions.assertEquals(mockBook, library.getBookByISBN("978-3-16-148410-0", "123456789123"));
+
+            Assertions.assertEquals(0, metrics.getErrorCount(IllegalStateException.class));
+            Assertions.assertEquals(1, metrics.snapshot().getCounter("library.getBookByISBN.notificationFailures"));
+            Assertions.assertEquals(1, metrics.latency("database.getUserById").getCount());
+        }
+
+        @Test
+        public void GivenSharedMetrics_WhenMeteredServicesUsed_ThenLibraryAndServiceCallsRecordedTogether() {
+            LibraryMetrics metrics = new LibraryMetrics();
+            library = new Library(new MeteredDatabaseService(databaseService, metrics),
+                    new MeteredReviewService(reviewService, metrics), null, metrics);
+
+            library.notifyUserWithBookReviews("978-3-16-148410-0", "123456789123");
+
+            Assertions.assertSame(metrics, library.getMetrics());
+            Assertions.assertEquals(1, metrics.latency("library.notifyUserWithBookReviews").getCount());
+            Assertions.assertEquals(1, metrics.latency("database.getBookByISBN").getCount());
+            Assertions.assertEquals(1, metrics.latency("review.getReviewsForBook").getCount());
+            Mockito.verify(mockUser).sendNotification("Reviews for 'Title':\nreview");
+        }
+    }
+
     /**
      * Tests for the getBookByISBN method.
      */
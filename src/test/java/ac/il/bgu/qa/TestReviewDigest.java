@@ -0,0 +1,97 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.services.NotificationService;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TestReviewDigest {
+
+    private final List<String> reviews = Arrays.asList("Great", "", "Caf\u00e9 favourite", "Meh");
+
+    private final ReviewDigest digest = new ReviewDigest("Title", reviews);
+
+    @Test
+    public void GivenReviews_WhenToString_ThenSameMessageAsJoin() {
+        String expected = "Reviews for 'Title':\n" + String.join("\n", reviews);
+        Assertions.assertEquals(expected, digest.toString());
+        Assertions.assertEquals(expected.length(), digest.length());
+        Assertions.assertSame(digest.toString(), digest.toString());
+    }
+
+    @Test
+    public void GivenReviews_WhenCharAt_ThenMatchesRenderedMessage() {
+        String expected = "Reviews for 'Title':\n" + String.join("\n", reviews);
+        for (int i = 0; i < expected.length(); i++) {
+            Assertions.assertEquals(expected.charAt(i), digest.charAt(i), "index " + i);
+        }
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> digest.charAt(expected.length()));
+    }
+
+    @Test
+    public void GivenReviews_WhenWriteTo_ThenStreamsMessage() throws Exception {
+        StringWriter out = new StringWriter();
+        digest.writeTo(out);
+        Assertions.assertEquals(digest.toString(), out.toString());
+    }
+
+    @Test
+    public void GivenReviews_WhenToByteBuffer_ThenUtf8EncodedAndShared() {
+        ByteBuffer first = digest.toByteBuffer();
+        first.get();
+        ByteBuffer second = digest.toByteBuffer();
+        Assertions.assertTrue(second.isReadOnly());
+        Assertions.assertEquals(0, second.position());
+        Assertions.assertEquals(digest.toString(), StandardCharsets.UTF_8.decode(second).toString());
+    }
+
+    @Test
+    public void GivenMaxReviews_WhenLimit_ThenFirstReviewsKept() {
+        Assertions.assertEquals("Reviews for 'Title':\nGreat\n", digest.limit(2).toString());
+        Assertions.assertSame(digest, digest.limit(10));
+        Assertions.assertEquals(0, digest.limit(0).getReviewCount());
+    }
+
+    @Test
+    public void GivenByteBudget_WhenLimitBytes_ThenWholeReviewsThatFitKept() {
+        int header = "Reviews for 'Title':\n".length();
+        // "Caf\u00e9 favourite" takes 15 bytes, one more than its length.
+        int upToThird = header + "Great".length() + 1 + 1 + 15;
+        Assertions.assertEquals(3, digest.limitBytes(upToThird).getReviewCount());
+        Assertions.assertEquals(2, digest.limitBytes(upToThird - 1).getReviewCount());
+        Assertions.assertEquals(0, digest.limitBytes(0).getReviewCount());
+        int total = digest.toString().getBytes(StandardCharsets.UTF_8).length;
+        Assertions.assertSame(digest, digest.limitBytes(total));
+    }
+
+    @Test
+    public void GivenUnpairedSurrogate_WhenLimitBytes_ThenSizedAsEncoded() {
+        ReviewDigest broken = new ReviewDigest("Title", Arrays.asList("Bad \ud800 review", "Good \ud83d\ude00 review"));
+        int total = broken.toString().getBytes(StandardCharsets.UTF_8).length;
+        Assertions.assertSame(broken, broken.limitBytes(total));
+        Assertions.assertEquals(1, broken.limitBytes(total - 1).getReviewCount());
+    }
+
+    @Test
+    public void GivenDigest_WhenDefaultNotifyUserOverloads_ThenDeliveredAsString() {
+        NotificationService service = Mockito.mock(NotificationService.class, Mockito.CALLS_REAL_METHODS);
+        Mockito.doNothing().when(service).notifyUser(Mockito.anyString(), Mockito.anyString());
+
+        service.notifyUser("123456789123", (CharSequence) digest);
+        service.notifyUser("123456789123", digest.toByteBuffer());
+
+        Mockito.verify(service, Mockito.times(2)).notifyUser("123456789123", digest.toString());
+    }
+
+    @Test
+    public void GivenNull_WhenReviewDigest_ThenIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new ReviewDigest("Title", null));
+        Assertions.assertEquals("Reviews for 'Title':\nnull", new ReviewDigest("Title", Collections.singletonList(null)).toString());
+    }
+}
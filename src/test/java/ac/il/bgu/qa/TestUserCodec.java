@@ -0,0 +1,59 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.services.NotificationService;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+public class TestUserCodec {
+
+    @Mock
+    private NotificationService notificationService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    public void GivenUser_WhenEncodedAndDecoded_ThenSameUser() {
+        User user = new User("Na\u00efve Name", "012345678912", notificationService);
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+
+        UserCodec.encode(user, buffer);
+        Assertions.assertEquals(UserCodec.encodedSize(user), buffer.position());
+        Assertions.assertEquals(1 + 8 + 1 + 11, buffer.position());
+        buffer.flip();
+        User decoded = UserCodec.decode(buffer, notificationService);
+
+        Assertions.assertEquals("012345678912", decoded.getId());
+        Assertions.assertEquals("Na\u00efve Name", decoded.getName());
+        Assertions.assertSame(notificationService, decoded.getNotificationService());
+        Assertions.assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void GivenInvalidId_WhenEncode_ThenIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> UserCodec.encode(new User("Name", "12345", notificationService), ByteBuffer.allocate(64)));
+    }
+
+    @Test
+    public void GivenSmallBuffer_WhenEncode_ThenBufferOverflowExceptionAndNothingWritten() {
+        ByteBuffer buffer = ByteBuffer.allocate(12);
+        Assertions.assertThrows(BufferOverflowException.class,
+                () -> UserCodec.encode(new User("Name", "123456789123", notificationService), buffer));
+        Assertions.assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void GivenOtherVersion_WhenDecode_ThenIllegalArgumentException() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        UserCodec.encode(new User("Name", "123456789123", notificationService), buffer);
+        buffer.flip();
+        buffer.put(0, (byte) 9);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> UserCodec.decode(buffer, notificationService));
+    }
+}
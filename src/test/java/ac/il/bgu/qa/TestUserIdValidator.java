@@ -0,0 +1,41 @@
+package ac.il.bgu.qa;
+
+import org.junit.jupiter.api.*;
+
+public class TestUserIdValidator {
+
+    @Test
+    public void GivenTwelveDigits_WhenIsValid_ThenTrue() {
+        Assertions.assertTrue(UserIdValidator.isValid("123456789012"));
+        Assertions.assertTrue(UserIdValidator.isValid("000000000000"));
+    }
+
+    @Test
+    public void GivenInvalidIds_WhenIsValid_ThenFalse() {
+        Assertions.assertFalse(UserIdValidator.isValid(null));
+        Assertions.assertFalse(UserIdValidator.isValid("user"));
+        Assertions.assertFalse(UserIdValidator.isValid("12345678901"));
+        Assertions.assertFalse(UserIdValidator.isValid("1234567890123"));
+        Assertions.assertFalse(UserIdValidator.isValid("12345678901a"));
+        Assertions.assertFalse(UserIdValidator.isValid("\u0661\u0662\u0663\u0664\u0665\u0666\u0667\u0668\u0669\u0660\u0661\u0662"));
+    }
+
+    @Test
+    public void GivenValidId_WhenPackAndUnpack_ThenSameId() {
+        Assertions.assertEquals(123456789012L, UserIdValidator.pack("123456789012"));
+        Assertions.assertEquals("000000000042", UserIdValidator.unpack(UserIdValidator.pack("000000000042")));
+        Assertions.assertEquals("999999999999", UserIdValidator.unpack(UserIdValidator.pack("999999999999")));
+    }
+
+    @Test
+    public void GivenInvalidId_WhenPack_ThenInvalid() {
+        Assertions.assertEquals(UserIdValidator.INVALID, UserIdValidator.pack(null));
+        Assertions.assertEquals(UserIdValidator.INVALID, UserIdValidator.pack("12345678901a"));
+    }
+
+    @Test
+    public void GivenOutOfRangeValue_WhenUnpack_ThenIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> UserIdValidator.unpack(-1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> UserIdValidator.unpack(1_000_000_000_000L));
+    }
+}
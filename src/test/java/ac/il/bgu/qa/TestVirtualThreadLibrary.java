@@ -0,0 +1,112 @@
+package ac.il.bgu.qa;
+
+import ac.il.bgu.qa.errors.BookNotFoundException;
+import ac.il.bgu.qa.services.DatabaseService;
+import ac.il.bgu.qa.services.ReviewService;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class TestVirtualThreadLibrary {
+
+    // Far more requests in flight at once than a platform thread pool could serve.
+    private static final int REQUESTS = 10_000;
+
+    @Mock
+    private DatabaseService databaseService;
+
+    @Mock
+    private ReviewService reviewService;
+
+    @Mock
+    private User mockUser;
+
+    private VirtualThreadLibrary library;
+
+    // Counted down by every request once it is blocked in a service call.
+    private final CountDownLatch blocked = new CountDownLatch(REQUESTS);
+    // Released by the test once every request is blocked.
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        library = new VirtualThreadLibrary(new Library(databaseService, reviewService));
+        Mockito.when(databaseService.getUserById("123456789123")).thenReturn(mockUser);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        library.close();
+    }
+
+    @Test
+    public void GivenBlockingDatabase_WhenBorrowBook_ThenAllRequestsInFlightAtOnce() throws Exception {
+        Mockito.when(databaseService.getBookByISBN(Mockito.anyString()))
+                .thenAnswer(invocation -> new Book(invocation.getArgument(0), "Title", "Author"));
+        Mockito.doAnswer(invocation -> block()).when(databaseService).borrowBook(Mockito.anyString(), Mockito.anyString());
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            futures.add(library.borrowBook(isbn(i), "123456789123"));
+        }
+
+        Assertions.assertTrue(blocked.await(30, TimeUnit.SECONDS));
+        release.countDown();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void GivenBlockingNotifications_WhenNotifyUserWithBookReviews_ThenAllRequestsInFlightAtOnce() throws Exception {
+        Mockito.when(databaseService.getBookByISBN("978-3-16-148410-0")).thenReturn(new Book("978-3-16-148410-0", "Title", "Author"));
+        Mockito.when(reviewService.getReviewsForBook("978-3-16-148410-0")).thenReturn(Collections.singletonList("review"));
+        Mockito.doAnswer(invocation -> block()).when(mockUser).sendNotification(Mockito.anyString());
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            futures.add(library.notifyUserWithBookReviews("978-3-16-148410-0", "123456789123"));
+        }
+
+        Assertions.assertTrue(blocked.await(30, TimeUnit.SECONDS));
+        release.countDown();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void GivenMissingBook_WhenBorrowBook_ThenFutureFailsWithBookNotFoundException() {
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class,
+                () -> library.borrowBook("978-3-16-148410-0", "123456789123").get(10, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(BookNotFoundException.class, exception.getCause());
+    }
+
+    @Test
+    public void GivenNull_WhenVirtualThreadLibrary_ThenIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new VirtualThreadLibrary(null));
+    }
+
+    private Object block() throws InterruptedException {
+        blocked.countDown();
+        release.await();
+        return null;
+    }
+
+    /**
+     * Builds a valid ISBN-13 from a serial number.
+     */
+    private static String isbn(int serial) {
+        String digits = String.format("978%09d", serial);
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+}
@@ -0,0 +1,92 @@
+package ac.il.bgu.qa.metrics;
+
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class TestLatencyRecorder {
+
+    private LatencyRecorder recorder;
+
+    @BeforeEach
+    public void setUp() {
+        recorder = new LatencyRecorder();
+    }
+
+    @Test
+    public void GivenNoLatencies_WhenSnapshot_ThenAllZero() {
+        MetricsSnapshot.Latency latency = recorder.snapshot();
+        Assertions.assertEquals(0, latency.getCount());
+        Assertions.assertEquals(0, latency.getMeanNanos());
+        Assertions.assertEquals(0, latency.getValueAtPercentile(99));
+        Assertions.assertEquals(0, latency.getMaxNanos());
+    }
+
+    @Test
+    public void GivenUniformLatencies_WhenGetValueAtPercentile_ThenWithinBucketPrecision() {
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            recorder.record(nanos * 1000);
+        }
+
+        Assertions.assertEquals(100_000, recorder.getCount());
+        Assertions.assertEquals(100_000_000, recorder.getMaxNanos());
+        Assertions.assertEquals(50_000_500, recorder.snapshot().getMeanNanos());
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            double expected = percentile * 1_000_000;
+            double actual = recorder.getValueAtPercentile(percentile);
+            Assertions.assertTrue(actual >= expected && actual <= expected * 1.07, percentile + ": " + actual);
+        }
+        Assertions.assertEquals(100_000_000, recorder.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void GivenAnyValue_WhenBucketOf_ThenValueWithinItsBucket() {
+        long[] values = {0, 1, 15, 16, 17, 31, 32, 1000, 123_456_789, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = LatencyRecorder.bucketOf(value);
+            Assertions.assertTrue(value <= LatencyRecorder.highestValueOf(bucket), Long.toString(value));
+            Assertions.assertTrue(bucket == 0 || value > LatencyRecorder.highestValueOf(bucket - 1), Long.toString(value));
+        }
+    }
+
+    @Test
+    public void GivenNegativeLatency_WhenRecord_ThenCountedAsZero() {
+        recorder.record(-5);
+        Assertions.assertEquals(1, recorder.getCount());
+        Assertions.assertEquals(0, recorder.getTotalNanos());
+        Assertions.assertEquals(0, recorder.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void GivenConcurrentThreads_WhenRecord_ThenNoLatencyLost() throws Exception {
+        int threads = 8;
+        int perThread = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        recorder.record(i);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assertions.assertEquals(threads * perThread, recorder.getCount());
+        Assertions.assertEquals(threads * perThread, recorder.snapshot().getCount());
+        Assertions.assertEquals(perThread - 1, recorder.getMaxNanos());
+    }
+
+    @Test
+    public void GivenInvalidPercentile_WhenGetValueAtPercentile_ThenIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> recorder.getValueAtPercentile(101));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> recorder.getValueAtPercentile(Double.NaN));
+    }
+}
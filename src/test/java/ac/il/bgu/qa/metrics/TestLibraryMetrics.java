@@ -0,0 +1,69 @@
+package ac.il.bgu.qa.metrics;
+
+import ac.il.bgu.qa.errors.BookNotFoundException;
+import ac.il.bgu.qa.errors.NotificationException;
+import org.junit.jupiter.api.*;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+public class TestLibraryMetrics {
+
+    private LibraryMetrics metrics;
+
+    @BeforeEach
+    public void setUp() {
+        metrics = new LibraryMetrics();
+    }
+
+    @Test
+    public void GivenSameName_WhenLatencyOrCounter_ThenSameMetric() {
+        Assertions.assertSame(metrics.latency("library.addBook"), metrics.latency("library.addBook"));
+        Assertions.assertSame(metrics.counter("library.notificationRetries"), metrics.counter("library.notificationRetries"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> metrics.latency(""));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> metrics.counter(null));
+    }
+
+    @Test
+    public void GivenExceptions_WhenRecordError_ThenCountedByType() {
+        metrics.recordError(new BookNotFoundException("Book not found!"));
+        metrics.recordError(new BookNotFoundException("Book not found!"));
+        metrics.recordError(new NotificationException("Notification failed!"));
+
+        Assertions.assertEquals(2, metrics.getErrorCount(BookNotFoundException.class));
+        Assertions.assertEquals(1, metrics.getErrorCount(NotificationException.class));
+        Assertions.assertEquals(0, metrics.getErrorCount(IllegalStateException.class));
+        Assertions.assertEquals(2, metrics.snapshot().getCounter("errors.BookNotFoundException"));
+    }
+
+    @Test
+    public void GivenMetrics_WhenTextExport_ThenOneLinePerMetric() throws Exception {
+        metrics.counter("library.notificationRetries").add(3);
+        metrics.latency("library.addBook").record(100);
+
+        StringBuilder out = new StringBuilder();
+        metrics.export(new TextMetricsExporter(out));
+
+        Assertions.assertEquals("library.notificationRetries 3\n"
+                + "library.addBook count=1 mean=100 p50=100 p90=100 p99=100 p999=100 max=100\n\n", out.toString());
+    }
+
+    @Test
+    public void GivenJmxExporter_WhenExport_ThenMetricsReadableAsAttributes() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("ac.il.bgu.qa:type=LibraryMetrics,name=TestLibraryMetrics");
+        metrics.counter("library.notificationRetries").increment();
+        metrics.latency("library.addBook").record(100);
+
+        try (JmxMetricsExporter exporter = JmxMetricsExporter.register(server, name)) {
+            metrics.export(exporter);
+
+            Assertions.assertEquals(1L, server.getAttribute(name, "library.notificationRetries"));
+            Assertions.assertEquals(1L, server.getAttribute(name, "library.addBook.count"));
+            Assertions.assertEquals(100L, server.getAttribute(name, "library.addBook.p99"));
+            Assertions.assertEquals(8, server.getMBeanInfo(name).getAttributes().length);
+        }
+        Assertions.assertFalse(server.isRegistered(name));
+    }
+}
@@ -0,0 +1,150 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.errors.NotificationException;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+public class TestBatchingNotificationService {
+
+    private static final int USERS = 8;
+
+    @Mock
+    private NotificationService notificationService;
+
+    @Captor
+    private ArgumentCaptor<Map<String, String>> batchCaptor;
+
+    private BatchingNotificationService batching;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        Mockito.when(notificationService.notifyUsers(Mockito.anyMap())).thenReturn(Collections.emptyMap());
+        executor = Executors.newFixedThreadPool(USERS);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (batching != null) {
+            batching.close();
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void GivenFullBatch_WhenNotifyUser_ThenSentAsOneBatch() throws Exception {
+        batching = new BatchingNotificationService(notificationService, USERS, 1, TimeUnit.HOURS, 100);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            String userId = "user" + i;
+            futures.add(executor.submit(() -> batching.notifyUser(userId, "message")));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+
+        Mockito.verify(notificationService, Mockito.times(1)).notifyUsers(batchCaptor.capture());
+        Mockito.verify(notificationService, Mockito.never()).notifyUser(Mockito.anyString(), Mockito.anyString());
+        Assertions.assertEquals(USERS, batchCaptor.getValue().size());
+    }
+
+    @Test
+    public void GivenPartialBatch_WhenMaxDelayElapses_ThenSent() {
+        batching = new BatchingNotificationService(notificationService, 100, 10, TimeUnit.MILLISECONDS, 100);
+        batching.notifyUser("user", "message");
+        Mockito.verify(notificationService).notifyUsers(Collections.singletonMap("user", "message"));
+    }
+
+    @Test
+    public void GivenFailureForOneUser_WhenNotifyUser_ThenOnlyThatUserThrows() throws Exception {
+        NotificationException failure = new NotificationException("Provider rejected the message.");
+        Mockito.when(notificationService.notifyUsers(Mockito.anyMap())).thenReturn(Collections.singletonMap("user1", failure));
+        batching = new BatchingNotificationService(notificationService, 2, 1, TimeUnit.HOURS, 100);
+
+        Future<?> first = executor.submit(() -> batching.notifyUser("user1", "message"));
+        Future<?> second = executor.submit(() -> batching.notifyUser("user2", "message"));
+
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> first.get(10, TimeUnit.SECONDS));
+        Assertions.assertSame(failure, exception.getCause());
+        second.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void GivenFailingBatch_WhenNotifyUser_ThenNotificationException() {
+        Mockito.when(notificationService.notifyUsers(Mockito.anyMap())).thenThrow(IllegalStateException.class);
+        batching = new BatchingNotificationService(notificationService, 1, 1, TimeUnit.HOURS, 100);
+        Assertions.assertThrows(NotificationException.class, () -> batching.notifyUser("user", "message"));
+    }
+
+    @Test
+    public void GivenSameUserTwice_WhenNotifyUser_ThenSentInSeparateBatches() throws Exception {
+        batching = new BatchingNotificationService(notificationService, 10, 100, TimeUnit.MILLISECONDS, 100);
+        Future<?> first = executor.submit(() -> batching.notifyUser("user", "first"));
+        Future<?> second = executor.submit(() -> batching.notifyUser("user", "second"));
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+
+        Mockito.verify(notificationService, Mockito.times(2)).notifyUsers(batchCaptor.capture());
+        for (Map<String, String> batch : batchCaptor.getAllValues()) {
+            Assertions.assertEquals(1, batch.size());
+        }
+    }
+
+    @Test
+    public void GivenClosedService_WhenNotifyUser_ThenNotificationException() {
+        batching = new BatchingNotificationService(notificationService, 10, 1, TimeUnit.MILLISECONDS, 100);
+        batching.close();
+        NotificationException exception = Assertions.assertThrows(NotificationException.class, () -> batching.notifyUser("user", "message"));
+        Assertions.assertEquals("Notification service is closed!", exception.getMessage());
+    }
+
+    @Test
+    public void GivenDispatcherDiedOfError_WhenNotifyUser_ThenNotificationExceptionInsteadOfBlocking() throws Exception {
+        Mockito.when(notificationService.notifyUsers(Mockito.anyMap())).thenThrow(new AssertionError("boom"));
+        batching = new BatchingNotificationService(notificationService, 10, 1, TimeUnit.MILLISECONDS, 100);
+
+        Future<?> first = executor.submit(() -> batching.notifyUser("user", "message"));
+        ExecutionException failed = Assertions.assertThrows(ExecutionException.class, () -> first.get(10, TimeUnit.SECONDS));
+        Assertions.assertInstanceOf(NotificationException.class, failed.getCause());
+
+        Future<?> second = executor.submit(() -> batching.notifyUser("user", "message"));
+        failed = Assertions.assertThrows(ExecutionException.class, () -> second.get(10, TimeUnit.SECONDS));
+        Assertions.assertEquals("Notification dispatcher stopped!", failed.getCause().getMessage());
+    }
+
+    @Test
+    public void GivenInvalidParameters_WhenBatchingNotificationService_ThenIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new BatchingNotificationService(null, 1, 1, TimeUnit.SECONDS, 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new BatchingNotificationService(notificationService, 0, 1, TimeUnit.SECONDS, 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new BatchingNotificationService(notificationService, 1, -1, TimeUnit.SECONDS, 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new BatchingNotificationService(notificationService, 1, 1, TimeUnit.SECONDS, 0));
+    }
+
+    @Test
+    public void GivenOneFailingUser_WhenDefaultNotifyUsers_ThenOthersStillNotified() {
+        List<String> notified = new ArrayList<>();
+        NotificationService service = (userId, message) -> {
+            if (userId.equals("user1")) {
+                throw new NotificationException("down");
+            }
+            notified.add(userId);
+        };
+        Map<String, String> messages = new HashMap<>();
+        messages.put("user1", "message");
+        messages.put("user2", "message");
+
+        Map<String, NotificationException> failures = service.notifyUsers(messages);
+
+        Assertions.assertEquals(Collections.singleton("user1"), failures.keySet());
+        Assertions.assertEquals(Collections.singletonList("user2"), notified);
+    }
+}
@@ -0,0 +1,161 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+public class TestCachingDatabaseService {
+
+    private static final String ISBN = "978-3-16-148410-0";
+    private static final String OTHER_ISBN = "978-0-306-40615-7";
+
+    @Mock
+    private DatabaseService databaseService;
+
+    @Mock
+    private Book book;
+
+    @Mock
+    private Book otherBook;
+
+    @Mock
+    private User user;
+
+    private CachingDatabaseService caching;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        caching = new CachingDatabaseService(databaseService, 10, 10);
+    }
+
+    @Test
+    public void GivenCachedBook_WhenGetBookByISBN_ThenServedFromCache() {
+        Mockito.when(databaseService.getBookByISBN(ISBN)).thenReturn(book);
+
+        Assertions.assertSame(book, caching.getBookByISBN(ISBN));
+        Assertions.assertSame(book, caching.getBookByISBN("9783161484100"));
+
+        Mockito.verify(databaseService, Mockito.times(1)).getBookByISBN(Mockito.anyString());
+        CacheStats stats = caching.getBookCacheStats();
+        Assertions.assertEquals(1, stats.getHitCount());
+        Assertions.assertEquals(1, stats.getMissCount());
+        Assertions.assertEquals(0.5, stats.getHitRatio());
+    }
+
+    @Test
+    public void GivenMissingBook_WhenGetBookByISBN_ThenNotCached() {
+        Assertions.assertNull(caching.getBookByISBN(ISBN));
+        Assertions.assertNull(caching.getBookByISBN(ISBN));
+        Mockito.verify(databaseService, Mockito.times(2)).getBookByISBN(ISBN);
+    }
+
+    @Test
+    public void GivenCachedBook_WhenBorrowBook_ThenReloadedFromDatabase() {
+        Mockito.when(databaseService.getBookByISBN(ISBN)).thenReturn(book);
+        caching.getBookByISBN(ISBN);
+
+        caching.borrowBook(ISBN, "123456789123");
+        caching.getBookByISBN(ISBN);
+        caching.returnBook(ISBN);
+        caching.getBookByISBN(ISBN);
+
+        Mockito.verify(databaseService).borrowBook(ISBN, "123456789123");
+        Mockito.verify(databaseService).returnBook(ISBN);
+        Mockito.verify(databaseService, Mockito.times(3)).getBookByISBN(ISBN);
+    }
+
+    @Test
+    public void GivenFailingBorrow_WhenBorrowBook_ThenBookStillInvalidated() {
+        Mockito.when(databaseService.getBookByISBN(ISBN)).thenReturn(book);
+        Mockito.doThrow(IllegalStateException.class).when(databaseService).borrowBook(ISBN, "123456789123");
+        caching.getBookByISBN(ISBN);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> caching.borrowBook(ISBN, "123456789123"));
+        caching.getBookByISBN(ISBN);
+
+        Mockito.verify(databaseService, Mockito.times(2)).getBookByISBN(ISBN);
+    }
+
+    @Test
+    public void GivenBorrowDuringLoad_WhenGetBookByISBN_ThenLoadedStateNotCached() {
+        Mockito.when(databaseService.getBookByISBN(ISBN)).thenAnswer(invocation -> {
+            // Another thread borrows the book while its old state is on the way back.
+            caching.borrowBook(ISBN, "123456789123");
+            return book;
+        }).thenReturn(book);
+
+        caching.getBookByISBN(ISBN);
+        caching.getBookByISBN(ISBN);
+
+        Mockito.verify(databaseService, Mockito.times(2)).getBookByISBN(ISBN);
+    }
+
+    @Test
+    public void GivenAddedBookAndRegisteredUser_WhenRead_ThenServedFromCache() {
+        caching.addBook(ISBN, book);
+        caching.registerUser("123456789123", user);
+
+        Assertions.assertSame(book, caching.getBookByISBN(ISBN));
+        Assertions.assertSame(user, caching.getUserById("123456789123"));
+        Mockito.verify(databaseService, Mockito.never()).getBookByISBN(Mockito.anyString());
+        Mockito.verify(databaseService, Mockito.never()).getUserById(Mockito.anyString());
+        Assertions.assertEquals(1, caching.getUserCacheStats().getHitCount());
+    }
+
+    @Test
+    public void GivenFullCache_WhenAddBook_ThenLeastRecentlyUsedEvicted() {
+        caching = new CachingDatabaseService(databaseService, 1, 1);
+        caching.addBook(ISBN, book);
+        caching.addBook(OTHER_ISBN, otherBook);
+
+        caching.getBookByISBN(ISBN);
+
+        Mockito.verify(databaseService).getBookByISBN(ISBN);
+        CacheStats stats = caching.getBookCacheStats();
+        Assertions.assertEquals(1, stats.getEvictionCount());
+        Assertions.assertEquals(1, stats.getSize());
+    }
+
+    @Test
+    public void GivenSomeCachedBooks_WhenGetBooksByISBN_ThenOnlyMissesFetched() {
+        caching.addBook(ISBN, book);
+        Mockito.when(databaseService.getBooksByISBN(Collections.singletonList(OTHER_ISBN)))
+                .thenReturn(Collections.singletonMap(OTHER_ISBN, otherBook));
+
+        Map<String, Book> found = caching.getBooksByISBN(Arrays.asList(ISBN, OTHER_ISBN));
+
+        Assertions.assertSame(book, found.get(ISBN));
+        Assertions.assertSame(otherBook, found.get(OTHER_ISBN));
+        Assertions.assertSame(otherBook, caching.getBookByISBN(OTHER_ISBN));
+        Mockito.verify(databaseService, Mockito.never()).getBookByISBN(Mockito.anyString());
+    }
+
+    @Test
+    public void GivenInMemoryDatabase_WhenLibraryBorrowsAndReturns_ThenBorrowedStateNeverStale() {
+        InMemoryDatabaseService database = new InMemoryDatabaseService();
+        caching = new CachingDatabaseService(database, 10, 10);
+        Library library = new Library(caching, Mockito.mock(ReviewService.class));
+        library.addBook(new Book(ISBN, "Title", "Author"));
+        library.registerUser(new User("Name", "123456789123", Mockito.mock(NotificationService.class)));
+
+        library.borrowBook(ISBN, "123456789123");
+        Assertions.assertTrue(caching.getBookByISBN(ISBN).isBorrowed());
+        library.returnBook(ISBN);
+        Assertions.assertFalse(caching.getBookByISBN(ISBN).isBorrowed());
+        Assertions.assertNull(database.getBorrowerId(ISBN));
+    }
+
+    @Test
+    public void GivenInvalidParameters_WhenCachingDatabaseService_ThenIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new CachingDatabaseService(null, 1, 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new CachingDatabaseService(databaseService, 0, 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new CachingDatabaseService(databaseService, 1, 0));
+    }
+}
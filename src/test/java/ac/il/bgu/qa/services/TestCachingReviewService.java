@@ -0,0 +1,92 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.errors.ReviewException;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TestCachingReviewService {
+
+    @Mock
+    private ReviewService reviewService;
+
+    private final AtomicLong now = new AtomicLong();
+
+    private CachingReviewService cache;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        cache = new CachingReviewService(reviewService, 2, 60, 5, TimeUnit.SECONDS, now::get);
+        Mockito.when(reviewService.getReviewsForBook(Mockito.anyString())).thenReturn(Arrays.asList("review1", "review2"));
+    }
+
+    @Test
+    public void GivenCachedBook_WhenGetReviewsForBookInAnySpelling_ThenServedFromCache() {
+        List<String> first = cache.getReviewsForBook("978-3-16-148410-0");
+        List<String> second = cache.getReviewsForBook("9783161484100");
+
+        Assertions.assertEquals(Arrays.asList("review1", "review2"), second);
+        Assertions.assertSame(first, second);
+        Mockito.verify(reviewService, Mockito.times(1)).getReviewsForBook(Mockito.anyString());
+        Assertions.assertEquals(1, cache.getHitCount());
+        Assertions.assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void GivenExpiredEntry_WhenGetReviewsForBook_ThenFetchedAgain() {
+        cache.getReviewsForBook("978-3-16-148410-0");
+        now.addAndGet(TimeUnit.SECONDS.toNanos(60));
+        cache.getReviewsForBook("978-3-16-148410-0");
+        Mockito.verify(reviewService, Mockito.times(2)).getReviewsForBook("978-3-16-148410-0");
+    }
+
+    @Test
+    public void GivenBookWithoutReviews_WhenGetReviewsForBook_ThenCachedForNegativeTtl() {
+        Mockito.when(reviewService.getReviewsForBook("978-3-16-148410-0")).thenReturn(Collections.<String>emptyList());
+
+        Assertions.assertTrue(cache.getReviewsForBook("978-3-16-148410-0").isEmpty());
+        now.addAndGet(TimeUnit.SECONDS.toNanos(4));
+        Assertions.assertTrue(cache.getReviewsForBook("978-3-16-148410-0").isEmpty());
+        Mockito.verify(reviewService, Mockito.times(1)).getReviewsForBook("978-3-16-148410-0");
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        cache.getReviewsForBook("978-3-16-148410-0");
+        Mockito.verify(reviewService, Mockito.times(2)).getReviewsForBook("978-3-16-148410-0");
+    }
+
+    @Test
+    public void GivenFullCache_WhenGetReviewsForNewBook_ThenLeastRecentlyUsedEvicted() {
+        cache.getReviewsForBook("978-3-16-148410-0");
+        cache.getReviewsForBook("978-0-306-40615-7");
+        cache.getReviewsForBook("978-3-16-148410-0");
+        cache.getReviewsForBook("978-1-56619-909-4");
+
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertEquals(1, cache.getEvictionCount());
+        cache.getReviewsForBook("978-3-16-148410-0");
+        Mockito.verify(reviewService, Mockito.times(1)).getReviewsForBook("978-3-16-148410-0");
+        cache.getReviewsForBook("978-0-306-40615-7");
+        Mockito.verify(reviewService, Mockito.times(2)).getReviewsForBook("978-0-306-40615-7");
+    }
+
+    @Test
+    public void GivenFailingService_WhenGetReviewsForBook_ThenFailureNotCached() {
+        Mockito.when(reviewService.getReviewsForBook("978-3-16-148410-0")).thenThrow(ReviewException.class).thenReturn(Collections.singletonList("review"));
+        Assertions.assertThrows(ReviewException.class, () -> cache.getReviewsForBook("978-3-16-148410-0"));
+        Assertions.assertEquals(Collections.singletonList("review"), cache.getReviewsForBook("978-3-16-148410-0"));
+    }
+
+    @Test
+    public void GivenCachedBook_WhenClose_ThenUnderlyingServiceClosedAndCacheKept() {
+        cache.getReviewsForBook("978-3-16-148410-0");
+        cache.close();
+        Mockito.verify(reviewService).close();
+        Assertions.assertEquals(1, cache.size());
+    }
+}
@@ -0,0 +1,99 @@
+package ac.il.bgu.qa.services;
+
+import org.junit.jupiter.api.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TestCircuitBreaker {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private CircuitBreaker breaker;
+
+    @BeforeEach
+    public void setUp() {
+        breaker = new CircuitBreaker(10, 4, 0.5, 30, TimeUnit.SECONDS, 2, now::get);
+    }
+
+    @Test
+    public void GivenFewerThanMinimumCalls_WhenAllFail_ThenStaysClosed() {
+        fail(3);
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assertions.assertTrue(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void GivenFailureRateAtThreshold_WhenOnFailure_ThenOpensAndFailsFast() {
+        succeed(2);
+        fail(2);
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assertions.assertFalse(breaker.tryAcquirePermission());
+        Assertions.assertEquals(1, breaker.getRejectedCount());
+        Assertions.assertEquals(1, breaker.getOpenedCount());
+        Assertions.assertEquals(0.5, breaker.getFailureRate());
+    }
+
+    @Test
+    public void GivenOldFailuresOutOfWindow_WhenOnFailure_ThenStaysClosed() {
+        fail(1);
+        succeed(9);
+        // The first failure slides out of the window of 10 calls.
+        succeed(1);
+        fail(4);
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assertions.assertEquals(0.4, breaker.getFailureRate(), 1e-9);
+    }
+
+    @Test
+    public void GivenOpenDurationElapsed_WhenTrialCallsSucceed_ThenCloses() {
+        fail(4);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+
+        Assertions.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        Assertions.assertTrue(breaker.tryAcquirePermission());
+        Assertions.assertTrue(breaker.tryAcquirePermission());
+        // Only two trial calls are let through.
+        Assertions.assertFalse(breaker.tryAcquirePermission());
+        breaker.onSuccess();
+        breaker.onSuccess();
+
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assertions.assertEquals(0, breaker.getFailureRate());
+    }
+
+    @Test
+    public void GivenHalfOpen_WhenTrialCallFails_ThenReopens() {
+        fail(4);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        Assertions.assertTrue(breaker.tryAcquirePermission());
+        breaker.onFailure();
+
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assertions.assertFalse(breaker.tryAcquirePermission());
+        Assertions.assertEquals(2, breaker.getOpenedCount());
+    }
+
+    @Test
+    public void GivenInvalidParameters_WhenCircuitBreaker_ThenIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new CircuitBreaker(0, 1, 0.5, 1, TimeUnit.SECONDS, 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new CircuitBreaker(10, 11, 0.5, 1, TimeUnit.SECONDS, 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new CircuitBreaker(10, 1, 0, 1, TimeUnit.SECONDS, 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new CircuitBreaker(10, 1, 0.5, -1, TimeUnit.SECONDS, 1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new CircuitBreaker(10, 1, 0.5, 1, TimeUnit.SECONDS, 0));
+    }
+
+    private void succeed(int calls) {
+        for (int i = 0; i < calls; i++) {
+            Assertions.assertTrue(breaker.tryAcquirePermission());
+            breaker.onSuccess();
+        }
+    }
+
+    private void fail(int calls) {
+        for (int i = 0; i < calls; i++) {
+            Assertions.assertTrue(breaker.tryAcquirePermission());
+            breaker.onFailure();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.errors.NotificationException;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TestCircuitBreakerNotificationService {
+
+    @Mock
+    private NotificationService notificationService;
+
+    private CircuitBreakerNotificationService guarded;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        guarded = new CircuitBreakerNotificationService(notificationService, new CircuitBreaker(4, 2, 0.5, 1, TimeUnit.HOURS, 1));
+    }
+
+    @Test
+    public void GivenDeadProvider_WhenNotifyUser_ThenFailsFastOnceOpen() {
+        Mockito.doThrow(NotificationException.class).when(notificationService).notifyUser(Mockito.anyString(), Mockito.anyString());
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertThrows(NotificationException.class, () -> guarded.notifyUser("123456789123", "message"));
+        }
+        Mockito.verify(notificationService, Mockito.times(2)).notifyUser(Mockito.anyString(), Mockito.anyString());
+        Assertions.assertEquals(3, guarded.getCircuitBreaker().getRejectedCount());
+    }
+
+    @Test
+    public void GivenPartiallyFailedBatch_WhenNotifyUsers_ThenRecordedAsSuccess() {
+        Mockito.when(notificationService.notifyUsers(Mockito.anyMap()))
+                .thenReturn(Collections.singletonMap("user1", new NotificationException("down")));
+        Map<String, String> messages = new HashMap<>();
+        messages.put("user1", "message");
+        messages.put("user2", "message");
+
+        Assertions.assertEquals(Collections.singleton("user1"), guarded.notifyUsers(messages).keySet());
+        Assertions.assertEquals(1, guarded.getCircuitBreaker().getSuccessCount());
+    }
+
+    @Test
+    public void GivenOpenCircuit_WhenNotifyUsers_ThenEveryUserFails() {
+        Mockito.doThrow(NotificationException.class).when(notificationService).notifyUser(Mockito.anyString(), Mockito.anyString());
+        Assertions.assertThrows(NotificationException.class, () -> guarded.notifyUser("user1", "message"));
+        Assertions.assertThrows(NotificationException.class, () -> guarded.notifyUser("user1", "message"));
+
+        Map<String, String> messages = new HashMap<>();
+        messages.put("user1", "message");
+        messages.put("user2", "message");
+        Assertions.assertEquals(messages.keySet(), guarded.notifyUsers(messages).keySet());
+        Mockito.verify(notificationService, Mockito.never()).notifyUsers(Mockito.anyMap());
+    }
+
+    @Test
+    public void GivenHalfOpenCircuit_WhenProviderThrowsError_ThenTrialCallSettledAsFailure() {
+        AtomicLong now = new AtomicLong();
+        guarded = new CircuitBreakerNotificationService(notificationService, new CircuitBreaker(4, 2, 0.5, 1, TimeUnit.HOURS, 1, now::get));
+        Mockito.doThrow(NotificationException.class).doThrow(NotificationException.class).doThrow(StackOverflowError.class)
+                .when(notificationService).notifyUser(Mockito.anyString(), Mockito.anyString());
+        Assertions.assertThrows(NotificationException.class, () -> guarded.notifyUser("123456789123", "message"));
+        Assertions.assertThrows(NotificationException.class, () -> guarded.notifyUser("123456789123", "message"));
+        now.addAndGet(TimeUnit.HOURS.toNanos(1));
+
+        Assertions.assertThrows(StackOverflowError.class, () -> guarded.notifyUser("123456789123", "message"));
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, guarded.getCircuitBreaker().getState());
+        Assertions.assertEquals(3, guarded.getCircuitBreaker().getFailureCount());
+    }
+}
@@ -0,0 +1,67 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.errors.ReviewException;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TestCircuitBreakerReviewService {
+
+    @Mock
+    private ReviewService reviewService;
+
+    private CircuitBreakerReviewService guarded;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        guarded = new CircuitBreakerReviewService(reviewService, new CircuitBreaker(4, 2, 0.5, 1, TimeUnit.HOURS, 1));
+    }
+
+    @Test
+    public void GivenWorkingService_WhenGetReviewsForBook_ThenReviewsReturnedAndSuccessRecorded() {
+        Mockito.when(reviewService.getReviewsForBook("978-3-16-148410-0")).thenReturn(Collections.singletonList("review"));
+        Assertions.assertEquals(Collections.singletonList("review"), guarded.getReviewsForBook("978-3-16-148410-0"));
+        Assertions.assertEquals(1, guarded.getCircuitBreaker().getSuccessCount());
+    }
+
+    @Test
+    public void GivenFailingService_WhenGetReviewsForBook_ThenOpensAndStopsCallingService() {
+        Mockito.when(reviewService.getReviewsForBook(Mockito.anyString())).thenThrow(ReviewException.class);
+        Assertions.assertThrows(ReviewException.class, () -> guarded.getReviewsForBook("978-3-16-148410-0"));
+        Assertions.assertThrows(ReviewException.class, () -> guarded.getReviewsForBook("978-3-16-148410-0"));
+
+        ReviewException exception = Assertions.assertThrows(ReviewException.class, () -> guarded.getReviewsForBook("978-3-16-148410-0"));
+        Assertions.assertEquals("Review service circuit is open!", exception.getMessage());
+        Mockito.verify(reviewService, Mockito.times(2)).getReviewsForBook(Mockito.anyString());
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, guarded.getCircuitBreaker().getState());
+    }
+
+    @Test
+    public void GivenOpenCircuit_WhenClose_ThenServiceClosed() {
+        Mockito.when(reviewService.getReviewsForBook(Mockito.anyString())).thenThrow(ReviewException.class);
+        Assertions.assertThrows(ReviewException.class, () -> guarded.getReviewsForBook("978-3-16-148410-0"));
+        Assertions.assertThrows(ReviewException.class, () -> guarded.getReviewsForBook("978-3-16-148410-0"));
+        guarded.close();
+        Mockito.verify(reviewService).close();
+    }
+
+    @Test
+    public void GivenHalfOpenCircuit_WhenServiceThrowsError_ThenTrialCallSettledAsFailure() {
+        AtomicLong now = new AtomicLong();
+        guarded = new CircuitBreakerReviewService(reviewService, new CircuitBreaker(4, 2, 0.5, 1, TimeUnit.HOURS, 1, now::get));
+        Mockito.when(reviewService.getReviewsForBook(Mockito.anyString()))
+                .thenThrow(ReviewException.class).thenThrow(ReviewException.class)
+                .thenThrow(StackOverflowError.class);
+        Assertions.assertThrows(ReviewException.class, () -> guarded.getReviewsForBook("978-3-16-148410-0"));
+        Assertions.assertThrows(ReviewException.class, () -> guarded.getReviewsForBook("978-3-16-148410-0"));
+        now.addAndGet(TimeUnit.HOURS.toNanos(1));
+
+        Assertions.assertThrows(StackOverflowError.class, () -> guarded.getReviewsForBook("978-3-16-148410-0"));
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, guarded.getCircuitBreaker().getState());
+        Assertions.assertEquals(3, guarded.getCircuitBreaker().getFailureCount());
+    }
+}
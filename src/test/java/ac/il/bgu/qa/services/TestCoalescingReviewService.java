@@ -0,0 +1,155 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.errors.ReviewException;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class TestCoalescingReviewService {
+
+    private static final int CALLERS = 8;
+
+    @Mock
+    private ReviewService reviewService;
+
+    private CoalescingReviewService coalescing;
+
+    private ExecutorService executor;
+
+    // Released by the test once every caller is waiting on the fetch.
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        coalescing = new CoalescingReviewService(reviewService);
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void GivenConcurrentCallersForOneBook_WhenGetReviewsForBook_ThenOneFetchSharedAndOneClose() throws Exception {
+        List<String> reviews = Collections.singletonList("review");
+        Mockito.when(reviewService.getReviewsForBook("978-3-16-148410-0")).thenAnswer(invocation -> {
+            release.await();
+            return reviews;
+        });
+
+        List<Future<List<String>>> futures = startCallers();
+        for (Future<List<String>> future : futures) {
+            Assertions.assertSame(reviews, future.get(10, TimeUnit.SECONDS));
+        }
+
+        Mockito.verify(reviewService, Mockito.times(1)).getReviewsForBook(Mockito.anyString());
+        Mockito.verify(reviewService, Mockito.times(1)).close();
+        Assertions.assertEquals(1, coalescing.getFetchCount());
+        Assertions.assertEquals(CALLERS - 1, coalescing.getCoalescedCount());
+    }
+
+    @Test
+    public void GivenFetchClosedByAllItsCallers_WhenJoin_ThenRefusedSoServiceClosedOnce() {
+        CoalescingReviewService.Fetch fetch = new CoalescingReviewService.Fetch();
+        Assertions.assertTrue(fetch.leave());
+        Assertions.assertFalse(fetch.join());
+    }
+
+    @Test
+    public void GivenCallersRacingFetchesToTheirEnd_WhenGetReviewsForBook_ThenServiceClosedOncePerFetch() throws Exception {
+        Mockito.when(reviewService.getReviewsForBook("978-3-16-148410-0")).thenReturn(Collections.singletonList("review"));
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    coalescing.getReviewsForBook("978-3-16-148410-0");
+                    coalescing.close();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+
+        Mockito.verify(reviewService, Mockito.times((int) coalescing.getFetchCount())).close();
+    }
+
+    @Test
+    public void GivenFailingFetch_WhenGetReviewsForBook_ThenEveryCallerGetsTheException() throws Exception {
+        Mockito.when(reviewService.getReviewsForBook("978-3-16-148410-0")).thenAnswer(invocation -> {
+            release.await();
+            throw new ReviewException("Unavailable");
+        });
+
+        for (Future<List<String>> future : startCallers()) {
+            ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+            Assertions.assertInstanceOf(ReviewException.class, exception.getCause());
+        }
+        Mockito.verify(reviewService, Mockito.times(1)).getReviewsForBook(Mockito.anyString());
+        Mockito.verify(reviewService, Mockito.times(1)).close();
+    }
+
+    @Test
+    public void GivenSequentialCallers_WhenGetReviewsForBook_ThenEachFetchesAndCloses() {
+        Mockito.when(reviewService.getReviewsForBook("978-3-16-148410-0")).thenReturn(Collections.singletonList("review"));
+        for (int i = 0; i < 2; i++) {
+            coalescing.getReviewsForBook("978-3-16-148410-0");
+            coalescing.close();
+        }
+        Mockito.verify(reviewService, Mockito.times(2)).getReviewsForBook("978-3-16-148410-0");
+        Mockito.verify(reviewService, Mockito.times(2)).close();
+    }
+
+    @Test
+    public void GivenFetchInFlightForAnotherBook_WhenCallerCloses_ThenUnderlyingServiceClosed() throws Exception {
+        Mockito.when(reviewService.getReviewsForBook("978-3-16-148410-0")).thenAnswer(invocation -> {
+            release.await();
+            return Collections.singletonList("review");
+        });
+        Mockito.when(reviewService.getReviewsForBook("978-0-306-40615-7")).thenReturn(Collections.singletonList("other"));
+        Future<List<String>> slow = executor.submit(() -> {
+            try {
+                return coalescing.getReviewsForBook("978-3-16-148410-0");
+            } finally {
+                coalescing.close();
+            }
+        });
+
+        coalescing.getReviewsForBook("978-0-306-40615-7");
+        coalescing.close();
+        Mockito.verify(reviewService, Mockito.times(1)).close();
+
+        release.countDown();
+        slow.get(10, TimeUnit.SECONDS);
+        Mockito.verify(reviewService, Mockito.times(2)).close();
+    }
+
+    /**
+     * Starts the callers, each fetching the same book and then closing the service like Library does,
+     * and releases the fetch once all of them have joined it.
+     */
+    private List<Future<List<String>>> startCallers() throws InterruptedException {
+        List<Future<List<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            futures.add(executor.submit(() -> {
+                try {
+                    return coalescing.getReviewsForBook("978-3-16-148410-0");
+                } finally {
+                    coalescing.close();
+                }
+            }));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (coalescing.getCoalescedCount() < CALLERS - 1 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        return futures;
+    }
+}
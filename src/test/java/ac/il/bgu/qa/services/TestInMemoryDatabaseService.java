@@ -0,0 +1,142 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.IsbnKey;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.errors.*;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestInMemoryDatabaseService {
+
+    private static final int BOOKS = 64;
+    private static final int USERS = 16;
+
+    private InMemoryDatabaseService databaseService;
+
+    private final List<String> isbns = new ArrayList<>();
+    private final List<String> userIds = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        databaseService = new InMemoryDatabaseService();
+        for (long key = 9780000000000L; isbns.size() < BOOKS; key++) {
+            String isbn = Long.toString(key);
+            if (IsbnKey.of(isbn) != IsbnKey.INVALID) {
+                isbns.add(isbn);
+                databaseService.addBook(isbn, new Book(isbn, "Title", "Author"));
+            }
+        }
+        for (int i = 0; i < USERS; i++) {
+            String id = String.format("%012d", i);
+            userIds.add(id);
+            databaseService.registerUser(id, new User("Name", id, Mockito.mock(NotificationService.class)));
+        }
+    }
+
+    @Test
+    public void GivenBorrowedBook_WhenBorrowBookAgain_ThenBookAlreadyBorrowedException() {
+        databaseService.borrowBook(isbns.get(0), userIds.get(0));
+        Assertions.assertThrows(BookAlreadyBorrowedException.class, () -> databaseService.borrowBook(isbns.get(0), userIds.get(1)));
+        Assertions.assertEquals(userIds.get(0), databaseService.getBorrowerId(isbns.get(0)));
+    }
+
+    @Test
+    public void GivenBorrowedBooks_WhenReturnBook_ThenLedgerUpdatedOnBothSides() {
+        databaseService.borrowBook(isbns.get(0), userIds.get(0));
+        databaseService.borrowBook(isbns.get(1), userIds.get(0));
+        Assertions.assertEquals(new HashSet<>(isbns.subList(0, 2)), databaseService.getBorrowedBooks(userIds.get(0)));
+
+        databaseService.returnBook(isbns.get(0));
+        Assertions.assertNull(databaseService.getBorrowerId(isbns.get(0)));
+        Assertions.assertEquals(new HashSet<>(isbns.subList(1, 2)), databaseService.getBorrowedBooks(userIds.get(0)));
+        Assertions.assertThrows(BookNotBorrowedException.class, () -> databaseService.returnBook(isbns.get(0)));
+    }
+
+    @Test
+    public void GivenUnknownBookOrUser_WhenBorrowBook_ThenException() {
+        Assertions.assertThrows(BookNotFoundException.class, () -> databaseService.borrowBook("978-0-306-40615-7", userIds.get(0)));
+        Assertions.assertThrows(UserNotRegisteredException.class, () -> databaseService.borrowBook(isbns.get(0), "999999999999"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> databaseService.borrowBook("invalid", userIds.get(0)));
+    }
+
+    @Test
+    public void GivenManyThreadsRacingForOneBook_WhenBorrowBook_ThenExactlyOneSucceeds() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(USERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger successes = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (String userId : userIds) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    databaseService.borrowBook(isbns.get(0), userId);
+                    successes.incrementAndGet();
+                } catch (BookAlreadyBorrowedException ignored) {
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Assertions.assertEquals(1, successes.get());
+        String borrower = databaseService.getBorrowerId(isbns.get(0));
+        Assertions.assertEquals(Collections.singleton(isbns.get(0)), databaseService.getBorrowedBooks(borrower));
+    }
+
+    @Test
+    public void GivenConcurrentBorrowsAndReturns_WhenFinished_ThenLedgerConsistent() throws Exception {
+        int threads = 8;
+        int operations = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicInteger borrows = new AtomicInteger();
+        AtomicInteger returns = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < operations; i++) {
+                    String isbn = isbns.get(random.nextInt(BOOKS));
+                    try {
+                        if (random.nextBoolean()) {
+                            databaseService.borrowBook(isbn, userIds.get(random.nextInt(USERS)));
+                            borrows.incrementAndGet();
+                        } else {
+                            databaseService.returnBook(isbn);
+                            returns.incrementAndGet();
+                        }
+                    } catch (BookAlreadyBorrowedException | BookNotBorrowedException ignored) {
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Every book is either free or held by exactly the user the ledger says holds it.
+        Assertions.assertEquals(borrows.get() - returns.get(), databaseService.getBorrowedCount());
+        int held = 0;
+        for (String userId : userIds) {
+            for (String isbn : databaseService.getBorrowedBooks(userId)) {
+                Assertions.assertEquals(userId, databaseService.getBorrowerId(isbn));
+                held++;
+            }
+        }
+        Assertions.assertEquals(databaseService.getBorrowedCount(), held);
+    }
+}
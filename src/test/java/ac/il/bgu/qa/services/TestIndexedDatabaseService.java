@@ -0,0 +1,53 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.errors.*;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+
+public class TestIndexedDatabaseService {
+
+    private IndexedDatabaseService databaseService;
+
+    private Library library;
+
+    @BeforeEach
+    public void setUp() {
+        databaseService = new IndexedDatabaseService();
+        library = new Library(databaseService, Mockito.mock(ReviewService.class));
+        library.addBook(new Book("978-3-16-148410-0", "Title", "Author"));
+        library.registerUser(new User("Name", "123456789012", Mockito.mock(NotificationService.class)));
+    }
+
+    @Test
+    public void GivenHyphenatedAndPlainIsbn_WhenGetBookByISBN_ThenSameBook() {
+        Book book = databaseService.getBookByISBN("978-3-16-148410-0");
+        Assertions.assertNotNull(book);
+        Assertions.assertSame(book, databaseService.getBookByISBN("9783161484100"));
+        Assertions.assertNull(databaseService.getBookByISBN("978-0-306-40615-7"));
+        Assertions.assertNull(databaseService.getBookByISBN("invalid"));
+    }
+
+    @Test
+    public void GivenExistingBook_WhenAddBook_ThenIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> databaseService.addBook("9783161484100", new Book("9783161484100", "Title", "Author")));
+        Assertions.assertEquals(1, databaseService.getBookCount());
+    }
+
+    @Test
+    public void GivenBorrowedBook_WhenReturnBook_ThenLedgerUpdated() {
+        library.borrowBook("978-3-16-148410-0", "123456789012");
+        Assertions.assertEquals("123456789012", databaseService.getBorrowerId("9783161484100"));
+
+        library.returnBook("9783161484100");
+        Assertions.assertNull(databaseService.getBorrowerId("978-3-16-148410-0"));
+        Assertions.assertThrows(BookNotBorrowedException.class, () -> databaseService.returnBook("978-3-16-148410-0"));
+    }
+
+    @Test
+    public void GivenUnregisteredUser_WhenBorrowBook_ThenUserNotRegisteredException() {
+        Assertions.assertThrows(UserNotRegisteredException.class, () -> databaseService.borrowBook("978-3-16-148410-0", "000000000000"));
+    }
+}
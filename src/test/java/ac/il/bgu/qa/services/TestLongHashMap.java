@@ -0,0 +1,38 @@
+package ac.il.bgu.qa.services;
+
+import org.junit.jupiter.api.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class TestLongHashMap {
+
+    @Test
+    public void GivenRandomOperations_WhenComparedToHashMap_ThenSameContents() {
+        LongHashMap<Long> map = new LongHashMap<>(4);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200_000; i++) {
+            // A small key range forces collisions, removals in the middle of probe chains and resizes.
+            long key = random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                Assertions.assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                Assertions.assertEquals(expected.putIfAbsent(key, (long) i), map.putIfAbsent(key, (long) i));
+            }
+        }
+
+        Assertions.assertEquals(expected.size(), map.size());
+        for (long key = 0; key < 5_000; key++) {
+            Assertions.assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+    @Test
+    public void GivenNegativeKey_WhenPutIfAbsent_ThenIllegalArgumentException() {
+        LongHashMap<String> map = new LongHashMap<>(16);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> map.putIfAbsent(-1, "value"));
+    }
+}
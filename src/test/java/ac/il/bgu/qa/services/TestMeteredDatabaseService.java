@@ -0,0 +1,57 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.metrics.LibraryMetrics;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TestMeteredDatabaseService {
+
+    @Mock
+    private DatabaseService databaseService;
+
+    @Mock
+    private Book book;
+
+    private LibraryMetrics metrics;
+
+    private MeteredDatabaseService metered;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        metrics = new LibraryMetrics();
+        metered = new MeteredDatabaseService(databaseService, metrics);
+    }
+
+    @Test
+    public void GivenBook_WhenGetBookByISBN_ThenForwardedAndLatencyRecorded() {
+        Mockito.when(databaseService.getBookByISBN("978-3-16-148410-0")).thenReturn(book);
+
+        Assertions.assertSame(book, metered.getBookByISBN("978-3-16-148410-0"));
+        Assertions.assertEquals(1, metrics.latency("database.getBookByISBN").getCount());
+    }
+
+    @Test
+    public void GivenBatch_WhenReturnBooks_ThenForwardedAsOneBatch() {
+        List<String> ISBNs = Arrays.asList("978-3-16-148410-0", "978-0-306-40615-7");
+        metered.returnBooks(ISBNs);
+
+        Mockito.verify(databaseService).returnBooks(ISBNs);
+        Mockito.verify(databaseService, Mockito.never()).returnBook(Mockito.anyString());
+        Assertions.assertEquals(1, metrics.latency("database.returnBooks").getCount());
+    }
+
+    @Test
+    public void GivenFailingDatabase_WhenBorrowBook_ThenExceptionCountedAndRethrown() {
+        Mockito.doThrow(IllegalStateException.class).when(databaseService).borrowBook("978-3-16-148410-0", "123456789123");
+
+        Assertions.assertThrows(IllegalStateException.class, () -> metered.borrowBook("978-3-16-148410-0", "123456789123"));
+        Assertions.assertEquals(1, metrics.getErrorCount(IllegalStateException.class));
+        Assertions.assertEquals(Collections.singleton("errors.IllegalStateException"), metrics.snapshot().getCounters().keySet());
+    }
+}
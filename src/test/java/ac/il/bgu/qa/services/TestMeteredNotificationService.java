@@ -0,0 +1,56 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.errors.NotificationException;
+import ac.il.bgu.qa.metrics.LibraryMetrics;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+
+import java.util.Collections;
+import java.util.Map;
+
+public class TestMeteredNotificationService {
+
+    @Mock
+    private NotificationService notificationService;
+
+    private LibraryMetrics metrics;
+
+    private MeteredNotificationService metered;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        metrics = new LibraryMetrics();
+        metered = new MeteredNotificationService(notificationService, metrics);
+    }
+
+    @Test
+    public void GivenFailingNotification_WhenNotifyUser_ThenExceptionCountedAndRethrown() {
+        Mockito.doThrow(NotificationException.class).when(notificationService).notifyUser("user", "message");
+
+        Assertions.assertThrows(NotificationException.class, () -> metered.notifyUser("user", "message"));
+        Assertions.assertEquals(1, metrics.getErrorCount(NotificationException.class));
+        Assertions.assertEquals(1, metrics.latency("notification.notifyUser").getCount());
+    }
+
+    @Test
+    public void GivenFailedUserInBatch_WhenNotifyUsers_ThenFailureCounted() {
+        NotificationException failure = new NotificationException("Provider rejected the message.");
+        Map<String, String> messages = Collections.singletonMap("user", "message");
+        Mockito.when(notificationService.notifyUsers(messages)).thenReturn(Collections.singletonMap("user", failure));
+
+        Assertions.assertSame(failure, metered.notifyUsers(messages).get("user"));
+        Assertions.assertEquals(1, metrics.getErrorCount(NotificationException.class));
+        Assertions.assertEquals(1, metrics.latency("notification.notifyUsers").getCount());
+    }
+
+    @Test
+    public void GivenNullFailures_WhenNotifyUsers_ThenNoFailureCounted() {
+        Map<String, String> messages = Collections.singletonMap("user", "message");
+        Mockito.when(notificationService.notifyUsers(messages)).thenReturn(null);
+
+        Assertions.assertNull(metered.notifyUsers(messages));
+        Assertions.assertEquals(0, metrics.getErrorCount(NotificationException.class));
+        Assertions.assertEquals(1, metrics.latency("notification.notifyUsers").getCount());
+    }
+}
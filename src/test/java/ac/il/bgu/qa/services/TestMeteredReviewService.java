@@ -0,0 +1,49 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.errors.ReviewException;
+import ac.il.bgu.qa.metrics.LibraryMetrics;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+
+import java.util.Collections;
+import java.util.List;
+
+public class TestMeteredReviewService {
+
+    @Mock
+    private ReviewService reviewService;
+
+    private LibraryMetrics metrics;
+
+    private MeteredReviewService metered;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        metrics = new LibraryMetrics();
+        metered = new MeteredReviewService(reviewService, metrics);
+    }
+
+    @Test
+    public void GivenReviews_WhenGetReviewsForBook_ThenForwardedAndLatencyRecorded() {
+        List<String> reviews = Collections.singletonList("review");
+        Mockito.when(reviewService.getReviewsForBook("978-3-16-148410-0")).thenReturn(reviews);
+
+        Assertions.assertSame(reviews, metered.getReviewsForBook("978-3-16-148410-0"));
+        metered.close();
+
+        Mockito.verify(reviewService).close();
+        Assertions.assertEquals(1, metrics.latency("review.getReviewsForBook").getCount());
+        Assertions.assertEquals(1, metrics.latency("review.close").getCount());
+    }
+
+    @Test
+    public void GivenFailingService_WhenGetReviewsForBook_ThenExceptionCountedAndRethrown() {
+        ReviewException failure = new ReviewException("down");
+        Mockito.when(reviewService.getReviewsForBook(Mockito.anyString())).thenThrow(failure);
+
+        Assertions.assertSame(failure, Assertions.assertThrows(ReviewException.class, () -> metered.getReviewsForBook("978-3-16-148410-0")));
+        Assertions.assertEquals(1, metrics.getErrorCount(ReviewException.class));
+        Assertions.assertEquals(1, metrics.latency("review.getReviewsForBook").getCount());
+    }
+}
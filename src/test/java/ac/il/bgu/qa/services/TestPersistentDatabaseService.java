@@ -0,0 +1,365 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.Book;
+import ac.il.bgu.qa.Library;
+import ac.il.bgu.qa.User;
+import ac.il.bgu.qa.errors.BookNotBorrowedException;
+import ac.il.bgu.qa.errors.BookNotFoundException;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class TestPersistentDatabaseService {
+
+    private static final String ISBN = "978-3-16-148410-0";
+    private static final String OTHER_ISBN = "978-0-306-40615-7";
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private NotificationService notificationService;
+
+    private Path log;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        log = directory.resolve("library.log");
+    }
+
+    private PersistentDatabaseService open(PersistentDatabaseService.Durability durability) throws IOException {
+        return PersistentDatabaseService.open(log, durability, notificationService);
+    }
+
+    @Test
+    public void GivenLibraryWrites_WhenReopened_ThenStateRecovered() throws Exception {
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.SYNC)) {
+            Library library = new Library(database, Mockito.mock(ReviewService.class));
+            library.addBook(new Book(ISBN, "Caf\u00e9 Stories", "Author"));
+            library.addBook(new Book(OTHER_ISBN, "Title", "Author"));
+            library.registerUser(new User("Name", "123456789123", notificationService));
+            library.borrowBook(ISBN, "123456789123");
+            library.borrowBook(OTHER_ISBN, "123456789123");
+            library.returnBook(OTHER_ISBN);
+        }
+
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.SYNC)) {
+            Book book = database.getBookByISBN(ISBN);
+            Assertions.assertEquals("Caf\u00e9 Stories", book.getTitle());
+            Assertions.assertTrue(book.isBorrowed());
+            Assertions.assertEquals("123456789123", database.getBorrowerId(ISBN));
+            Assertions.assertFalse(database.getBookByISBN(OTHER_ISBN).isBorrowed());
+            Assertions.assertNull(database.getBorrowerId(OTHER_ISBN));
+            User user = database.getUserById("123456789123");
+            Assertions.assertEquals("Name", user.getName());
+            Assertions.assertSame(notificationService, user.getNotificationService());
+        }
+    }
+
+    @Test
+    public void GivenTornLastRecord_WhenReopened_ThenEarlierRecordsRecoveredAndTailDropped() throws Exception {
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.SYNC)) {
+            database.addBook(ISBN, new Book(ISBN, "Title", "Author"));
+            database.addBook(OTHER_ISBN, new Book(OTHER_ISBN, "Title", "Author"));
+        }
+        long size = Files.size(log);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.SYNC)) {
+            Assertions.assertNotNull(database.getBookByISBN(ISBN));
+            Assertions.assertNull(database.getBookByISBN(OTHER_ISBN));
+            // The log goes on from the last good record.
+            database.addBook(OTHER_ISBN, new Book(OTHER_ISBN, "Title", "Author"));
+        }
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.SYNC)) {
+            Assertions.assertNotNull(database.getBookByISBN(OTHER_ISBN));
+        }
+    }
+
+    @Test
+    public void GivenCorruptLastRecord_WhenReopened_ThenRecordDropped() throws Exception {
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.SYNC)) {
+            database.addBook(ISBN, new Book(ISBN, "Title", "Author"));
+        }
+        long size = Files.size(log);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), size - 1);
+        }
+
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.SYNC)) {
+            Assertions.assertNull(database.getBookByISBN(ISBN));
+        }
+    }
+
+    @Test
+    public void GivenRejectedWrite_WhenReopened_ThenNothingRecorded() throws Exception {
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.SYNC)) {
+            database.registerUser("123456789123", new User("Name", "123456789123", notificationService));
+            Assertions.assertThrows(BookNotFoundException.class, () -> database.borrowBook(ISBN, "123456789123"));
+        }
+        long size = Files.size(log);
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.SYNC)) {
+            Assertions.assertNull(database.getBorrowerId(ISBN));
+        }
+        Assertions.assertEquals(size, Files.size(log));
+    }
+
+    @Test
+    public void GivenBatchWithOneBadBook_WhenAddBooksOrReturnBooks_ThenNothingAppliedOrLogged() throws Exception {
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.SYNC)) {
+            database.addBook(ISBN, new Book(ISBN, "Title", "Author"));
+            database.registerUser("123456789123", new User("Name", "123456789123", notificationService));
+            database.borrowBook(ISBN, "123456789123");
+            long size = Files.size(log);
+
+            Map<String, Book> books = new LinkedHashMap<>();
+            books.put(OTHER_ISBN, new Book(OTHER_ISBN, "Title", "Author"));
+            books.put(ISBN, new Book(ISBN, "Title", "Author"));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> database.addBooks(books));
+            Assertions.assertThrows(BookNotBorrowedException.class, () -> database.returnBooks(Arrays.asList(ISBN, OTHER_ISBN)));
+
+            Assertions.assertNull(database.getBookByISBN(OTHER_ISBN));
+            Assertions.assertEquals("123456789123", database.getBorrowerId(ISBN));
+            Assertions.assertEquals(size, Files.size(log));
+        }
+    }
+
+    @Test
+    public void GivenConcurrentWriters_WhenSyncDurability_ThenAllWritesDurableWithSharedSyncs() throws Exception {
+        int threads = 8;
+        int perThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.SYNC)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        String id = String.format("%06d%06d", thread + 1, i);
+                        database.registerUser(id, new User("Name", id, notificationService));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            Assertions.assertTrue(database.getSyncCount() <= threads * perThread);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.SYNC)) {
+            for (int t = 0; t < threads; t++) {
+                for (int i = 0; i < perThread; i++) {
+                    Assertions.assertNotNull(database.getUserById(String.format("%06d%06d", t + 1, i)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void GivenAsyncDurability_WhenClosed_ThenWritesFlushed() throws Exception {
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.ASYNC)) {
+            database.addBook(ISBN, new Book(ISBN, "Title", "Author"));
+            Assertions.assertEquals(0, database.getSyncCount());
+        }
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.WRITE)) {
+            Assertions.assertNotNull(database.getBookByISBN(ISBN));
+        }
+    }
+
+    @Test
+    public void GivenOtherFile_WhenOpen_ThenIOException() throws Exception {
+        Files.write(log, "not a log".getBytes());
+        Assertions.assertThrows(IOException.class, () -> open(PersistentDatabaseService.Durability.SYNC));
+    }
+
+    @Test
+    public void GivenClosedDatabase_WhenAddBook_ThenIllegalStateException() throws Exception {
+        PersistentDatabaseService database = open(PersistentDatabaseService.Durability.SYNC);
+        database.close();
+        Assertions.assertThrows(IllegalStateException.class, () -> database.addBook(ISBN, new Book(ISBN, "Title", "Author")));
+    }
+
+    @Test
+    public void GivenSnapshot_WhenReopened_ThenOnlyLogAfterItReplayed() throws Exception {
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.SYNC)) {
+            Library library = new Library(database, Mockito.mock(ReviewService.class));
+            library.addBook(new Book(ISBN, "Caf\u00e9 Stories", "Author"));
+            library.registerUser(new User("Name", "123456789123", notificationService));
+            library.borrowBook(ISBN, "123456789123");
+            database.snapshot();
+            library.returnBook(ISBN);
+            library.addBook(new Book(OTHER_ISBN, "Title", "Author"));
+            library.borrowBook(OTHER_ISBN, "123456789123");
+            Assertions.assertEquals(1, database.getSnapshotCount());
+        }
+
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.SYNC)) {
+            Assertions.assertEquals(3, database.getReplayedCount());
+            Assertions.assertEquals("Caf\u00e9 Stories", database.getBookByISBN(ISBN).getTitle());
+            // Books loaded from a snapshot have the canonical ISBN.
+            Assertions.assertEquals("9783161484100", database.getBookByISBN(ISBN).getISBN());
+            Assertions.assertFalse(database.getBookByISBN(ISBN).isBorrowed());
+            Assertions.assertNull(database.getBorrowerId(ISBN));
+            Assertions.assertEquals("123456789123", database.getBookByISBN(OTHER_ISBN).getBorrowerId());
+            Assertions.assertEquals("123456789123", database.getBorrowerId(OTHER_ISBN));
+            Assertions.assertSame(notificationService, database.getUserById("123456789123").getNotificationService());
+        }
+    }
+
+    @Test
+    public void GivenSnapshotLargerThanMapping_WhenReopened_ThenLoadedWindowByWindow() throws Exception {
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.SYNC)) {
+            database.registerUser("123456789123", new User("Caf\u00e9 Owner", "123456789123", notificationService));
+            database.addBook(ISBN, new Book(ISBN, "Caf\u00e9 Stories", "Author"));
+            database.addBook(OTHER_ISBN, new Book(OTHER_ISBN, "Title", "Author"));
+            database.borrowBook(OTHER_ISBN, "123456789123");
+            database.snapshot();
+        }
+
+        // Entries straddle the 40 byte windows, so each window after the first starts where the previous one broke off.
+        try (PersistentDatabaseService database = PersistentDatabaseService.open(log,
+                PersistentDatabaseService.Durability.SYNC, notificationService, 0, 40)) {
+            Assertions.assertEquals(0, database.getReplayedCount());
+            Assertions.assertEquals("Caf\u00e9 Owner", database.getUserById("123456789123").getName());
+            Assertions.assertEquals("Caf\u00e9 Stories", database.getBookByISBN(ISBN).getTitle());
+            Assertions.assertEquals("123456789123", database.getBorrowerId(OTHER_ISBN));
+        }
+    }
+
+    @Test
+    public void GivenBooksInSnapshotAndLog_WhenReopened_ThenBothHaveCanonicalISBN() throws Exception {
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.SYNC)) {
+            database.addBook(ISBN, new Book(ISBN, "Title", "Author"));
+            database.snapshot();
+            database.addBook(OTHER_ISBN, new Book(OTHER_ISBN, "Title", "Author"));
+        }
+
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.SYNC)) {
+            Assertions.assertEquals(1, database.getReplayedCount());
+            Assertions.assertEquals("9783161484100", database.getBookByISBN(ISBN).getISBN());
+            Assertions.assertEquals("9780306406157", database.getBookByISBN(OTHER_ISBN).getISBN());
+        }
+    }
+
+    @Test
+    public void GivenCorruptSnapshot_WhenReopened_ThenWholeLogReplayed() throws Exception {
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.SYNC)) {
+            database.addBook(ISBN, new Book(ISBN, "Title", "Author"));
+            database.snapshot();
+            database.addBook(OTHER_ISBN, new Book(OTHER_ISBN, "Title", "Author"));
+        }
+        Path snapshot = directory.resolve("library.log.snapshot");
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), Files.size(snapshot) - 6);
+        }
+
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.SYNC)) {
+            Assertions.assertEquals(2, database.getReplayedCount());
+            Assertions.assertNotNull(database.getBookByISBN(ISBN));
+            Assertions.assertNotNull(database.getBookByISBN(OTHER_ISBN));
+        }
+    }
+
+    @Test
+    public void GivenBorrowsAndReturnsDuringSnapshots_WhenReopened_ThenStateRecovered() throws Exception {
+        int threads = 4;
+        int booksPerThread = 25;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Book[] books = new Book[threads * booksPerThread];
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.WRITE)) {
+            Library library = new Library(database, Mockito.mock(ReviewService.class));
+            for (int i = 0; i < books.length; i++) {
+                books[i] = new Book(isbn(i), "Title", "Author");
+                library.addBook(books[i]);
+            }
+            library.registerUser(new User("Name", "123456789123", notificationService));
+
+            AtomicBoolean stop = new AtomicBoolean();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int round = 0; !stop.get() || round < 3; round++) {
+                        for (int i = thread * booksPerThread; i < (thread + 1) * booksPerThread; i++) {
+                            if (books[i].isBorrowed()) {
+                                library.returnBook(books[i].getISBN());
+                            } else if ((i + round) % 3 != 0) {
+                                library.borrowBook(books[i].getISBN(), "123456789123");
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (int i = 0; i < 5; i++) {
+                database.snapshot();
+            }
+            stop.set(true);
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.SYNC)) {
+            for (Book book : books) {
+                Book recovered = database.getBookByISBN(book.getISBN());
+                Assertions.assertEquals(book.getBorrowerId(), recovered.getBorrowerId());
+                Assertions.assertEquals(book.getBorrowerId(), database.getBorrowerId(book.getISBN()));
+            }
+        }
+    }
+
+    @Test
+    public void GivenSnapshotInterval_WhenWritten_ThenSnapshotTakenInBackground() throws Exception {
+        try (PersistentDatabaseService database = PersistentDatabaseService.open(log,
+                PersistentDatabaseService.Durability.SYNC, notificationService, 2)) {
+            database.addBook(ISBN, new Book(ISBN, "Title", "Author"));
+            database.addBook(OTHER_ISBN, new Book(OTHER_ISBN, "Title", "Author"));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (database.getSnapshotCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Assertions.assertEquals(1, database.getSnapshotCount());
+        }
+        try (PersistentDatabaseService database = open(PersistentDatabaseService.Durability.SYNC)) {
+            Assertions.assertEquals(0, database.getReplayedCount());
+            Assertions.assertNotNull(database.getBookByISBN(OTHER_ISBN));
+        }
+    }
+
+    @Test
+    public void GivenInvalidSnapshotInterval_WhenOpen_ThenIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> PersistentDatabaseService.open(log,
+                PersistentDatabaseService.Durability.SYNC, notificationService, -1));
+    }
+
+    private static String isbn(int number) {
+        String prefix = String.format("978%09d", number);
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (prefix.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return prefix + (10 - sum % 10) % 10;
+    }
+}
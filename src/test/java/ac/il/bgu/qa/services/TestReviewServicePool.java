@@ -0,0 +1,99 @@
+package ac.il.bgu.qa.services;
+
+import ac.il.bgu.qa.errors.ReviewException;
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TestReviewServicePool {
+
+    private final List<ReviewService> created = new ArrayList<>();
+
+    private final AtomicLong now = new AtomicLong();
+
+    private boolean healthy = true;
+
+    private ReviewServicePool pool;
+
+    @BeforeEach
+    public void setUp() {
+        pool = new ReviewServicePool(() -> {
+            ReviewService service = Mockito.mock(ReviewService.class);
+            created.add(service);
+            return service;
+        }, 1, 2, 10, 0, TimeUnit.SECONDS, service -> healthy, now::get);
+    }
+
+    @Test
+    public void GivenNewPool_WhenCreated_ThenMinimumSizeOpened() {
+        Assertions.assertEquals(1, created.size());
+        Assertions.assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void GivenReleasedService_WhenLease_ThenReusedWithoutClosing() {
+        ReviewService first = pool.lease();
+        pool.release(first);
+        Assertions.assertSame(first, pool.lease());
+        Assertions.assertEquals(1, created.size());
+        Mockito.verify(first, Mockito.never()).close();
+    }
+
+    @Test
+    public void GivenExhaustedPool_WhenLease_ThenReviewException() {
+        pool.lease();
+        pool.lease();
+        Assertions.assertEquals(2, pool.getLeasedCount());
+        Assertions.assertThrows(ReviewException.class, () -> pool.lease());
+    }
+
+    @Test
+    public void GivenInvalidatedService_WhenLease_ThenNewServiceOpened() {
+        ReviewService first = pool.lease();
+        pool.invalidate(first);
+        Mockito.verify(first).close();
+        Assertions.assertNotSame(first, pool.lease());
+        Assertions.assertEquals(1, pool.getOpenCount());
+    }
+
+    @Test
+    public void GivenUnhealthyIdleService_WhenLease_ThenClosedAndReplaced() {
+        ReviewService first = created.get(0);
+        healthy = false;
+        ReviewService leased = pool.lease();
+        Assertions.assertNotSame(first, leased);
+        Mockito.verify(first).close();
+    }
+
+    @Test
+    public void GivenServicesIdleTooLong_WhenEvictIdle_ThenClosedDownToMinimumSize() {
+        ReviewService first = pool.lease();
+        ReviewService second = pool.lease();
+        pool.release(first);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        pool.release(second);
+
+        Assertions.assertEquals(0, pool.evictIdle());
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        Assertions.assertEquals(1, pool.evictIdle());
+        Mockito.verify(first).close();
+        Mockito.verify(second, Mockito.never()).close();
+        Assertions.assertEquals(1, pool.getOpenCount());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(60));
+        Assertions.assertEquals(0, pool.evictIdle());
+    }
+
+    @Test
+    public void GivenClosedPool_WhenReleaseOrLease_ThenServicesClosed() {
+        ReviewService leased = pool.lease();
+        pool.close();
+        pool.release(leased);
+        Mockito.verify(leased).close();
+        Assertions.assertThrows(ReviewException.class, () -> pool.lease());
+    }
+}